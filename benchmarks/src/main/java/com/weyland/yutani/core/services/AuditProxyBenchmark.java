@@ -0,0 +1,133 @@
+package com.weyland.yutani.core.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weyland.yutani.core.annotations.WeylandWatchingYou;
+import com.weyland.yutani.core.config.AuditProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.audit.AuditBuffer;
+import com.weyland.yutani.core.services.audit.AuditEventSerializer;
+import com.weyland.yutani.core.services.audit.AuditOverflowPolicy;
+import com.weyland.yutani.core.services.audit.AuditPublisher;
+import com.weyland.yutani.core.services.audit.AuditSink;
+import com.weyland.yutani.core.services.audit.ConsoleAuditSink;
+import com.weyland.yutani.core.services.audit.KafkaAuditSink;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вызов метода с {@link WeylandWatchingYou} через прокси аспекта {@link AuditService} в одном потоке.
+ * Режимы: без прокси (аудит выключен), аспект без публикатора (буфер на 4 события с вытеснением старых),
+ * публикация в пустой приёмник, в журнал приложения (пишется в файл {@code audit-benchmark.log}
+ * во временном каталоге) и во встроенный брокер Kafka.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditProxyBenchmark {
+
+    public enum Audit {
+        OFF,
+        NO_PUBLISHER,
+        NOOP,
+        CONSOLE,
+        KAFKA
+    }
+
+    public static class Target {
+
+        @WeylandWatchingYou("Обработка команды")
+        public Map<String, Object> processCommand(Command command) {
+            return Map.of("status", "command_queued", "commandDescription", command.getDescription());
+        }
+    }
+
+    @Param
+    public Audit audit;
+
+    private final Command command = new Command("Помыть пол", Priority.COMMON, "Рипли", LocalDateTime.now());
+    private Target target;
+    private AuditPublisher publisher;
+    private EmbeddedKafkaKraftBroker broker;
+
+    @Setup(Level.Trial)
+    public void start() {
+        target = new Target();
+        if (audit == Audit.OFF) {
+            return;
+        }
+        AuditProperties properties = new AuditProperties();
+        properties.getKafka().setTopic("audit-bench");
+        MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+        metricsService.init();
+        AuditBuffer buffer = new AuditBuffer(audit == Audit.NO_PUBLISHER ? 4 : 10_000,
+                AuditOverflowPolicy.DROP_OLDEST, 50, metricsService);
+        if (audit != Audit.NO_PUBLISHER) {
+            publisher = new AuditPublisher(buffer, sink(properties, metricsService), 256, 100);
+            publisher.start();
+        }
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new AuditService(properties, buffer, null));
+        target = proxyFactory.getProxy();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (publisher != null) {
+            publisher.stop();
+        }
+        if (broker != null) {
+            broker.destroy();
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> processCommand() {
+        return target.processCommand(command);
+    }
+
+    private AuditSink sink(AuditProperties properties, MetricsService metricsService) {
+        AuditEventSerializer serializer = new AuditEventSerializer(
+                new ObjectMapper().registerModule(new JavaTimeModule()), properties.getCapture());
+        return switch (audit) {
+            case NOOP -> events -> {
+            };
+            case CONSOLE -> new ConsoleAuditSink(serializer);
+            case KAFKA -> {
+                broker = new EmbeddedKafkaKraftBroker(1, properties.getKafka().getPartitions(),
+                        properties.getKafka().getTopic());
+                broker.afterPropertiesSet();
+                yield new KafkaAuditSink(
+                        new DefaultKafkaProducerFactory<>(
+                                Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString())),
+                        serializer, properties.getKafka(), null, metricsService);
+            }
+            default -> throw new IllegalStateException("Режим без публикатора: " + audit);
+        };
+    }
+}
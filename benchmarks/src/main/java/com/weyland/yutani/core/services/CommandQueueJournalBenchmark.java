@@ -0,0 +1,121 @@
+package com.weyland.yutani.core.services;
+
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.exceptions.CommandQueueOverflowException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Приём команд очередью без журнала и с журналом ({@code command.queue.journal}).
+ * 32 потока вызывают {@link CommandQueueService#addCommand(Command)}, четыре рабочих потока разбирают очередь
+ * без задержки обработки. Счётчик {@code accepted} - принятые команды в секунду, {@code rejected} - отказы
+ * из-за переполнения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(32)
+public class CommandQueueJournalBenchmark {
+
+    public enum Journal {
+        /**
+         * Журнал выключен.
+         */
+        OFF,
+        /**
+         * Журнал с {@code await-flush: false}: ответ не ждёт сброса записи на диск.
+         */
+        ASYNC,
+        /**
+         * Журнал с {@code await-flush: true}: ответ отправляется после сброса записи на диск.
+         */
+        DURABLE
+    }
+
+    @Param
+    public Journal journal;
+
+    private CommandQueueService queue;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        directory = Files.createTempDirectory("command-journal-bench");
+        CommandQueueProperties properties = new CommandQueueProperties();
+        properties.setMaxSize(1_000_000);
+        properties.setProcessingDelayMs(0);
+        properties.setWorkers(4);
+        properties.getJournal().setEnabled(journal != Journal.OFF);
+        properties.getJournal().setAwaitFlush(journal == Journal.DURABLE);
+        properties.getJournal().setDirectory(directory.toString());
+        MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+        metricsService.init();
+        queue = new CommandQueueService(properties, metricsService);
+        queue.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        queue.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Producer {
+
+        private static final AtomicInteger NEXT = new AtomicInteger();
+
+        public long accepted;
+        public long rejected;
+        private Command command;
+
+        @Setup(Level.Iteration)
+        public void command() {
+            command = new Command("bench description", Priority.COMMON, "author" + NEXT.incrementAndGet(),
+                    LocalDateTime.now());
+        }
+    }
+
+    @Benchmark
+    public String addCommand(Producer producer) {
+        try {
+            String id = queue.addCommand(producer.command);
+            producer.accepted++;
+            return id;
+        } catch (CommandQueueOverflowException e) {
+            producer.rejected++;
+            return null;
+        }
+    }
+}
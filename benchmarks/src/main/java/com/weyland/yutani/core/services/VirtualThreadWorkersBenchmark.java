@@ -0,0 +1,86 @@
+package com.weyland.yutani.core.services;
+
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import com.weyland.yutani.core.config.SyntheticHumanProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор очереди большим пулом рабочих потоков, большую часть времени ожидающих в
+ * {@code processing-delay-ms}, на потоках платформы и на виртуальных потоках
+ * ({@code synthetic-human.virtual-threads.enabled}). Одна операция - постановка пачки команд от разных авторов
+ * и ожидание, пока все они будут обработаны. После замеров печатается количество живых потоков JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadWorkersBenchmark {
+
+    private static final int WORKERS = 2000;
+    private static final int COMMANDS = 5000;
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param("200")
+    public long processingDelayMs;
+
+    private MetricsService metricsService;
+    private CommandQueueService queue;
+
+    @Setup(Level.Trial)
+    public void start() {
+        CommandQueueProperties properties = new CommandQueueProperties();
+        properties.setMaxSize(COMMANDS * 2);
+        properties.setProcessingDelayMs(processingDelayMs);
+        properties.setWorkers(WORKERS);
+        properties.setBatchSize(1);
+        SyntheticHumanProperties syntheticHumanProperties = new SyntheticHumanProperties();
+        syntheticHumanProperties.getVirtualThreads().setEnabled(virtualThreads);
+        metricsService = new MetricsService(new SimpleMeterRegistry());
+        metricsService.init();
+        queue = new CommandQueueService(properties, syntheticHumanProperties, metricsService);
+        queue.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        System.out.printf("Потоков JVM: %d%n", ManagementFactory.getThreadMXBean().getThreadCount());
+        queue.shutdown();
+    }
+
+    @Benchmark
+    public long submitAndDrain() throws InterruptedException {
+        long target = metricsService.getProcessedCommandsCount() + COMMANDS;
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < COMMANDS; i++) {
+            queue.addCommand(new Command("bench description", Priority.COMMON, "author" + i, now));
+        }
+        long processed;
+        while ((processed = metricsService.getProcessedCommandsCount()) < target) {
+            Thread.sleep(1);
+        }
+        return processed;
+    }
+}
@@ -0,0 +1,75 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weyland.yutani.core.config.AuditProperties;
+import org.apache.kafka.common.compress.Compression;
+import org.apache.kafka.common.record.RecordBatch;
+import org.apache.kafka.common.utils.ByteBufferOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование событий аудита в форматах {@code audit.kafka.encoding}. Одна операция - запись одного события
+ * из 512 событий START/SUCCESS. Перед замерами печатается средний размер события без сжатия и после сжатия
+ * всех событий одним потоком lz4 и zstd, как их сжимает производитель Kafka.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditEncodingBenchmark {
+
+    @Param
+    public AuditEncoding encoding;
+
+    private AuditEventSerializer serializer;
+    private List<AuditEvent> events;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        serializer = new AuditEventSerializer(objectMapper, encoding, new AuditProperties.Capture());
+        events = AuditEvents.calls(256);
+        long raw = 0;
+        for (AuditEvent event : events) {
+            raw += serializer.serialize(event).length;
+        }
+        System.out.printf("%s, байт на событие: без сжатия %d, lz4 %d, zstd %d%n", encoding,
+                raw / events.size(), compressed(Compression.lz4().build()) / events.size(),
+                compressed(Compression.zstd().build()) / events.size());
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return serializer.serialize(events.get(next++ & (events.size() - 1)));
+    }
+
+    private long compressed(Compression compression) throws IOException {
+        ByteBufferOutputStream buffer = new ByteBufferOutputStream(1 << 20);
+        try (OutputStream output = compression.wrapForOutput(buffer, RecordBatch.MAGIC_VALUE_V2)) {
+            for (AuditEvent event : events) {
+                output.write(serializer.serialize(event));
+            }
+        }
+        return buffer.position();
+    }
+}
@@ -0,0 +1,87 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weyland.yutani.core.annotations.WeylandWatchingYou.Severity;
+import com.weyland.yutani.core.config.AuditProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись события аудита {@link AuditStatus#SUCCESS}: {@link AuditEventSerializer} против прежнего способа -
+ * словарь полей, {@link ObjectMapper#writeValueAsString} и перевод строки в UTF-8. С {@code payload}
+ * событие содержит команду в аргументах и словарь в результате. Выделение памяти на событие показывает
+ * запуск с {@code -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditEventSerializerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean payload;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final AuditMethod method =
+            new AuditMethod("CommandService.processCommand", "Обработка команды", "default", Severity.INFO, 1.0);
+    private AuditEventSerializer serializer;
+    private String auditId;
+    private Object[] arguments;
+    private Object result;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        serializer = new AuditEventSerializer(objectMapper, new AuditProperties.Capture());
+        auditId = AuditEvent.newAuditId();
+        if (payload) {
+            arguments = new Object[]{
+                    new Command("x".repeat(200), Priority.COMMON, "Рипли", LocalDateTime.now()), null, null};
+            result = Map.of("status", "command_queued", "commandId", AuditEvent.newAuditId());
+        }
+    }
+
+    @Benchmark
+    public byte[] serializer() throws Exception {
+        return serializer.serialize(new AuditEvent(auditId, System.currentTimeMillis(), AuditStatus.SUCCESS, method,
+                arguments, result, null));
+    }
+
+    @Benchmark
+    public byte[] objectMapperMap() throws Exception {
+        Map<String, Object> event = new HashMap<>();
+        event.put("auditId", auditId);
+        event.put("timestamp", Instant.now().toString());
+        event.put("status", "SUCCESS");
+        event.put("method", String.format("%s.%s", "CommandService", "processCommand"));
+        event.put("description", "Обработка команды");
+        if (arguments != null) {
+            event.put("arguments", arguments);
+        }
+        if (result != null) {
+            event.put("result", result);
+        }
+        return objectMapper.writeValueAsString(event).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,40 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.weyland.yutani.core.annotations.WeylandWatchingYou.Severity;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * События аудита для замеров кодирования и отправки.
+ */
+final class AuditEvents {
+
+    static final AuditMethod METHOD =
+            new AuditMethod("CommandService.processCommand", "Обработка команды", "default", Severity.INFO, 1.0);
+
+    private AuditEvents() {
+    }
+
+    /**
+     * @return пары событий {@link AuditStatus#START} с командой в аргументах и {@link AuditStatus#SUCCESS}
+     * со словарём в результате, по паре на вызов
+     */
+    static List<AuditEvent> calls(int calls) {
+        Object[] arguments = {new Command("Помыть пол в отсеке 7", Priority.COMMON, "Рипли", LocalDateTime.now()),
+                null, null};
+        Object result = Map.of("status", "command_queued", "commandId", AuditEvent.newAuditId());
+        List<AuditEvent> events = new ArrayList<>(calls * 2);
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < calls; i++) {
+            String auditId = AuditEvent.newAuditId();
+            events.add(new AuditEvent(auditId, timestamp + i, AuditStatus.START, METHOD, arguments, null, null));
+            events.add(new AuditEvent(auditId, timestamp + i + 1, AuditStatus.SUCCESS, METHOD, null, result, null));
+        }
+        return events;
+    }
+}
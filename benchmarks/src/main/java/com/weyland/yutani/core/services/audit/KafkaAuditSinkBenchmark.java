@@ -0,0 +1,97 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weyland.yutani.core.config.AuditProperties;
+import com.weyland.yutani.core.services.MetricsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отправка событий аудита {@link KafkaAuditSink} во встроенный брокер Kafka без хранилища неотправленных событий.
+ * {@code TUNED} - настройки {@code audit.kafka.producer} по умолчанию (lz4, linger 20 мс, пачка 64 КБ,
+ * ключ auditId), {@code DEFAULTS} - настройки производителя Kafka по умолчанию без сжатия и без ключа.
+ * Результат - события в секунду; отправка ограничена брокером, когда заполняется буфер производителя.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class KafkaAuditSinkBenchmark {
+
+    private static final int CALLS = 256;
+
+    public enum Producer {
+        DEFAULTS,
+        TUNED
+    }
+
+    @Param
+    public AuditEncoding encoding;
+
+    @Param
+    public Producer producer;
+
+    private EmbeddedKafkaKraftBroker broker;
+    private KafkaAuditSink sink;
+    private List<AuditEvent> events;
+
+    @Setup(Level.Trial)
+    public void start() {
+        AuditProperties.Kafka properties = new AuditProperties.Kafka();
+        properties.setTopic("audit-bench");
+        properties.setEncoding(encoding);
+        if (producer == Producer.DEFAULTS) {
+            properties.getProducer().setCompressionType("none");
+            properties.getProducer().setLingerMs(0);
+            properties.getProducer().setBatchSize(16384);
+            properties.setKey(AuditPartitionKey.NONE);
+        }
+        broker = new EmbeddedKafkaKraftBroker(1, properties.getPartitions(), properties.getTopic());
+        broker.afterPropertiesSet();
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+        metricsService.init();
+        sink = new KafkaAuditSink(
+                new DefaultKafkaProducerFactory<>(
+                        Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString())),
+                new AuditEventSerializer(objectMapper, encoding, new AuditProperties.Capture()),
+                properties, null, metricsService);
+        sink.start();
+        events = AuditEvents.calls(CALLS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        sink.close();
+        broker.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS * 2)
+    public void publish() {
+        sink.publish(events);
+    }
+}
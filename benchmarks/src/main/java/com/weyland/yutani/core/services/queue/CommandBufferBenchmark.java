@@ -0,0 +1,88 @@
+package com.weyland.yutani.core.services.queue;
+
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище шарда под нагрузкой нескольких производителей и одного потребителя ({@code command.queue.backend}).
+ * Восемь потоков вызывают {@link CommandBuffer#offer}, один поток, как рабочий поток шарда, извлекает команды
+ * пачками по 256. Счётчик {@code offered} - принятые команды, {@code refused} - отказы заполненного кольца.
+ * Выделение памяти на операцию показывает запуск с {@code -prof gc}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBufferBenchmark {
+
+    private static final QueuedCommand COMMAND =
+            QueuedCommand.of("bench", new Command("bench description", Priority.COMMON, "author", LocalDateTime.now()));
+
+    @Param({"LINKED", "RING"})
+    public QueueBackend backend;
+
+    private CommandBuffer buffer;
+
+    @Setup(Level.Iteration)
+    public void createBuffer() {
+        buffer = backend == QueueBackend.RING ? new RingCommandBuffer(1 << 16) : new FifoCommandBuffer();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Producer {
+
+        public long offered;
+        public long refused;
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        private final List<QueuedCommand> commands = new ArrayList<>(256);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(8)
+    public boolean offer(Producer producer) {
+        boolean offered = buffer.offer(COMMAND);
+        if (offered) {
+            producer.offered++;
+        } else {
+            producer.refused++;
+        }
+        return offered;
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(1)
+    public int drain(Batch batch) {
+        int drained = buffer.drainTo(batch.commands, 256);
+        batch.commands.clear();
+        return drained;
+    }
+}
@@ -4,10 +4,13 @@ import com.weyland.yutani.core.annotations.WeylandWatchingYou;
 import com.weyland.yutani.core.model.Command;
 import com.weyland.yutani.core.model.Priority;
 import com.weyland.yutani.core.services.CommandService;
+import com.weyland.yutani.core.services.admission.AdmissionControlService;
+import com.weyland.yutani.core.services.idempotency.IdempotencyService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 @RestController
@@ -16,21 +19,35 @@ import java.time.LocalDateTime;
 public class BishopCommandController {
 
     private final CommandService commandService;
+    private final AdmissionControlService admissionControlService;
+    private final IdempotencyService idempotencyService;
 
     @WeylandWatchingYou("Отправление команды")
     @PostMapping
-    public ResponseEntity<?> submitCommand(@RequestBody CommandDto commandDto) {
-        Command command = new Command(
-                commandDto.description(),
-                commandDto.priority(),
-                commandDto.author(),
-                commandDto.time() != null ? commandDto.time() : LocalDateTime.now()
-        );
-
-        var result = commandService.processCommand(command);
+    public ResponseEntity<?> submitCommand(@RequestBody CommandDto commandDto,
+                                           @RequestHeader(value = "Idempotency-Key", required = false)
+                                           String idempotencyKey) {
+        var result = idempotencyService.execute("commands", idempotencyKey, commandDto, () -> {
+            admissionControlService.admit(commandDto.author(), commandDto.priority());
+            Command command = new Command(
+                    commandDto.description(),
+                    commandDto.priority(),
+                    commandDto.author(),
+                    commandDto.time() != null ? commandDto.time() : LocalDateTime.now(),
+                    commandDto.deadline()
+            );
+            return commandService.processCommand(command, commandDto.repeatInterval(), commandDto.repeatCount());
+        });
         return ResponseEntity.accepted().body(result);
     }
 
+    @DeleteMapping("/schedules/{scheduleId}")
+    public ResponseEntity<?> cancelScheduledCommand(@PathVariable String scheduleId) {
+        return commandService.cancelScheduledCommand(scheduleId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
     @GetMapping("/queue-status")
     public ResponseEntity<?> getQueueStatus() {
         return ResponseEntity.ok(commandService.getQueueStatus());
@@ -40,6 +57,9 @@ public class BishopCommandController {
             String description,
             Priority priority,
             String author,
-            LocalDateTime time
+            LocalDateTime time,
+            LocalDateTime deadline,
+            Duration repeatInterval,
+            Integer repeatCount
     ) {}
 }
\ No newline at end of file
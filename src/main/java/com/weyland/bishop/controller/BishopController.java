@@ -10,7 +10,7 @@ import java.util.Map;
 @RequestMapping("/")
 public class BishopController {
 
-    @WeylandWatchingYou("Приветствие")
+    @WeylandWatchingYou(value = "Приветствие", severity = WeylandWatchingYou.Severity.LOW)
     @GetMapping("/")
     public ResponseEntity<String> greet(@RequestParam(defaultValue = "человек") String name) {
         return ResponseEntity.ok(String.format("Здравствуйте, %s. Я андроид, искусственный человек. Я готов выполнять ваши команды", name));
@@ -22,7 +22,7 @@ public class BishopController {
         return ResponseEntity.ok(String.format("Производится работа над: %s", component));
     }
 
-    @WeylandWatchingYou("Получение статуса системы")
+    @WeylandWatchingYou(value = "Получение статуса системы", category = "status")
     @GetMapping("/status")
     public ResponseEntity<Map<String, String>> getStatus() {
         return ResponseEntity.ok(Map.of(
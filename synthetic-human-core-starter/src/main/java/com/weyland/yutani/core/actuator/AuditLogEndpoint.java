@@ -0,0 +1,75 @@
+package com.weyland.yutani.core.actuator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.services.audit.file.AuditLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Конечная точка actuator {@code auditlog} для поиска событий в локальном журнале аудита.
+ */
+@Endpoint(id = "auditlog")
+@RequiredArgsConstructor
+public class AuditLogEndpoint {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    private final AuditLog auditLog;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Возвращает последние события, подходящие под все указанные условия, от новых к старым.
+     *
+     * @param method  класс и имя метода, например {@code CommandService.processCommand}
+     * @param auditId идентификатор вызова
+     * @param from    начало интервала (ISO-8601), включительно
+     * @param to      конец интервала (ISO-8601), включительно
+     * @param limit   максимальное количество событий, по умолчанию 100
+     * @return события аудита
+     */
+    @ReadOperation
+    public List<JsonNode> entries(@Nullable String method, @Nullable String auditId, @Nullable String from,
+                                  @Nullable String to, @Nullable Integer limit) {
+        int max = limit != null ? limit : DEFAULT_LIMIT;
+        if (max <= 0 || max > MAX_LIMIT) {
+            String message = String.format("Параметр limit должен быть от 1 до %d", MAX_LIMIT);
+            throw new InvalidEndpointRequestException(message, message);
+        }
+        List<byte[]> found = auditLog.find(method, auditId, parse("from", from, Long.MIN_VALUE),
+                parse("to", to, Long.MAX_VALUE), max);
+        List<JsonNode> entries = new ArrayList<>(found.size());
+        for (byte[] payload : found) {
+            try {
+                entries.add(objectMapper.readTree(payload));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return entries;
+    }
+
+    private static long parse(String name, String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            String message = String.format("Параметр %s должен быть временем ISO-8601, например 2025-07-17T12:00:00Z",
+                    name);
+            throw new InvalidEndpointRequestException(message, message);
+        }
+    }
+}
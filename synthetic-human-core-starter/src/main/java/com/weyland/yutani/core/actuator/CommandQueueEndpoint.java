@@ -0,0 +1,81 @@
+package com.weyland.yutani.core.actuator;
+
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.CommandQueueService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Конечная точка actuator {@code commandqueue} для просмотра и изменения настроек очереди без перезапуска.
+ * Изменения действуют до перезапуска приложения, принятые команды при этом не теряются.
+ */
+@Endpoint(id = "commandqueue")
+@RequiredArgsConstructor
+public class CommandQueueEndpoint {
+
+    private final CommandQueueService queueService;
+
+    @ReadOperation
+    public Map<String, Object> settings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("workers", queueService.getWorkerCount());
+        settings.put("activeWorkers", queueService.getActiveWorkerCount());
+        settings.put("laneCapacities", queueService.getLaneCapacities());
+        settings.put("laneDepths", queueService.getLaneDepths());
+        settings.put("pacing", Map.of(
+            "enabled", queueService.isPacing(),
+            "rate", queueService.getPacingRate(),
+            "burst", queueService.getPacingBurst()
+        ));
+        settings.put("actualRate", queueService.getActualRate());
+        long estimatedWaitMs = queueService.estimateQueueWaitMillis();
+        settings.put("estimatedWaitMs", estimatedWaitMs == Long.MAX_VALUE ? -1 : estimatedWaitMs);
+        return settings;
+    }
+
+    /**
+     * Изменяет настройки очереди. Не переданные параметры остаются без изменений.
+     *
+     * @param workers       количество рабочих потоков
+     * @param lane          полоса, ёмкость которой изменяется
+     * @param capacity      новая ёмкость полосы {@code lane}
+     * @param pacingEnabled выполнять команды с заданной скоростью
+     * @param pacingRate    целевая скорость, команд в секунду
+     * @param pacingBurst   запас команд после простоя
+     * @return настройки после изменения
+     */
+    @WriteOperation
+    public Map<String, Object> update(@Nullable Integer workers, @Nullable Priority lane,
+                                      @Nullable Integer capacity, @Nullable Boolean pacingEnabled,
+                                      @Nullable Double pacingRate, @Nullable Integer pacingBurst) {
+        if ((lane == null) != (capacity == null)) {
+            String message = "Параметры lane и capacity задаются вместе";
+            throw new InvalidEndpointRequestException(message, message);
+        }
+        try {
+            if (workers != null) {
+                queueService.setWorkerCount(workers);
+            }
+            if (lane != null) {
+                queueService.setLaneCapacity(lane, capacity);
+            }
+            if (pacingEnabled != null || pacingRate != null || pacingBurst != null) {
+                queueService.setPacing(
+                    pacingEnabled != null ? pacingEnabled : queueService.isPacing(),
+                    pacingRate != null ? pacingRate : queueService.getPacingRate(),
+                    pacingBurst != null ? pacingBurst : queueService.getPacingBurst()
+                );
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+        return settings();
+    }
+}
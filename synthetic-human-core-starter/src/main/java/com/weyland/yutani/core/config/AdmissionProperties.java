@@ -0,0 +1,47 @@
+package com.weyland.yutani.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки контроля допуска команд (префикс {@code command.admission}).
+ */
+@Data
+@ConfigurationProperties(prefix = "command.admission")
+public class AdmissionProperties {
+
+    /**
+     * Включает проверку лимитов до валидации и постановки команды в очередь.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Общий лимит скорости приёма команд, команд в секунду.
+     */
+    private double globalRate = 100;
+
+    /**
+     * Допустимый всплеск сверх общего лимита, команд.
+     */
+    private int globalBurst = 200;
+
+    /**
+     * Лимит скорости приёма команд одного автора, команд в секунду.
+     */
+    private double authorRate = 10;
+
+    /**
+     * Допустимый всплеск сверх лимита автора, команд.
+     */
+    private int authorBurst = 20;
+
+    /**
+     * Количество авторов, после которого бездействующие вёдра авторов удаляются.
+     */
+    private int maxTrackedAuthors = 10000;
+
+    /**
+     * Верхняя граница значения заголовка Retry-After, секунд.
+     */
+    private long maxRetryAfterSeconds = 60;
+}
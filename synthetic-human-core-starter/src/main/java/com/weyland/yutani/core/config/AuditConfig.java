@@ -0,0 +1,117 @@
+package com.weyland.yutani.core.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.actuator.AuditLogEndpoint;
+import com.weyland.yutani.core.services.AuditMode;
+import com.weyland.yutani.core.services.AuditService;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.audit.AuditBuffer;
+import com.weyland.yutani.core.services.audit.AuditEventSerializer;
+import com.weyland.yutani.core.services.audit.AuditPublisher;
+import com.weyland.yutani.core.services.audit.AuditSink;
+import com.weyland.yutani.core.services.audit.AuditSummary;
+import com.weyland.yutani.core.services.audit.ConsoleAuditSink;
+import com.weyland.yutani.core.services.audit.KafkaAuditSink;
+import com.weyland.yutani.core.services.audit.file.AuditLog;
+import com.weyland.yutani.core.services.audit.file.FileAuditSink;
+import com.weyland.yutani.core.services.audit.outbox.AuditOutbox;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Конфигурация аудита методов, отмеченных {@code @WeylandWatchingYou}.
+ * При {@code audit.enabled: false} или {@code audit.mode: NONE} не создаётся ни аспект, ни буфер, ни публикатор,
+ * поэтому отмеченные методы вызываются без прокси аудита.
+ * Бины получателя событий выбираются по {@code audit.mode}, а в режиме {@code SUMMARY} - по {@code audit.summary.sink}.
+ */
+@Configuration
+@Conditional(AuditEnabledCondition.class)
+public class AuditConfig {
+
+    @Bean
+    public AuditBuffer auditBuffer(AuditProperties properties, MetricsService metricsService) {
+        AuditProperties.Buffer buffer = properties.getBuffer();
+        AuditBuffer auditBuffer = new AuditBuffer(buffer.getCapacity(), buffer.getOverflow(),
+                buffer.getBlockTimeoutMs(), metricsService);
+        metricsService.registerAuditBufferDepth(auditBuffer::size);
+        return auditBuffer;
+    }
+
+    @Bean
+    @ConditionalOnAuditSink(AuditMode.KAFKA)
+    public NewTopic auditTopic(AuditProperties properties) {
+        AuditProperties.Kafka kafka = properties.getKafka();
+        return new NewTopic(kafka.getTopic(), kafka.getPartitions(), kafka.getReplicationFactor());
+    }
+
+    @Bean
+    @ConditionalOnAuditSink(AuditMode.KAFKA)
+    @ConditionalOnProperty(prefix = "audit.kafka.outbox", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public AuditOutbox auditOutbox(AuditProperties properties, MetricsService metricsService) {
+        AuditProperties.Kafka.Outbox outbox = properties.getKafka().getOutbox();
+        AuditOutbox auditOutbox = new AuditOutbox(Path.of(outbox.getDirectory()),
+                outbox.getSegmentSizeMb() * 1024L * 1024, outbox.getMaxSizeMb() * 1024L * 1024);
+        auditOutbox.open();
+        metricsService.registerAuditOutboxBytes(auditOutbox::getPendingBytes);
+        return auditOutbox;
+    }
+
+    @Bean
+    @ConditionalOnAuditSink(AuditMode.FILE)
+    public AuditLog auditLog(AuditProperties properties) {
+        AuditProperties.File file = properties.getFile();
+        AuditLog auditLog = new AuditLog(Path.of(file.getDirectory()), file.getSegmentSizeMb() * 1024L * 1024,
+                Duration.ofMinutes(file.getRollIntervalMinutes()), Duration.ofHours(file.getRetentionHours()),
+                file.getMaxTotalMb() * 1024L * 1024);
+        auditLog.open();
+        return auditLog;
+    }
+
+    @Bean
+    @ConditionalOnAvailableEndpoint
+    @ConditionalOnAuditSink(AuditMode.FILE)
+    public AuditLogEndpoint auditLogEndpoint(AuditLog auditLog, ObjectMapper objectMapper) {
+        return new AuditLogEndpoint(auditLog, objectMapper);
+    }
+
+    @Bean
+    public AuditPublisher auditPublisher(AuditProperties properties, AuditBuffer auditBuffer,
+                                         ProducerFactory<String, String> producerFactory,
+                                         ObjectProvider<AuditLog> auditLog, ObjectProvider<AuditOutbox> auditOutbox,
+                                         ObjectMapper objectMapper, MetricsService metricsService) {
+        AuditEventSerializer serializer = new AuditEventSerializer(objectMapper, properties.getCapture());
+        AuditSink sink = switch (properties.sink()) {
+            case KAFKA -> new KafkaAuditSink(producerFactory,
+                    new AuditEventSerializer(objectMapper, properties.getKafka().getEncoding(), properties.getCapture()),
+                    properties.getKafka(),
+                    auditOutbox.getIfAvailable(), metricsService);
+            case FILE -> new FileAuditSink(auditLog.getObject(), serializer);
+            case CONSOLE -> new ConsoleAuditSink(serializer);
+            default -> throw new IllegalStateException(
+                    "audit.summary.sink должен быть CONSOLE, KAFKA или FILE: " + properties.sink());
+        };
+        AuditProperties.Buffer buffer = properties.getBuffer();
+        return new AuditPublisher(auditBuffer, sink, buffer.getBatchSize(), buffer.getFlushIntervalMs());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "audit", name = "mode", havingValue = "SUMMARY")
+    public AuditSummary auditSummary(AuditProperties properties, AuditBuffer auditBuffer) {
+        return new AuditSummary(auditBuffer, properties.getSummary().getWindowSeconds() * 1000);
+    }
+
+    @Bean
+    public AuditService auditService(AuditProperties properties, AuditBuffer auditBuffer,
+                                     ObjectProvider<AuditSummary> auditSummary) {
+        return new AuditService(properties, auditBuffer, auditSummary.getIfAvailable());
+    }
+}
@@ -0,0 +1,27 @@
+package com.weyland.yutani.core.config;
+
+import com.weyland.yutani.core.services.AuditMode;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Условие включённого аудита: {@code audit.enabled} не равно false, а {@code audit.mode} - не {@link AuditMode#NONE}.
+ */
+class AuditEnabledCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        Binder binder = Binder.get(context.getEnvironment());
+        if (!binder.bind("audit.enabled", Boolean.class).orElse(true)) {
+            return ConditionOutcome.noMatch("audit.enabled=false");
+        }
+        AuditMode mode = binder.bind("audit.mode", AuditMode.class).orElse(AuditMode.CONSOLE);
+        if (mode == AuditMode.NONE) {
+            return ConditionOutcome.noMatch("audit.mode=NONE");
+        }
+        return ConditionOutcome.match("audit.mode=" + mode);
+    }
+}
@@ -0,0 +1,310 @@
+package com.weyland.yutani.core.config;
+
+import com.weyland.yutani.core.annotations.WeylandWatchingYou.Severity;
+import com.weyland.yutani.core.services.AuditMode;
+import com.weyland.yutani.core.services.audit.AuditEncoding;
+import com.weyland.yutani.core.services.audit.AuditOverflowPolicy;
+import com.weyland.yutani.core.services.audit.AuditPartitionKey;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Настройки аудита методов, отмеченных {@code @WeylandWatchingYou} (префикс {@code audit}).
+ */
+@Data
+@ConfigurationProperties(prefix = "audit")
+public class AuditProperties {
+
+    /**
+     * Включает аудит.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Куда публикуются события аудита.
+     */
+    private AuditMode mode = AuditMode.CONSOLE;
+
+    private Kafka kafka = new Kafka();
+
+    /**
+     * Локальный журнал аудита для {@link AuditMode#FILE}.
+     */
+    private File file = new File();
+
+    /**
+     * Буфер событий между вызывающим потоком и фоновым публикатором.
+     */
+    private Buffer buffer = new Buffer();
+
+    /**
+     * Доля аудируемых вызовов по важности и категории.
+     */
+    private Policy policy = new Policy();
+
+    /**
+     * Ограничения захвата аргументов и результата вызова.
+     */
+    private Capture capture = new Capture();
+
+    /**
+     * Сводка по методам для {@link AuditMode#SUMMARY}.
+     */
+    private Summary summary = new Summary();
+
+    /**
+     * @return куда публикуются события: {@code mode}, а для {@link AuditMode#SUMMARY} - {@code summary.sink}
+     */
+    public AuditMode sink() {
+        return mode == AuditMode.SUMMARY ? summary.getSink() : mode;
+    }
+
+    @Data
+    public static class Kafka {
+
+        /**
+         * Топик событий аудита.
+         */
+        private String topic = "audit";
+
+        /**
+         * Количество разделов топика, создаваемого при запуске. Существующий топик с меньшим количеством
+         * разделов расширяется.
+         */
+        private int partitions = 6;
+
+        /**
+         * Коэффициент репликации топика, создаваемого при запуске.
+         */
+        private short replicationFactor = 1;
+
+        /**
+         * Формат сообщений.
+         */
+        private AuditEncoding encoding = AuditEncoding.JSON;
+
+        /**
+         * Ключ сообщений, по которому они распределяются между разделами.
+         */
+        private AuditPartitionKey key = AuditPartitionKey.AUDIT_ID;
+
+        /**
+         * Настройки производителя аудита поверх общих настроек {@code spring.kafka.producer}.
+         */
+        private Producer producer = new Producer();
+
+        /**
+         * Локальное хранилище событий, не отправленных в Kafka.
+         */
+        private Outbox outbox = new Outbox();
+
+        @Data
+        public static class Producer {
+
+            /**
+             * Сжатие пачек: {@code none}, {@code gzip}, {@code snappy}, {@code lz4} или {@code zstd}.
+             */
+            private String compressionType = "lz4";
+
+            /**
+             * Время накопления пачки перед отправкой, мс.
+             */
+            private int lingerMs = 20;
+
+            /**
+             * Максимальный размер пачки одного раздела, байт.
+             */
+            private int batchSize = 64 * 1024;
+
+            /**
+             * Подтверждение записи: {@code 0}, {@code 1} или {@code all}.
+             */
+            private String acks = "1";
+
+            /**
+             * Максимальное время ожидания места в буфере производителя или метаданных топика, мс.
+             * После него событие записывается в локальное хранилище.
+             */
+            private int maxBlockMs = 1000;
+
+            /**
+             * Максимальное время доставки сообщения с повторами, мс.
+             */
+            private int deliveryTimeoutMs = 60_000;
+        }
+
+        @Data
+        public static class Outbox {
+
+            /**
+             * Записывать неотправленные события в локальное хранилище и отправлять их после восстановления Kafka.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Каталог хранилища.
+             */
+            private String directory = "data/audit-outbox";
+
+            /**
+             * Размер сегмента хранилища, МБ.
+             */
+            private int segmentSizeMb = 16;
+
+            /**
+             * Максимальный объём неотправленных событий, МБ. Сверх него события отбрасываются.
+             */
+            private long maxSizeMb = 512;
+
+            /**
+             * Количество неподтверждённых сообщений, сверх которого события записываются в хранилище.
+             */
+            private int maxInFlight = 10_000;
+
+            /**
+             * Скорость отправки событий из хранилища, событий в секунду.
+             */
+            private double drainRate = 1000;
+
+            /**
+             * Количество событий, отправляемых из хранилища за один проход.
+             */
+            private int drainBatchSize = 500;
+
+            /**
+             * Пауза перед повторной отправкой после ошибки, мс.
+             */
+            private long retryIntervalMs = 5000;
+        }
+    }
+
+    @Data
+    public static class File {
+
+        /**
+         * Каталог сегментов журнала.
+         */
+        private String directory = "data/audit";
+
+        /**
+         * Размер сегмента, МБ.
+         */
+        private int segmentSizeMb = 64;
+
+        /**
+         * Максимальное время записи в один сегмент, мин.
+         */
+        private long rollIntervalMinutes = 60;
+
+        /**
+         * Время хранения сегмента после последней записи в него, ч.
+         */
+        private long retentionHours = 72;
+
+        /**
+         * Максимальный общий объём записанных в сегменты данных, МБ. Самые старые сегменты удаляются первыми.
+         */
+        private long maxTotalMb = 1024;
+    }
+
+    @Data
+    public static class Buffer {
+
+        /**
+         * Максимальное количество событий, ожидающих публикации.
+         */
+        private int capacity = 10_000;
+
+        /**
+         * Максимальное количество событий, публикуемых за один проход.
+         */
+        private int batchSize = 256;
+
+        /**
+         * Максимальное время ожидания событий публикатором перед публикацией неполной пачки, мс.
+         */
+        private long flushIntervalMs = 100;
+
+        /**
+         * Поведение при заполненном буфере.
+         */
+        private AuditOverflowPolicy overflow = AuditOverflowPolicy.DROP_OLDEST;
+
+        /**
+         * Максимальное время ожидания места в буфере для {@link AuditOverflowPolicy#BLOCK}, мс.
+         * Событие, не попавшее в буфер за это время, отбрасывается.
+         */
+        private long blockTimeoutMs = 50;
+    }
+
+    @Data
+    public static class Policy {
+
+        /**
+         * Доля аудируемых вызовов по важности из {@code @WeylandWatchingYou}: 1 - каждый вызов, 0 - ни одного.
+         * Не указанная важность аудируется полностью.
+         */
+        private Map<Severity, Double> severities = new EnumMap<>(Severity.class);
+
+        /**
+         * Доля аудируемых вызовов по категории. Заменяет долю по важности для методов этой категории.
+         */
+        private Map<String, Double> categories = new HashMap<>();
+
+        /**
+         * @return доля аудируемых вызовов метода с категорией {@code category} и важностью {@code severity}
+         */
+        public double sampleRate(String category, Severity severity) {
+            Double rate = categories.get(category);
+            if (rate == null) {
+                rate = severities.getOrDefault(severity, 1.0);
+            }
+            return Math.clamp(rate, 0.0, 1.0);
+        }
+    }
+
+    @Data
+    public static class Capture {
+
+        /**
+         * Максимальный размер строки или двоичного значения, байт. Длинные строки обрезаются с добавлением «…».
+         */
+        private int maxFieldBytes = 1024;
+
+        /**
+         * Максимальный размер события, байт. Аргументы и результат сверх него не записываются.
+         */
+        private int maxEventBytes = 8 * 1024;
+
+        /**
+         * Максимальная вложенность объектов и массивов, включая массив аргументов.
+         * Более глубокие значения заменяются на «…».
+         */
+        private int maxDepth = 4;
+
+        /**
+         * Записываемые поля объектов и ключи словарей на любой вложенности. Пустой список - все поля.
+         */
+        private List<String> fields = new ArrayList<>();
+    }
+
+    @Data
+    public static class Summary {
+
+        /**
+         * Куда публикуются сводки и события об ошибках: {@code CONSOLE}, {@code KAFKA} или {@code FILE}.
+         */
+        private AuditMode sink = AuditMode.CONSOLE;
+
+        /**
+         * Длительность окна сводки, с. Окна выравниваются по началу минуты, часа и т.д.
+         */
+        private long windowSeconds = 60;
+    }
+}
@@ -0,0 +1,398 @@
+package com.weyland.yutani.core.config;
+
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.queue.QueueBackend;
+import com.weyland.yutani.core.services.queue.WaitStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Настройки очереди команд андроида (префикс {@code command.queue}).
+ */
+@Data
+@ConfigurationProperties(prefix = "command.queue")
+public class CommandQueueProperties {
+
+    /**
+     * Максимальное количество команд, ожидающих выполнения, во всех полосах вместе. Делится поровну между полосами
+     * без собственной {@link Lane#getCapacity() ёмкости} за вычетом ёмкостей, заданных явно.
+     */
+    private int maxSize = 10;
+
+    /**
+     * Пауза рабочего потока после обработки очередной пачки команд, мс. Не используется в режиме
+     * {@link Pacing} с заданной скоростью.
+     */
+    private long processingDelayMs = 10000;
+
+    /**
+     * Количество рабочих потоков, разбирающих очередь.
+     */
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Максимальное количество команд, забираемых рабочим потоком за один проход.
+     */
+    private int batchSize = 16;
+
+    /**
+     * Количество шардов очереди. Команды одного автора всегда попадают в один шард,
+     * поэтому порядок их выполнения сохраняется при любом числе рабочих потоков.
+     */
+    private int shards = 32;
+
+    /**
+     * Максимальное количество команд в одном пакетном запросе и размер порции потоковой загрузки.
+     */
+    private int maxBatchSize = 1000;
+
+    /**
+     * Реализация хранилища команд в шардах. Не используется в режиме справедливой очереди.
+     */
+    private QueueBackend backend = QueueBackend.LINKED;
+
+    /**
+     * Ёмкость кольцевого буфера одного шарда для {@link QueueBackend#RING}, 0 - ёмкость полосы.
+     */
+    private int ringSize = 0;
+
+    /**
+     * Способ ожидания работы свободными рабочими потоками.
+     */
+    private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
+    /**
+     * Сливать команду с такой же командой (автор, описание, приоритет), которая ещё ожидает в очереди.
+     */
+    private boolean coalesce = false;
+
+    /**
+     * Настройки полос очереди по приоритетам. Не указанные полосы получают значения по умолчанию:
+     * вес 4 для CRITICAL, вес 1 для остальных, ёмкость - доля {@link #maxSize}.
+     */
+    private Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+
+    /**
+     * Справедливое распределение очереди между авторами.
+     */
+    private Fair fair = new Fair();
+
+    /**
+     * Журнал упреждающей записи для сохранения очереди между перезапусками.
+     */
+    private Journal journal = new Journal();
+
+    /**
+     * Колесо таймеров для отложенных и повторяющихся команд.
+     */
+    private Schedule schedule = new Schedule();
+
+    /**
+     * Хранилище состояний принятых команд.
+     */
+    private Status status = new Status();
+
+    /**
+     * Общая очередь узлов в разделённом топике Kafka.
+     */
+    private Distributed distributed = new Distributed();
+
+    /**
+     * Выполнение команд с заданной скоростью вместо фиксированной паузы.
+     */
+    private Pacing pacing = new Pacing();
+
+    /**
+     * Автоматическое изменение количества рабочих потоков по нагрузке.
+     */
+    private Autoscale autoscale = new Autoscale();
+
+    /**
+     * Снятие с выполнения команд, ожидающих дольше допустимого.
+     */
+    private Expiry expiry = new Expiry();
+
+    /**
+     * Возвращает настройки полосы с учётом значений по умолчанию.
+     *
+     * @param priority приоритет полосы
+     * @return вес и ёмкость полосы
+     */
+    public Lane lane(Priority priority) {
+        Lane configured = lanes.get(priority);
+        int defaultWeight = priority == Priority.CRITICAL ? 4 : 1;
+        if (configured == null) {
+            return new Lane(defaultWeight, defaultCapacity(priority));
+        }
+        return new Lane(
+                configured.getWeight() > 0 ? configured.getWeight() : defaultWeight,
+                configured.getCapacity() > 0 ? configured.getCapacity() : defaultCapacity(priority)
+        );
+    }
+
+    /**
+     * Доля {@link #maxSize} для полосы без заданной ёмкости: остаток после полос с заданной ёмкостью делится поровну,
+     * лишние места достаются первым полосам. Полоса получает не меньше одного места.
+     */
+    private int defaultCapacity(Priority priority) {
+        int remaining = maxSize;
+        int unset = 0;
+        int index = 0;
+        for (Priority other : Priority.values()) {
+            Lane configured = lanes.get(other);
+            if (configured != null && configured.getCapacity() > 0) {
+                remaining -= configured.getCapacity();
+            } else {
+                if (other.ordinal() < priority.ordinal()) {
+                    index++;
+                }
+                unset++;
+            }
+        }
+        remaining = Math.max(0, remaining);
+        return Math.max(1, remaining / unset + (index < remaining % unset ? 1 : 0));
+    }
+
+    @Data
+    public static class Fair {
+
+        /**
+         * Включает отдельные подочереди для каждого автора с обходом deficit round-robin.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Количество команд, которое автор получает за один ход обхода.
+         */
+        private int quantum = 1;
+
+        /**
+         * Максимальное количество команд одного автора в полосе, 0 - без ограничения.
+         */
+        private int maxPerAuthor = 0;
+    }
+
+    @Data
+    public static class Journal {
+
+        /**
+         * Включает запись принятых команд в журнал и их восстановление при старте.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Каталог сегментов журнала.
+         */
+        private String directory = "data/command-journal";
+
+        /**
+         * Размер одного сегмента журнала, МБ.
+         */
+        private int segmentSizeMb = 64;
+
+        /**
+         * Максимальный интервал между сбросами журнала на диск при отсутствии ожидающих подтверждения, мс.
+         */
+        private long flushIntervalMs = 2;
+
+        /**
+         * Подтверждать приём команды только после сброса её записи на диск.
+         */
+        private boolean awaitFlush = true;
+    }
+
+    @Data
+    public static class Schedule {
+
+        /**
+         * Шаг нижнего уровня колеса таймеров, мс. Определяет точность срабатывания.
+         */
+        private long tickMs = 10;
+
+        /**
+         * Количество корзин на каждом уровне колеса.
+         */
+        private int wheelSize = 512;
+
+        /**
+         * Максимальное количество ожидающих отложенных команд.
+         */
+        private int maxPending = 500_000;
+
+        /**
+         * Максимальная отсрочка первого выполнения и максимальный интервал повторения, дн.
+         */
+        private long maxDelayDays = 365;
+    }
+
+    @Data
+    public static class Status {
+
+        /**
+         * Максимальное количество хранимых состояний команд.
+         */
+        private int maxEntries = 100_000;
+
+        /**
+         * Время хранения состояния выполненной команды, с.
+         */
+        private long ttlSeconds = 600;
+
+        /**
+         * Максимальное время ожидания завершения команды в запросе состояния, с.
+         */
+        private long maxWaitSeconds = 30;
+    }
+
+    @Data
+    public static class Pacing {
+
+        /**
+         * Выполнять команды с целевой скоростью {@link #rate}. Рабочие потоки не делают паузу после пачки
+         * и ждут только пустой очереди или следующего разрешения.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Целевая скорость выполнения команд на узле, команд в секунду.
+         */
+        private double rate = 10;
+
+        /**
+         * Запас команд, которые можно выполнить без ожидания после простоя.
+         */
+        private int burst = 10;
+    }
+
+    @Data
+    public static class Expiry {
+
+        /**
+         * Время жизни команды, отсчитываемое от её времени {@code time}, с. Команда, не начатая за это время,
+         * снимается с выполнения при выборке из очереди. 0 - ограничен только собственный срок команды.
+         */
+        private long ttlSeconds = 0;
+    }
+
+    @Data
+    public static class Autoscale {
+
+        /**
+         * Добавлять рабочие потоки при росте очереди и убирать их при снижении нагрузки.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Минимальное количество рабочих потоков.
+         */
+        private int minWorkers = 1;
+
+        /**
+         * Максимальное количество рабочих потоков.
+         */
+        private int maxWorkers = 64;
+
+        /**
+         * Глубина очереди, при которой добавляются рабочие потоки.
+         */
+        private int highDepth = 100;
+
+        /**
+         * Глубина очереди, ниже которой рабочие потоки могут быть убраны.
+         */
+        private int lowDepth = 10;
+
+        /**
+         * Оценка ожидания новой команды, при которой добавляются рабочие потоки, мс.
+         */
+        private long highWaitMs = 5000;
+
+        /**
+         * Оценка ожидания новой команды, ниже которой рабочие потоки могут быть убраны, мс.
+         */
+        private long lowWaitMs = 500;
+
+        /**
+         * Количество рабочих потоков, добавляемых или убираемых за один шаг.
+         */
+        private int step = 1;
+
+        /**
+         * Интервал проверки нагрузки, мс.
+         */
+        private long intervalMs = 1000;
+
+        /**
+         * Минимальное время между изменениями количества рабочих потоков, мс.
+         */
+        private long cooldownMs = 10000;
+    }
+
+    @Data
+    public static class Distributed {
+
+        /**
+         * Передавать команды выбранных приоритетов в топик Kafka, который разбирают все узлы одной группы.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Приоритеты, команды которых передаются в топик. Остальные остаются в локальной очереди узла.
+         */
+        private Set<Priority> priorities = EnumSet.of(Priority.COMMON);
+
+        /**
+         * Топик команд. Ключ записи - автор, поэтому команды одного автора попадают в один раздел.
+         */
+        private String topic = "android-commands";
+
+        /**
+         * Количество разделов топика, создаваемого при запуске. Ограничивает число узлов и потоков,
+         * одновременно разбирающих топик.
+         */
+        private int partitions = 12;
+
+        /**
+         * Фактор репликации топика, создаваемого при запуске.
+         */
+        private short replicationFactor = 1;
+
+        /**
+         * Группа потребителей рабочих потоков.
+         */
+        private String groupId = "android-workers";
+
+        /**
+         * Количество потоков-потребителей на узле.
+         */
+        private int concurrency = 2;
+
+        /**
+         * Максимальное время ожидания подтверждения записи команды брокером, мс.
+         */
+        private long ackTimeoutMs = 5000;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Lane {
+
+        /**
+         * Относительная доля пропускной способности рабочих потоков, отдаваемая полосе.
+         */
+        private int weight;
+
+        /**
+         * Количество мест в очереди, зарезервированных за полосой.
+         */
+        private int capacity;
+    }
+}
@@ -0,0 +1,23 @@
+package com.weyland.yutani.core.config;
+
+import com.weyland.yutani.core.services.AuditMode;
+import org.springframework.context.annotation.Conditional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Регистрирует бин, если события аудита публикуются в {@link #value()}: {@code audit.mode} равен ему
+ * или {@code audit.mode: SUMMARY}, а ему равен {@code audit.summary.sink}.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Conditional(OnAuditSinkCondition.class)
+@interface ConditionalOnAuditSink {
+
+    AuditMode value();
+}
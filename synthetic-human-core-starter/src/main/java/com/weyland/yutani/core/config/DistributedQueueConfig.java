@@ -0,0 +1,35 @@
+package com.weyland.yutani.core.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.queue.KafkaCommandQueue;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * Конфигурация общей очереди узлов в Kafka ({@code command.queue.distributed.enabled}).
+ * Использует общие {@link KafkaTemplate} и фабрику потребителей приложения.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "command.queue.distributed", name = "enabled", havingValue = "true")
+public class DistributedQueueConfig {
+
+    @Bean
+    public NewTopic commandTopic(CommandQueueProperties properties) {
+        CommandQueueProperties.Distributed distributed = properties.getDistributed();
+        return new NewTopic(distributed.getTopic(), distributed.getPartitions(), distributed.getReplicationFactor());
+    }
+
+    @Bean
+    public KafkaCommandQueue kafkaCommandQueue(CommandQueueProperties properties,
+                                               KafkaTemplate<String, String> kafkaTemplate,
+                                               ConsumerFactory<String, String> consumerFactory,
+                                               ObjectMapper objectMapper, MetricsService metricsService) {
+        return new KafkaCommandQueue(properties.getDistributed(), kafkaTemplate, consumerFactory, objectMapper,
+                metricsService);
+    }
+}
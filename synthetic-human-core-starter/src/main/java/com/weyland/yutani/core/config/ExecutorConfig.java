@@ -2,13 +2,22 @@ package com.weyland.yutani.core.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 public class ExecutorConfig {
 
     @Bean
-    public ThreadPoolTaskExecutor taskExecutor() {
+    public AsyncTaskExecutor taskExecutor(SyntheticHumanProperties properties) {
+        SyntheticHumanProperties.VirtualThreads virtualThreads = properties.getVirtualThreads();
+        if (virtualThreads.isEnabled()) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("android-task-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(virtualThreads.getAsyncConcurrencyLimit());
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(10);
         executor.setMaxPoolSize(20);
@@ -17,4 +26,4 @@ public class ExecutorConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package com.weyland.yutani.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки обработки заголовка {@code Idempotency-Key} (префикс {@code command.idempotency}).
+ */
+@Data
+@ConfigurationProperties(prefix = "command.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Включает повторную выдачу сохранённого ответа на запрос с уже использованным ключом.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Время хранения ответа, с.
+     */
+    private long ttlSeconds = 3600;
+
+    /**
+     * Максимальное количество хранимых ответов. Самые старые ответы вытесняются первыми.
+     */
+    private int maxEntries = 100_000;
+
+    /**
+     * Максимальная длина ключа, символов.
+     */
+    private int maxKeyLength = 255;
+
+    /**
+     * Максимальное время ожидания ответа на исходный запрос, который ещё выполняется, с.
+     */
+    private long maxWaitSeconds = 30;
+}
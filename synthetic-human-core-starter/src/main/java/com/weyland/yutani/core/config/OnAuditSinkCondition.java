@@ -0,0 +1,28 @@
+package com.weyland.yutani.core.config;
+
+import com.weyland.yutani.core.services.AuditMode;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Условие {@link ConditionalOnAuditSink}.
+ */
+class OnAuditSinkCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        AuditMode expected = (AuditMode) metadata.getAnnotationAttributes(ConditionalOnAuditSink.class.getName())
+                .get("value");
+        Binder binder = Binder.get(context.getEnvironment());
+        AuditMode sink = binder.bind("audit.mode", AuditMode.class).orElse(AuditMode.CONSOLE);
+        if (sink == AuditMode.SUMMARY) {
+            sink = binder.bind("audit.summary.sink", AuditMode.class).orElse(AuditMode.CONSOLE);
+        }
+        return sink == expected
+                ? ConditionOutcome.match("audit sink=" + sink)
+                : ConditionOutcome.noMatch("audit sink=" + sink);
+    }
+}
@@ -1,27 +1,35 @@
 package com.weyland.yutani.core.config;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.weyland.yutani.core.services.AuditService;
+import com.weyland.yutani.core.actuator.CommandQueueEndpoint;
 import com.weyland.yutani.core.services.CommandQueueService;
 import com.weyland.yutani.core.services.ErrorHandlerService;
 import com.weyland.yutani.core.services.MetricsService;
 import io.micrometer.core.instrument.MeterRegistry;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.context.annotation.Import;
 
 @Configuration
 @ComponentScan("com.weyland.yutani.core.services")
+@Import({ExecutorConfig.class, VirtualThreadConfig.class, DistributedQueueConfig.class, AuditConfig.class})
+@EnableConfigurationProperties({CommandQueueProperties.class, AdmissionProperties.class,
+        IdempotencyProperties.class, SyntheticHumanProperties.class, AuditProperties.class})
 public class StarterConfiguration {
 
     @Bean
-    public CommandQueueService commandQueueService(
-            @Value("${command.queue.max-size:10}") int maxQueueSize,
-            @Value("${command.queue.processing-delay-ms:10000}") long processingDelayMs,
-            MetricsService metricsService) {
-        return new CommandQueueService(maxQueueSize, processingDelayMs, metricsService);
+    public CommandQueueService commandQueueService(CommandQueueProperties properties,
+                                                   SyntheticHumanProperties syntheticHumanProperties,
+                                                   MetricsService metricsService) {
+        return new CommandQueueService(properties, syntheticHumanProperties, metricsService);
+    }
+
+    @Bean
+    @ConditionalOnAvailableEndpoint
+    public CommandQueueEndpoint commandQueueEndpoint(CommandQueueService commandQueueService) {
+        return new CommandQueueEndpoint(commandQueueService);
     }
 
     @Bean
@@ -34,9 +42,4 @@ public class StarterConfiguration {
     public MetricsService metricsService(MeterRegistry registry) {
         return new MetricsService(registry);
     }
-
-    @Bean
-    public AuditService auditService(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
-        return new AuditService(kafkaTemplate, objectMapper);
-    }
 }
@@ -0,0 +1,42 @@
+package com.weyland.yutani.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Общие настройки стартера андроида (префикс {@code synthetic-human}).
+ */
+@Data
+@ConfigurationProperties(prefix = "synthetic-human")
+public class SyntheticHumanProperties {
+
+    /**
+     * Выполнение на виртуальных потоках Java 21.
+     */
+    private VirtualThreads virtualThreads = new VirtualThreads();
+
+    @Data
+    public static class VirtualThreads {
+
+        /**
+         * Переводит на виртуальные потоки обработчики запросов Tomcat, рабочие потоки очереди команд
+         * и выполнение методов {@code @Async}.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Максимальное количество одновременно выполняемых задач {@code @Async}, -1 - без ограничения.
+         */
+        private int asyncConcurrencyLimit = -1;
+
+        /**
+         * Сообщать о закреплении виртуального потока за несущим (событие JFR {@code jdk.VirtualThreadPinned}).
+         */
+        private boolean pinningDiagnostics = true;
+
+        /**
+         * Минимальная длительность закрепления, о которой сообщается, мс.
+         */
+        private long pinnedThresholdMs = 20;
+    }
+}
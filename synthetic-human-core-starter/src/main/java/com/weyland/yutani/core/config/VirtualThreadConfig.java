@@ -0,0 +1,32 @@
+package com.weyland.yutani.core.config;
+
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.diagnostics.VirtualThreadPinningMonitor;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация режима виртуальных потоков ({@code synthetic-human.virtual-threads.enabled}).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "synthetic-human.virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    @ConditionalOnClass(name = "org.apache.catalina.startup.Tomcat")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(new VirtualThreadExecutor("android-http-"));
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "synthetic-human.virtual-threads", name = "pinning-diagnostics",
+            havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(SyntheticHumanProperties properties,
+                                                                   MetricsService metricsService) {
+        return new VirtualThreadPinningMonitor(properties.getVirtualThreads().getPinnedThresholdMs(), metricsService);
+    }
+}
@@ -0,0 +1,47 @@
+package com.weyland.yutani.core.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Результат приёма одной команды из пакета. Пустые поля не сериализуются.
+ *
+ * @param index             позиция команды в пакете
+ * @param status            queued, scheduled, rejected или invalid
+ * @param commandId         идентификатор принятой команды
+ * @param retryAfterSeconds рекомендуемая задержка повтора отклонённой команды, с
+ * @param error             причина, по которой команда не принята
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult(int index, String status, String commandId, Long retryAfterSeconds, String error) {
+
+    public static final String QUEUED = "queued";
+    public static final String SCHEDULED = "scheduled";
+    public static final String REJECTED = "rejected";
+    public static final String INVALID = "invalid";
+
+    public static BatchItemResult queued(int index, String commandId) {
+        return new BatchItemResult(index, QUEUED, commandId, null, null);
+    }
+
+    public static BatchItemResult scheduled(int index, String commandId) {
+        return new BatchItemResult(index, SCHEDULED, commandId, null, null);
+    }
+
+    public static BatchItemResult rejected(int index, long retryAfterSeconds) {
+        return new BatchItemResult(index, REJECTED, null, retryAfterSeconds > 0 ? retryAfterSeconds : null, null);
+    }
+
+    public static BatchItemResult invalid(int index, String error) {
+        return new BatchItemResult(index, INVALID, null, null, error);
+    }
+
+    @JsonIgnore
+    public boolean isAccepted() {
+        return QUEUED.equals(status) || SCHEDULED.equals(status);
+    }
+
+    public BatchItemResult withIndex(int newIndex) {
+        return new BatchItemResult(newIndex, status, commandId, retryAfterSeconds, error);
+    }
+}
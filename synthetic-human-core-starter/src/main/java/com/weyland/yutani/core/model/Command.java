@@ -28,4 +28,13 @@ public class Command {
 
     @NotNull(message = "Время не может быть пустым")
     private LocalDateTime time;
+
+    /**
+     * Крайний срок выполнения. Команда, не начатая до этого времени, снимается с выполнения; null - без срока.
+     */
+    private LocalDateTime deadline;
+
+    public Command(String description, Priority priority, String author, LocalDateTime time) {
+        this(description, priority, author, time, null);
+    }
 }
@@ -0,0 +1,12 @@
+package com.weyland.yutani.core.model;
+
+/**
+ * Состояние принятой команды. {@link #EXPIRED} - команда снята с выполнения по истечении срока.
+ */
+public enum CommandState {
+    SCHEDULED, QUEUED, RUNNING, DONE, FAILED, EXPIRED;
+
+    public boolean isFinished() {
+        return this == DONE || this == FAILED || this == EXPIRED;
+    }
+}
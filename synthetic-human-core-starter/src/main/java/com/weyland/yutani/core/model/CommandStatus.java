@@ -0,0 +1,23 @@
+package com.weyland.yutani.core.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+/**
+ * Снимок состояния принятой команды.
+ *
+ * @param commandId   идентификатор команды
+ * @param state       текущее состояние
+ * @param priority    приоритет команды
+ * @param author      автор команды
+ * @param submittedAt время приёма команды
+ * @param startedAt   время начала выполнения
+ * @param finishedAt  время завершения выполнения
+ * @param error       причина ошибки выполнения
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CommandStatus(String commandId, CommandState state, Priority priority, String author,
+                            LocalDateTime submittedAt, LocalDateTime startedAt, LocalDateTime finishedAt,
+                            String error) {
+}
@@ -3,5 +3,15 @@ package com.weyland.yutani.core.services;
 public enum AuditMode {
     CONSOLE,
     KAFKA,
+    /**
+     * Локальный журнал из сегментов, отображённых в память, с поиском через actuator {@code auditlog}.
+     */
+    FILE,
+    /**
+     * Сводка по методам за окно {@code audit.summary.window-seconds}: количество вызовов, ошибок и распределение
+     * времени выполнения. Отдельные события публикуются только для ошибок. Получатель задаётся
+     * {@code audit.summary.sink}.
+     */
+    SUMMARY,
     NONE
 }
@@ -1,108 +1,126 @@
 package com.weyland.yutani.core.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.weyland.yutani.core.annotations.WeylandWatchingYou;
+import com.weyland.yutani.core.config.AuditProperties;
+import com.weyland.yutani.core.services.audit.AuditBuffer;
+import com.weyland.yutani.core.services.audit.AuditEvent;
+import com.weyland.yutani.core.services.audit.AuditMethod;
+import com.weyland.yutani.core.services.audit.AuditStatus;
+import com.weyland.yutani.core.services.audit.AuditSummary;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.stereotype.Component;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
 
-import java.time.Instant;
-import java.util.HashMap;
+import java.lang.reflect.Method;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Аспект аудита методов, отмеченных {@code @WeylandWatchingYou}. Регистрируется {@code AuditConfig} только
+ * при включённом аудите, поэтому проверок режима на каждом вызове нет.
+ * <p>
+ * В режиме {@code SUMMARY} каждый вызов учитывается в {@link AuditSummary}, а событие создаётся только
+ * для вызова, завершённого исключением; доля аудита из {@code audit.policy} применяется к этим событиям.
+ */
 @Slf4j
 @Aspect
-@Component
 @RequiredArgsConstructor
 public class AuditService {
-    
+
     static {
         log.info("Сервис Аудита инициализирован");
     }
 
-    @Value("${audit.mode:CONSOLE}")
-    private AuditMode mode = AuditMode.CONSOLE;
-    @Value("${audit.kafka.topic:audit}")
-    private String kafkaTopic;
-    @Value("${audit.enabled:true}")
-    private boolean enabled;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final AuditProperties properties;
+    private final AuditBuffer buffer;
+
+    /**
+     * Сводка вызовов для режима {@code SUMMARY}, в остальных режимах null.
+     */
+    private final AuditSummary summary;
 
-    @Around("@annotation(weylandWatchingYou)")
-    public Object audit(ProceedingJoinPoint joinPoint, WeylandWatchingYou weylandWatchingYou) throws Throwable {
-        log.info("Аудит включен для следующего метода: {}", joinPoint.getSignature().toShortString());
+    /**
+     * Сведения об отслеживаемых методах по классу объекта и методу, вычисляемые при первом вызове.
+     */
+    private final ClassValue<Map<Method, AuditMethod>> methods = new ClassValue<>() {
+        @Override
+        protected Map<Method, AuditMethod> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
 
-        if (!enabled) {
-            log.info("Аудит отключен");
+    /**
+     * Аннотация не связывается с параметром совета: такой срез проверяется при каждом вызове,
+     * а аннотация читается один раз при первом вызове метода.
+     */
+    @Around("@annotation(com.weyland.yutani.core.annotations.WeylandWatchingYou)")
+    public Object audit(ProceedingJoinPoint joinPoint) throws Throwable {
+        AuditMethod auditMethod = resolve(joinPoint);
+        if (summary != null) {
+            return summarize(joinPoint, auditMethod);
+        }
+        if (!auditMethod.sample()) {
             return joinPoint.proceed();
         }
-        String auditId = UUID.randomUUID().toString();
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String methodName = signature.getMethod().getName();
-        String className = joinPoint.getTarget().getClass().getSimpleName();
-        String fullMethodName = String.format("%s.%s", className, methodName);
+        String auditId = AuditEvent.newAuditId();
 
-        logAuditEntry(auditId, "START", fullMethodName, null, null, null, weylandWatchingYou.value());
+        logAuditEntry(auditId, AuditStatus.START, auditMethod, null, null, null);
 
         try {
             Object result = joinPoint.proceed();
-            logAuditEntry(auditId, "SUCCESS", fullMethodName, joinPoint.getArgs(), result, null, weylandWatchingYou.value());
+            logAuditEntry(auditId, AuditStatus.SUCCESS, auditMethod, joinPoint.getArgs(), result, null);
             return result;
         } catch (Throwable throwable) {
-            logAuditEntry(auditId, "ERROR", fullMethodName, joinPoint.getArgs(), null, throwable.getMessage(), weylandWatchingYou.value());
+            logAuditEntry(auditId, AuditStatus.ERROR, auditMethod, joinPoint.getArgs(), null, throwable.getMessage());
             throw throwable;
         }
     }
 
-
-    private void logAuditEntry(String auditId, String status, String methodName,
-                               Object[] args, Object result, String error, String description) {
-        log.info("Creating audit entry - ID: {}, Status: {}, Method: {}", auditId, status, methodName);
+    private Object summarize(ProceedingJoinPoint joinPoint, AuditMethod auditMethod) throws Throwable {
+        long start = System.nanoTime();
         try {
-            Map<String, Object> auditData = new HashMap<>();
-            auditData.put("auditId", auditId);
-            auditData.put("timestamp", Instant.now().toString());
-            auditData.put("status", status);
-            auditData.put("method", methodName);
-            auditData.put("description", description);
-
-            if (args != null && args.length > 0) {
-                auditData.put("arguments", args);
-            }
-            if (result != null) {
-                auditData.put("result", result);
-            }
-            if (error != null) {
-                auditData.put("error", error);
+            Object result = joinPoint.proceed();
+            summary.record(auditMethod, System.nanoTime() - start, false);
+            return result;
+        } catch (Throwable throwable) {
+            summary.record(auditMethod, System.nanoTime() - start, true);
+            if (auditMethod.sample()) {
+                logAuditEntry(AuditEvent.newAuditId(), AuditStatus.ERROR, auditMethod, joinPoint.getArgs(), null,
+                        throwable.getMessage());
             }
+            throw throwable;
+        }
+    }
 
-            String auditMessage = objectMapper.writeValueAsString(auditData);
+    private AuditMethod resolve(ProceedingJoinPoint joinPoint) {
+        Class<?> targetClass = joinPoint.getTarget().getClass();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Map<Method, AuditMethod> byMethod = methods.get(targetClass);
+        AuditMethod auditMethod = byMethod.get(method);
+        if (auditMethod == null) {
+            auditMethod = byMethod.computeIfAbsent(method, m -> {
+                WeylandWatchingYou annotation = AnnotationUtils.findAnnotation(
+                        AopUtils.getMostSpecificMethod(m, targetClass), WeylandWatchingYou.class);
+                return AuditMethod.of(targetClass, m, annotation,
+                        properties.getPolicy().sampleRate(annotation.category(), annotation.severity()));
+            });
+        }
+        return auditMethod;
+    }
 
-            if (mode == AuditMode.KAFKA && kafkaTemplate != null) {
-                kafkaTemplate.send(kafkaTopic, auditMessage)
-                        .whenComplete((sendResult, ex) -> {
-                            if (ex == null) {
-                                log.trace("Сообщение аудита отправлено: {}", auditId);
-                            } else {
-                                log.error("Ошибка при отправке сообщения аудита: {}", auditId, ex);
-                            }
-                        });
-            } else if (mode == AuditMode.CONSOLE) {
-                log.info("[AUDIT] {}", auditMessage);
-            }
-        } catch (JsonProcessingException e) {
-            log.error("Ошибка сериализации данных аудита: {}", e.getMessage(), e);
+    /**
+     * Передаёт событие фоновому публикатору. Сериализация и отправка выполняются вне вызывающего потока.
+     */
+    private void logAuditEntry(String auditId, AuditStatus status, AuditMethod method,
+                               Object[] args, Object result, String error) {
+        AuditEvent event = new AuditEvent(auditId, System.currentTimeMillis(), status, method, args, result, error);
+        if (!buffer.offer(event)) {
+            log.debug("Буфер аудита заполнен, событие {} {} отброшено", status, auditId);
         }
     }
 }
-
-
@@ -0,0 +1,77 @@
+package com.weyland.yutani.core.services;
+
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Изменяет количество рабочих потоков очереди по нагрузке ({@code command.queue.autoscale.enabled}).
+ * Потоки добавляются, когда глубина очереди или оценка ожидания новой команды выше верхней границы,
+ * и убираются, когда обе величины ниже нижней границы. Между изменениями выдерживается пауза,
+ * чтобы количество потоков не колебалось на каждой пачке.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "command.queue.autoscale", name = "enabled", havingValue = "true")
+public class CommandQueueAutoscaler {
+
+    private final CommandQueueService queueService;
+    private final CommandQueueProperties.Autoscale properties;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "android-autoscaler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long lastChangeAt;
+
+    public CommandQueueAutoscaler(CommandQueueService queueService, CommandQueueProperties properties) {
+        this.queueService = queueService;
+        this.properties = properties.getAutoscale();
+    }
+
+    @PostConstruct
+    public void init() {
+        timer.scheduleWithFixedDelay(this::adjust, properties.getIntervalMs(), properties.getIntervalMs(),
+                TimeUnit.MILLISECONDS);
+        log.info("Автомасштабирование рабочих потоков включено: от {} до {}", properties.getMinWorkers(),
+                properties.getMaxWorkers());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private void adjust() {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - lastChangeAt < properties.getCooldownMs()) {
+                return;
+            }
+            int depth = queueService.getQueueSize();
+            long waitMs = queueService.estimateQueueWaitMillis();
+            int workers = queueService.getWorkerCount();
+            int target = workers;
+            if (depth >= properties.getHighDepth() || waitMs >= properties.getHighWaitMs()) {
+                target = Math.min(properties.getMaxWorkers(), workers + properties.getStep());
+            } else if (depth <= properties.getLowDepth() && waitMs <= properties.getLowWaitMs()) {
+                target = Math.max(properties.getMinWorkers(), workers - properties.getStep());
+            }
+            if (target != workers) {
+                log.info("Автомасштабирование: глубина очереди {}, оценка ожидания {} мс, рабочих потоков {} -> {}",
+                        depth, waitMs == Long.MAX_VALUE ? "-" : waitMs, workers, target);
+                queueService.setWorkerCount(target);
+                lastChangeAt = now;
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка автомасштабирования рабочих потоков: {}", e.getMessage(), e);
+        }
+    }
+}
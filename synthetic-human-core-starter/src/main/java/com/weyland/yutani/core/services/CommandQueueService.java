@@ -1,46 +1,170 @@
 package com.weyland.yutani.core.services;
 
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import com.weyland.yutani.core.config.SyntheticHumanProperties;
 import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.CommandState;
+import com.weyland.yutani.core.model.CommandStatus;
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.exceptions.CommandExecutionException;
 import com.weyland.yutani.core.services.exceptions.CommandQueueOverflowException;
+import com.weyland.yutani.core.services.journal.CommandJournal;
+import com.weyland.yutani.core.services.queue.*;
+import com.weyland.yutani.core.services.status.CommandStatusStore;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 public class CommandQueueService {
+    private static final long IDLE_POLL_MS = 200;
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
     @Getter
     private final int maxQueueSize;
     private final long processingDelayMs;
+    private final int batchSize;
+    private final boolean fair;
+    private final QueueBackend backend;
     private final MetricsService metricsService;
-    private final BlockingQueue<Command> queue;
-    private final ScheduledExecutorService executor;
+    private final LaneScheduler scheduler;
+    private final CommandJournal journal;
+    private final CommandStatusStore statuses;
+    private final PendingCommandIndex pendingIndex;
+    private final CommandPacer pacer;
+    private volatile boolean pacing;
+    private final Duration ttl;
+    private final boolean awaitJournalFlush;
+    private final boolean virtualThreads;
+    private final WaitStrategy waitStrategy;
+    private final ExecutorService executor;
+    private final AtomicInteger activeWorkers = new AtomicInteger(0);
+    private volatile int targetWorkers;
+    private KafkaCommandQueue distributed;
     private volatile boolean isRunning;
 
-    public CommandQueueService(
-            @Value("${command.queue.max-size:100}") int maxQueueSize,
-            @Value("${command.queue.processing-delay-ms:100}") long processingDelayMs,
-            MetricsService metricsService) {
-        this.maxQueueSize = maxQueueSize;
-        this.processingDelayMs = processingDelayMs;
+    public CommandQueueService(CommandQueueProperties properties, MetricsService metricsService) {
+        this(properties, new SyntheticHumanProperties(), metricsService);
+    }
+
+    @Autowired
+    public CommandQueueService(CommandQueueProperties properties, SyntheticHumanProperties syntheticHumanProperties,
+                               MetricsService metricsService) {
+        this.maxQueueSize = properties.getMaxSize();
+        this.processingDelayMs = properties.getProcessingDelayMs();
+        this.targetWorkers = Math.max(1, properties.getWorkers());
+        this.batchSize = Math.max(1, properties.getBatchSize());
         this.metricsService = metricsService;
-        this.queue = new LinkedBlockingQueue<>(maxQueueSize);
-        this.executor = Executors.newSingleThreadScheduledExecutor();
+        CommandQueueProperties.Fair fairProperties = properties.getFair();
+        this.fair = fairProperties.isEnabled();
+        this.backend = fair ? null : properties.getBackend();
+        int maxPerAuthor = fair ? fairProperties.getMaxPerAuthor() : 0;
+        List<CommandLane> lanes = new ArrayList<>();
+        for (Priority priority : Priority.values()) {
+            CommandQueueProperties.Lane lane = properties.lane(priority);
+            lanes.add(new CommandLane(priority, lane.getWeight(), lane.getCapacity(), properties.getShards(),
+                    maxPerAuthor, bufferFactory(properties, lane.getCapacity())));
+        }
+        this.waitStrategy = properties.getWaitStrategy();
+        this.scheduler = new LaneScheduler(lanes, waitStrategy);
+        CommandQueueProperties.Journal journalProperties = properties.getJournal();
+        this.journal = journalProperties.isEnabled()
+                ? new CommandJournal(Path.of(journalProperties.getDirectory()),
+                        journalProperties.getSegmentSizeMb() * 1024L * 1024, journalProperties.getFlushIntervalMs())
+                : null;
+        this.awaitJournalFlush = journalProperties.isAwaitFlush();
+        CommandQueueProperties.Status statusProperties = properties.getStatus();
+        this.statuses = new CommandStatusStore(statusProperties.getMaxEntries(), statusProperties.getTtlSeconds());
+        this.pendingIndex = properties.isCoalesce() ? new PendingCommandIndex() : null;
+        CommandQueueProperties.Pacing pacing = properties.getPacing();
+        this.pacer = new CommandPacer(pacing.getRate(), pacing.getBurst());
+        this.pacing = pacing.isEnabled();
+        long ttlSeconds = properties.getExpiry().getTtlSeconds();
+        this.ttl = ttlSeconds > 0 ? Duration.ofSeconds(ttlSeconds) : null;
+        this.virtualThreads = syntheticHumanProperties.getVirtualThreads().isEnabled();
+        this.executor = Executors.newThreadPerTaskExecutor(workerThreadFactory(virtualThreads));
         this.isRunning = false;
     }
 
+    /**
+     * Подключает общую очередь узлов. Команды её приоритетов передаются в топик Kafka вместо локальной полосы.
+     */
+    @Autowired(required = false)
+    public void setDistributedQueue(KafkaCommandQueue distributed) {
+        this.distributed = distributed;
+    }
+
+    private static Supplier<CommandBuffer> bufferFactory(CommandQueueProperties properties, int laneCapacity) {
+        if (properties.getFair().isEnabled()) {
+            int quantum = properties.getFair().getQuantum();
+            return () -> new FairCommandBuffer(quantum);
+        }
+        if (properties.getBackend() == QueueBackend.RING) {
+            int ringSize = properties.getRingSize() > 0 ? properties.getRingSize() : laneCapacity;
+            return () -> new RingCommandBuffer(ringSize);
+        }
+        return FifoCommandBuffer::new;
+    }
+
+    public CommandQueueService(int maxQueueSize, long processingDelayMs, MetricsService metricsService) {
+        this(defaultProperties(maxQueueSize, processingDelayMs), metricsService);
+    }
+
+    private static CommandQueueProperties defaultProperties(int maxQueueSize, long processingDelayMs) {
+        CommandQueueProperties properties = new CommandQueueProperties();
+        properties.setMaxSize(maxQueueSize);
+        properties.setProcessingDelayMs(processingDelayMs);
+        return properties;
+    }
+
     @PostConstruct
     public void init() {
         this.isRunning = true;
-        scheduleNextProcess();
-        log.info("Сервис очереди команд инициализирован с максимальным размером: {} и задержкой обработки: {} мс", 
-                maxQueueSize, processingDelayMs);
+        if (journal != null) {
+            replayJournal();
+        }
+        metricsService.registerQueueSize(this::getQueueSize);
+        for (CommandLane lane : scheduler.lanes()) {
+            metricsService.registerLaneDepth(lane.getPriority(), lane::getDepth);
+        }
+        metricsService.registerPacingRates(() -> pacing ? pacer.getTargetRate() : 0, pacer::getActualRate);
+        metricsService.registerWorkers(activeWorkers::get);
+        startWorkers();
+        if (distributed != null) {
+            distributed.bind(batchSize, executor, this::processDistributed);
+        }
+        log.info("Сервис очереди команд инициализирован с максимальным размером: {}, задержкой обработки: {} мс, " +
+                        "рабочих потоков: {}{}, размером пачки: {}, справедливая очередь: {}, хранилище: {}, " +
+                        "слияние одинаковых команд: {}",
+                maxQueueSize, processingDelayMs, targetWorkers, virtualThreads ? " (виртуальных)" : "", batchSize,
+                fair, fair ? "FAIR" : backend, pendingIndex != null);
+        if (virtualThreads && (waitStrategy == WaitStrategy.YIELD || waitStrategy == WaitStrategy.BUSY_SPIN)) {
+            log.warn("Стратегия ожидания {} занимает несущие потоки виртуальных рабочих потоков, " +
+                    "рекомендуется BLOCKING или PARK", waitStrategy);
+        }
+        for (CommandLane lane : scheduler.lanes()) {
+            log.info("Полоса {}: вес {}, ёмкость {}", lane.getPriority(), lane.getWeight(), lane.getCapacity());
+        }
+        if (pacing) {
+            log.info("Целевая скорость выполнения: {} команд/с, пауза после пачки не используется",
+                    pacer.getTargetRate());
+        }
     }
 
     @PreDestroy
@@ -56,48 +180,666 @@ public class CommandQueueService {
             executor.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        if (journal != null) {
+            journal.close();
+            log.info("Команд в журнале, ожидающих восстановления при следующем запуске: {}", getQueueSize());
+        }
+    }
+
+    private void replayJournal() {
+        for (CommandJournal.JournaledCommand replayed : journal.open()) {
+            Command command = replayed.command();
+            CommandLane lane = scheduler.lane(command.getPriority());
+            lane.forceReserve(command.getAuthor());
+            String id = newCommandId();
+            statuses.markQueued(id, command);
+            if (!scheduler.enqueue(lane, QueuedCommand.of(id, command, replayed.seq()))) {
+                statuses.remove(id);
+                releaseReservation(command, lane);
+                journal.acknowledge(replayed.seq());
+                log.warn("Восстановленная команда отброшена: нет места в шарде очереди: {}", command);
+            }
+        }
+    }
+
+    /**
+     * Добавляет команду в очередь. В режиме слияния команда, совпадающая по автору, описанию и приоритету
+     * с командой, которая ещё ожидает в очереди, не добавляется и получает идентификатор ожидающей команды.
+     *
+     * @param command команда
+     * @return идентификатор, по которому отслеживается состояние команды
+     */
+    public String addCommand(Command command) {
+        String id = newCommandId();
+        if (pendingIndex == null || isDistributed(command)) {
+            return addCommand(command, id);
+        }
+        String pending = pendingIndex.claim(command, id);
+        if (pending != null) {
+            metricsService.incrementCoalesced();
+            log.debug("Команда слита с ожидающей командой {}: {}", pending, command);
+            return pending;
+        }
+        try {
+            return addCommand(command, id);
+        } catch (RuntimeException e) {
+            pendingIndex.release(command, id);
+            throw e;
+        }
     }
 
-    public void addCommand(Command command) {
-        if (!queue.offer(command)) {
+    /**
+     * Добавляет команду в очередь под заданным идентификатором, например отложенную команду,
+     * состояние которой уже отслеживается.
+     *
+     * @param command команда
+     * @param id      идентификатор команды
+     * @return идентификатор команды
+     */
+    public String addCommand(Command command, String id) {
+        if (isDistributed(command)) {
+            distributed.send(id, command);
+            statuses.remove(id);
+            log.debug("Команда {} передана в общую очередь: {}", id, command);
+            return id;
+        }
+        CommandLane lane = scheduler.lane(command.getPriority());
+        if (!lane.tryReserveForAuthor(command.getAuthor())) {
+            metricsService.incrementAuthorOverflow(command.getAuthor());
+            throw new CommandQueueOverflowException(
+                String.format("Превышен лимит команд автора %s в очереди %s: %d",
+                        command.getAuthor(), lane.getPriority(), lane.getMaxPerAuthor()),
+                estimateRetryAfterSeconds(lane)
+            );
+        }
+        if (!lane.tryReserve()) {
+            lane.releaseForAuthor(command.getAuthor());
+            throw new CommandQueueOverflowException(
+                String.format("Очередь команд %s переполнена! Максимальный размер: %d",
+                        lane.getPriority(), lane.getCapacity()),
+                estimateRetryAfterSeconds(lane)
+            );
+        }
+        long journalSeq = journal(command, lane);
+        CommandState previous = statuses.markQueued(id, command);
+        if (!scheduler.enqueue(lane, QueuedCommand.of(id, command, journalSeq))) {
+            statuses.revert(id, previous);
+            releaseReservation(command, lane);
+            if (journalSeq > 0) {
+                journal.acknowledge(journalSeq);
+            }
             throw new CommandQueueOverflowException(
-                String.format("Очередь команд переполнена! Максимальный размер: %d", maxQueueSize)
+                String.format("Шард очереди команд %s переполнен", lane.getPriority()),
+                estimateRetryAfterSeconds(lane)
             );
         }
-        log.debug("Команда добавлена в очередь: {}", command);
+        log.debug("Команда {} добавлена в очередь {}: {}", id, lane.getPriority(), command);
+        return id;
     }
 
-    private void scheduleNextProcess() {
-        if (!isRunning) {
+    /**
+     * Добавляет пачку команд. Места в каждой полосе резервируются одной операцией, записи журнала
+     * дописываются за один захват блокировки и ожидают одного сброса на диск.
+     * Команды, для которых не хватило места, отклоняются, остальные принимаются в исходном порядке.
+     *
+     * @param commands команды
+     * @return идентификаторы принятых команд в порядке списка, null - команда отклонена
+     */
+    public String[] addCommands(List<Command> commands) {
+        String[] accepted = new String[commands.size()];
+        String[] ids = new String[commands.size()];
+        Map<Priority, List<Integer>> byLane = new EnumMap<>(Priority.class);
+        List<Integer> shared = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            ids[i] = newCommandId();
+            if (isDistributed(commands.get(i))) {
+                shared.add(i);
+                continue;
+            }
+            String pending = pendingIndex != null ? pendingIndex.claim(commands.get(i), ids[i]) : null;
+            if (pending != null) {
+                metricsService.incrementCoalesced();
+                accepted[i] = pending;
+                continue;
+            }
+            byLane.computeIfAbsent(commands.get(i).getPriority(), priority -> new ArrayList<>()).add(i);
+        }
+        List<Integer> reserved = new ArrayList<>(commands.size());
+        for (Map.Entry<Priority, List<Integer>> entry : byLane.entrySet()) {
+            CommandLane lane = scheduler.lane(entry.getKey());
+            List<Integer> candidates = new ArrayList<>(entry.getValue().size());
+            for (int index : entry.getValue()) {
+                String author = commands.get(index).getAuthor();
+                if (lane.tryReserveForAuthor(author)) {
+                    candidates.add(index);
+                } else {
+                    metricsService.incrementAuthorOverflow(author);
+                    releasePending(commands.get(index), ids[index]);
+                }
+            }
+            int granted = lane.tryReserve(candidates.size());
+            for (int index : candidates.subList(granted, candidates.size())) {
+                lane.releaseForAuthor(commands.get(index).getAuthor());
+                releasePending(commands.get(index), ids[index]);
+            }
+            reserved.addAll(candidates.subList(0, granted));
+        }
+        sendDistributed(commands, ids, shared, accepted);
+        reserved.sort(null);
+        List<Command> admitted = new ArrayList<>(reserved.size());
+        reserved.forEach(index -> admitted.add(commands.get(index)));
+        long[] journalSeqs;
+        try {
+            journalSeqs = journal(admitted);
+        } catch (RuntimeException e) {
+            reserved.forEach(index -> releasePending(commands.get(index), ids[index]));
+            throw e;
+        }
+        for (int k = 0; k < admitted.size(); k++) {
+            Command command = admitted.get(k);
+            CommandLane lane = scheduler.lane(command.getPriority());
+            String id = ids[reserved.get(k)];
+            statuses.markQueued(id, command);
+            if (scheduler.enqueue(lane, QueuedCommand.of(id, command, journalSeqs[k]))) {
+                accepted[reserved.get(k)] = id;
+            } else {
+                statuses.remove(id);
+                releasePending(command, id);
+                releaseReservation(command, lane);
+                if (journalSeqs[k] > 0) {
+                    journal.acknowledge(journalSeqs[k]);
+                }
+            }
+        }
+        log.debug("Пачка команд добавлена в очередь: {} из {}", admitted.size(), commands.size());
+        return accepted;
+    }
+
+    private boolean isDistributed(Command command) {
+        return distributed != null && distributed.handles(command.getPriority());
+    }
+
+    private void sendDistributed(List<Command> commands, String[] ids, List<Integer> indexes, String[] accepted) {
+        if (indexes.isEmpty()) {
             return;
         }
-        
-        executor.schedule(
-            this::processNextCommand,
-            processingDelayMs,
-            TimeUnit.MILLISECONDS
-        );
+        List<String> sharedIds = new ArrayList<>(indexes.size());
+        List<Command> sharedCommands = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            sharedIds.add(ids[index]);
+            sharedCommands.add(commands.get(index));
+        }
+        boolean[] sent = distributed.sendAll(sharedIds, sharedCommands);
+        for (int k = 0; k < sent.length; k++) {
+            if (sent[k]) {
+                accepted[indexes.get(k)] = sharedIds.get(k);
+            }
+        }
+    }
+
+    private long[] journal(List<Command> commands) {
+        if (journal == null || commands.isEmpty()) {
+            return new long[commands.size()];
+        }
+        try {
+            long[] seqs = journal.appendAll(commands);
+            if (awaitJournalFlush) {
+                journal.awaitDurable(seqs[seqs.length - 1]);
+            }
+            return seqs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            commands.forEach(command -> releaseReservation(command, scheduler.lane(command.getPriority())));
+            throw new IllegalStateException("Прервано ожидание записи команд в журнал", e);
+        } catch (RuntimeException e) {
+            commands.forEach(command -> releaseReservation(command, scheduler.lane(command.getPriority())));
+            throw e;
+        }
     }
 
-    private void processNextCommand() {
+    private long journal(Command command, CommandLane lane) {
+        if (journal == null) {
+            return 0;
+        }
         try {
-            Command command = queue.poll();
-            if (command != null) {
-                log.info("Обработка команды: {}", command);
-                metricsService.incrementProcessedByAuthor(command.getAuthor());
-                log.info("Команда обработана: {}", command);
+            long seq = journal.append(command);
+            if (awaitJournalFlush) {
+                journal.awaitDurable(seq);
             }
+            return seq;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseReservation(command, lane);
+            throw new IllegalStateException("Прервано ожидание записи команды в журнал", e);
+        } catch (RuntimeException e) {
+            releaseReservation(command, lane);
+            throw e;
+        }
+    }
+
+    private void releasePending(Command command, String id) {
+        if (pendingIndex != null) {
+            pendingIndex.release(command, id);
+        }
+    }
+
+    private void releaseReservation(Command command, CommandLane lane) {
+        lane.release(1);
+        lane.releaseForAuthor(command.getAuthor());
+    }
+
+    private void runWorker() {
+        try {
+            if (workLoop()) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.error("Рабочий поток очереди завершился с ошибкой: {}", e.getMessage(), e);
+        }
+        activeWorkers.decrementAndGet();
+        if (isRunning) {
+            startWorkers();
+        }
+    }
+
+    /**
+     * @return true, если рабочий поток выведен из работы при уменьшении их количества
+     */
+    private boolean workLoop() {
+        LaneScheduler.Cursor cursor = scheduler.newCursor();
+        List<QueuedCommand> batch = new ArrayList<>(batchSize);
+        while (isRunning) {
+            if (retireWorker()) {
+                return true;
+            }
+            CommandShard shard;
+            try {
+                shard = scheduler.next(cursor, IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (shard == null) {
+                continue;
+            }
+            boolean paced = pacing;
+            boolean executed = false;
+            try {
+                CommandLane lane = shard.getLane();
+                int permits = paced ? pacer.acquire(batchSize) : batchSize;
+                shard.drainTo(batch, permits);
+                lane.release(batch.size());
+                lane.markDrained(batch.size());
+                for (QueuedCommand queued : batch) {
+                    lane.releaseForAuthor(queued.command().getAuthor());
+                    releasePending(queued.command(), queued.id());
+                }
+                removeExpired(batch);
+                if (paced) {
+                    pacer.release(permits - batch.size());
+                }
+                pacer.mark(batch.size());
+                executed = !batch.isEmpty();
+                batch.forEach(this::processCommand);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                batch.clear();
+                scheduler.release(shard);
+            }
+            if (!paced && executed && !pause()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Снимает с выполнения и удаляет из пачки команды с истёкшим сроком. Текущее время и граница TTL
+     * вычисляются один раз на пачку, поэтому проверка команды сводится к двум сравнениям.
+     */
+    private void removeExpired(List<QueuedCommand> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime createdBefore = ttl != null ? now.minus(ttl) : null;
+        batch.removeIf(queued -> {
+            if (!isExpired(queued.command(), now, createdBefore)) {
+                return false;
+            }
+            expire(queued);
+            return true;
+        });
+    }
+
+    private static boolean isExpired(Command command, LocalDateTime now, LocalDateTime createdBefore) {
+        LocalDateTime deadline = command.getDeadline();
+        if (deadline != null && deadline.isBefore(now)) {
+            return true;
+        }
+        return createdBefore != null && command.getTime() != null && command.getTime().isBefore(createdBefore);
+    }
+
+    private void expire(QueuedCommand queued) {
+        log.warn("Срок выполнения команды {} истёк, команда снята с выполнения: {}", queued.id(), queued.command());
+        statuses.markExpired(queued.id());
+        metricsService.incrementExpired(queued.command().getPriority());
+        if (journal != null && queued.journalSeq() > 0) {
+            journal.acknowledge(queued.journalSeq());
+        }
+    }
+
+    private boolean retireWorker() {
+        while (true) {
+            int active = activeWorkers.get();
+            if (active <= targetWorkers) {
+                return false;
+            }
+            if (activeWorkers.compareAndSet(active, active - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void startWorkers() {
+        while (isRunning && activeWorkers.get() < targetWorkers) {
+            activeWorkers.incrementAndGet();
+            executor.execute(this::runWorker);
+        }
+    }
+
+    /**
+     * Обрабатывает пачку общей очереди в потоке исполнителя очереди. Пауза после пачки выполняется
+     * до возобновления разделов, поэтому ограничивает скорость получения пачек.
+     *
+     * @return false, если выполнение команд прервано остановкой сервиса
+     */
+    private boolean processDistributed(List<QueuedCommand> batch) {
+        for (QueuedCommand queued : batch) {
+            statuses.markQueued(queued.id(), queued.command());
+        }
+        removeExpired(batch);
+        for (QueuedCommand queued : batch) {
+            if (!awaitPacer()) {
+                return false;
+            }
+            processCommand(queued);
+        }
+        if (!pacing && !batch.isEmpty()) {
+            pause();
+        }
+        return true;
+    }
+
+    private void processCommand(QueuedCommand queued) {
+        Command command = queued.command();
+        String error = null;
+        long startedAt = System.nanoTime();
+        metricsService.recordLaneWait(command.getPriority(), startedAt - queued.enqueuedAtNanos());
+        statuses.markRunning(queued.id());
+        try {
+            log.info("Обработка команды: {}", command);
+            metricsService.incrementProcessedByAuthor(command.getAuthor());
+            if (command.getPriority() == Priority.CRITICAL) {
+                executeCriticalCommand(command);
+            }
+            log.info("Команда обработана: {}", command);
         } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
             log.error("Ошибка при обработке команды: {}", e.getMessage(), e);
         } finally {
-            if (isRunning) {
-                scheduleNextProcess();
+            long finishedAt = System.nanoTime();
+            metricsService.recordExecution(command.getPriority(), finishedAt - startedAt,
+                    finishedAt - queued.enqueuedAtNanos());
+            statuses.markFinished(queued.id(), error);
+            if (journal != null && queued.journalSeq() > 0) {
+                journal.acknowledge(queued.journalSeq());
             }
         }
     }
 
+    private static String newCommandId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Отмечает отложенную команду, чтобы её состояние было доступно до передачи в очередь.
+     *
+     * @param id      идентификатор команды
+     * @param command команда
+     */
+    public void trackScheduled(String id, Command command) {
+        statuses.register(id, command, CommandState.SCHEDULED);
+    }
+
+    /**
+     * Перестаёт отслеживать отложенную команду, например после отмены расписания.
+     *
+     * @param id идентификатор команды
+     */
+    public void untrack(String id) {
+        statuses.remove(id);
+    }
+
+    /**
+     * Получить состояние команды
+     * @param id Идентификатор команды
+     * @return состояние или null, если команда неизвестна или её состояние уже вытеснено
+     */
+    public CommandStatus getCommandStatus(String id) {
+        return statuses.get(id);
+    }
+
+    /**
+     * Получить результат, который завершится по окончании выполнения команды
+     * @param id Идентификатор команды
+     * @return null, если команда неизвестна
+     */
+    public CompletableFuture<CommandStatus> awaitCommandStatus(String id) {
+        return statuses.awaitFinished(id);
+    }
+
+    private void executeCriticalCommand(Command command) {
+        try {
+            log.info("Выполнение критической команды: {}", command);
+            if (command.getDescription() != null && command.getDescription().contains("fail")) {
+                throw new IllegalStateException("Ошибка выполнения команды: ????????");
+            }
+        } catch (Exception e) {
+            throw new CommandExecutionException("Ошибка выполнения критической команды: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean awaitPacer() {
+        try {
+            if (pacing) {
+                pacer.acquire(1);
+            }
+            pacer.mark(1);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean pause() {
+        if (processingDelayMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(processingDelayMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory(boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name("android-worker-", 1).factory();
+        }
+        AtomicInteger counter = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, "android-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
     public int getQueueSize() {
-        return queue.size();
+        int size = 0;
+        for (CommandLane lane : scheduler.lanes()) {
+            size += lane.getDepth();
+        }
+        return size;
+    }
+
+    /**
+     * Проверить, заполнена ли полоса очереди
+     * @param priority Приоритет полосы
+     * @return true, если новая команда этого приоритета будет отклонена
+     */
+    public boolean isLaneFull(Priority priority) {
+        if (distributed != null && distributed.handles(priority)) {
+            return false;
+        }
+        return scheduler.lane(priority).isFull();
+    }
+
+    /**
+     * Оценить, через сколько секунд в полосе освободится место, по измеренной скорости её разбора
+     * @param priority Приоритет полосы
+     * @return оценка в секундах, не меньше 1
+     */
+    public long estimateRetryAfterSeconds(Priority priority) {
+        return estimateRetryAfterSeconds(scheduler.lane(priority));
+    }
+
+    private long estimateRetryAfterSeconds(CommandLane lane) {
+        double drainRate = lane.getDrainRate();
+        if (drainRate <= 0) {
+            return MAX_RETRY_AFTER_SECONDS;
+        }
+        long seconds = (long) Math.ceil(lane.getDepth() / drainRate);
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, seconds));
+    }
+
+    /**
+     * Изменить количество рабочих потоков. Новые потоки запускаются сразу, лишние завершаются
+     * после текущей пачки команд.
+     *
+     * @param workers количество рабочих потоков, не меньше 1
+     */
+    public void setWorkerCount(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Количество рабочих потоков должно быть не меньше 1");
+        }
+        int previous = targetWorkers;
+        targetWorkers = workers;
+        startWorkers();
+        if (previous != workers) {
+            log.info("Количество рабочих потоков очереди изменено: {} -> {}", previous, workers);
+        }
+    }
+
+    public int getWorkerCount() {
+        return targetWorkers;
+    }
+
+    public int getActiveWorkerCount() {
+        return activeWorkers.get();
+    }
+
+    /**
+     * Изменить ёмкость полосы очереди
+     *
+     * @param priority Приоритет полосы
+     * @param capacity Новая ёмкость, не меньше 1
+     */
+    public void setLaneCapacity(Priority priority, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Ёмкость полосы должна быть не меньше 1");
+        }
+        CommandLane lane = scheduler.lane(priority);
+        int previous = lane.getCapacity();
+        lane.setCapacity(capacity);
+        log.info("Ёмкость полосы {} изменена: {} -> {}", priority, previous, capacity);
+    }
+
+    /**
+     * Получить ёмкость каждой полосы очереди
+     * @return Map приоритетов и ёмкости полосы
+     */
+    public Map<Priority, Integer> getLaneCapacities() {
+        Map<Priority, Integer> capacities = new EnumMap<>(Priority.class);
+        scheduler.lanes().forEach(lane -> capacities.put(lane.getPriority(), lane.getCapacity()));
+        return capacities;
+    }
+
+    /**
+     * Изменить режим выполнения с заданной скоростью
+     *
+     * @param enabled Выполнять команды с целевой скоростью вместо фиксированной паузы
+     * @param rate    Целевая скорость, команд в секунду
+     * @param burst   Запас команд после простоя
+     */
+    public void setPacing(boolean enabled, double rate, int burst) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Скорость должна быть больше 0, запас - не меньше 1");
+        }
+        pacer.setRate(rate, burst);
+        pacing = enabled;
+        log.info("Выполнение с заданной скоростью: {}, {} команд/с, запас {}", enabled, rate, burst);
+    }
+
+    public boolean isPacing() {
+        return pacing;
+    }
+
+    public double getPacingRate() {
+        return pacer.getTargetRate();
+    }
+
+    public int getPacingBurst() {
+        return pacer.getBurst();
+    }
+
+    public double getActualRate() {
+        return pacer.getActualRate();
+    }
+
+    /**
+     * Оценить время ожидания новой команды по глубине очереди и измеренной скорости её разбора
+     * @return оценка в миллисекундах, 0 - очередь пуста, {@link Long#MAX_VALUE} - очередь не разбирается
+     */
+    public long estimateQueueWaitMillis() {
+        int depth = 0;
+        double drainRate = 0;
+        for (CommandLane lane : scheduler.lanes()) {
+            depth += lane.getDepth();
+            drainRate += lane.getDrainRate();
+        }
+        if (depth == 0) {
+            return 0;
+        }
+        if (drainRate <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (depth / drainRate * 1000);
+    }
+
+    /**
+     * Получить текущую глубину каждой полосы очереди
+     * @return Map приоритетов и количества команд в полосе
+     */
+    public Map<Priority, Integer> getLaneDepths() {
+        Map<Priority, Integer> depths = new EnumMap<>(Priority.class);
+        scheduler.lanes().forEach(lane -> depths.put(lane.getPriority(), lane.getDepth()));
+        return depths;
     }
 
 }
@@ -0,0 +1,203 @@
+package com.weyland.yutani.core.services;
+
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.services.exceptions.CommandQueueOverflowException;
+import com.weyland.yutani.core.services.schedule.HierarchicalTimer;
+import com.weyland.yutani.core.services.schedule.ScheduledCommand;
+import com.weyland.yutani.core.services.schedule.TimerEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Планировщик отложенных и повторяющихся команд.
+ * Команды ждут срока в иерархическом колесе таймеров и передаются в {@link CommandQueueService}
+ * одним потоком планировщика. Если очередь переполнена, выполнение переносится на время,
+ * рекомендованное очередью. Однократная команда выполняется под идентификатором расписания,
+ * каждое выполнение повторяющейся команды получает собственный идентификатор.
+ * Место под расписание резервируется счётчиком до постановки таймера, поэтому параллельные запросы
+ * не превышают {@code maxPending}.
+ */
+@Slf4j
+@Service
+public class CommandSchedulerService {
+
+    private static final long IDLE_POLL_MS = 200;
+
+    private final CommandQueueService queueService;
+    private final MetricsService metricsService;
+    private final int maxPending;
+    private final Duration maxDelay;
+    private final HierarchicalTimer<ScheduledCommand> timer;
+    private final Map<String, TimerEntry<ScheduledCommand>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private Thread reaper;
+    private volatile boolean isRunning;
+
+    public CommandSchedulerService(CommandQueueProperties properties, CommandQueueService queueService,
+                                   MetricsService metricsService) {
+        CommandQueueProperties.Schedule schedule = properties.getSchedule();
+        this.queueService = queueService;
+        this.metricsService = metricsService;
+        this.maxPending = schedule.getMaxPending();
+        this.maxDelay = Duration.ofDays(schedule.getMaxDelayDays());
+        this.timer = new HierarchicalTimer<>(schedule.getTickMs(), schedule.getWheelSize());
+    }
+
+    @PostConstruct
+    public void init() {
+        isRunning = true;
+        metricsService.registerScheduledPending(pendingCount::get);
+        reaper = new Thread(this::runReaper, "android-scheduler");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        isRunning = false;
+        if (reaper != null) {
+            reaper.interrupt();
+        }
+        if (pendingCount.get() > 0) {
+            log.warn("Отложенных команд, не переданных в очередь: {}", pendingCount.get());
+        }
+    }
+
+    /**
+     * Ставит команду в расписание. Первое выполнение наступает в {@link Command#getTime()}.
+     *
+     * @param command        команда
+     * @param repeatInterval интервал повторения, null - однократное выполнение
+     * @param repeatCount    количество выполнений повторяющейся команды, null - без ограничения
+     * @return идентификатор расписания
+     * @throws IllegalArgumentException если время команды или интервал повторения дальше {@code max-delay-days}
+     */
+    public String schedule(Command command, Duration repeatInterval, Integer repeatCount) {
+        if (command.getTime().isAfter(LocalDateTime.now().plus(maxDelay))) {
+            throw new IllegalArgumentException(String.format(
+                    "время команды %s позже допустимого: не дальше %d дн.", command.getTime(), maxDelay.toDays()));
+        }
+        if (repeatInterval != null && repeatInterval.compareTo(maxDelay) > 0) {
+            throw new IllegalArgumentException(String.format(
+                    "интервал повторения %s больше допустимого: не больше %d дн.", repeatInterval, maxDelay.toDays()));
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            throw new CommandQueueOverflowException(
+                String.format("Превышено количество отложенных команд: %d", maxPending)
+            );
+        }
+        ScheduledCommand scheduled = new ScheduledCommand(UUID.randomUUID().toString(), command,
+                repeatInterval, repeatCount);
+        try {
+            queueService.trackScheduled(scheduled.getId(), command);
+            arm(scheduled, delayUntil(scheduled.getDueTime()));
+        } catch (RuntimeException e) {
+            pending.remove(scheduled.getId());
+            pendingCount.decrementAndGet();
+            throw e;
+        }
+        log.debug("Команда {} отложена до {}", scheduled.getId(), scheduled.getDueTime());
+        return scheduled.getId();
+    }
+
+    /**
+     * Отменяет расписание.
+     *
+     * @param id идентификатор расписания
+     * @return true, если расписание было найдено
+     */
+    public boolean cancel(String id) {
+        TimerEntry<ScheduledCommand> entry = pending.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        pendingCount.decrementAndGet();
+        entry.getPayload().cancel();
+        entry.cancel();
+        queueService.untrack(id);
+        return true;
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Ставит таймер очередного выполнения. Если расписание отменено, пока таймер ставился,
+     * {@link #cancel} мог уже удалить предыдущий таймер, поэтому новый удаляется здесь;
+     * место расписания в этом случае уже освобождено {@link #cancel}.
+     */
+    private void arm(ScheduledCommand scheduled, long delayMs) {
+        TimerEntry<ScheduledCommand> entry = timer.schedule(delayMs, scheduled);
+        pending.put(scheduled.getId(), entry);
+        if (scheduled.isCancelled()) {
+            pending.remove(scheduled.getId(), entry);
+            entry.cancel();
+        }
+    }
+
+    private static long delayUntil(LocalDateTime time) {
+        return Duration.between(LocalDateTime.now(), time).toMillis();
+    }
+
+    private void runReaper() {
+        while (isRunning) {
+            try {
+                timer.advance(IDLE_POLL_MS, this::release);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка планировщика команд: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void release(TimerEntry<ScheduledCommand> entry) {
+        ScheduledCommand scheduled = entry.getPayload();
+        if (scheduled.isCancelled()) {
+            pending.remove(scheduled.getId(), entry);
+            return;
+        }
+        try {
+            if (scheduled.isRecurring()) {
+                queueService.addCommand(scheduled.nextCommand());
+            } else {
+                queueService.addCommand(scheduled.nextCommand(), scheduled.getId());
+            }
+            metricsService.incrementScheduledReleased();
+        } catch (CommandQueueOverflowException e) {
+            long retryAfterSeconds = Math.max(1, e.getRetryAfterSeconds());
+            metricsService.incrementScheduledDeferred();
+            log.warn("Отложенная команда {} перенесена на {} с: {}", scheduled.getId(), retryAfterSeconds,
+                    e.getMessage());
+            arm(scheduled, TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+            return;
+        } catch (RuntimeException e) {
+            log.error("Ошибка при передаче отложенной команды {} в очередь: {}", scheduled.getId(),
+                    e.getMessage(), e);
+        }
+        if (scheduled.advance(LocalDateTime.now()) && !scheduled.isCancelled()) {
+            arm(scheduled, delayUntil(scheduled.getDueTime()));
+        } else {
+            if (pending.remove(scheduled.getId(), entry)) {
+                pendingCount.decrementAndGet();
+            }
+            if (scheduled.isRecurring()) {
+                queueService.untrack(scheduled.getId());
+            }
+        }
+    }
+}
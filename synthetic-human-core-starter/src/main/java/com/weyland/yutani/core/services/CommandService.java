@@ -1,7 +1,9 @@
 package com.weyland.yutani.core.services;
 
 import com.weyland.yutani.core.annotations.WeylandWatchingYou;
+import com.weyland.yutani.core.model.BatchItemResult;
 import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.CommandStatus;
 import com.weyland.yutani.core.model.Priority;
 import com.weyland.yutani.core.services.exceptions.*;
 import jakarta.validation.Valid;
@@ -10,11 +12,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -26,6 +32,7 @@ public class CommandService {
     private static final int MAX_DESCRIPTION_LENGTH = 1000;
 
     private final CommandQueueService queueService;
+    private final CommandSchedulerService schedulerService;
     private final MetricsService metricsService;
 
     private void validateCommand(Command command) {
@@ -44,10 +51,19 @@ public class CommandService {
                 String.format("Описание не может превышать %d символов", MAX_DESCRIPTION_LENGTH));
         }
 
+        if (command.getPriority() == null) {
+            errors.put("priority", "Команда не может не иметь приоритета");
+        }
+
         if (command.getTime() == null) {
             errors.put("time", "Время не может быть пустым");
-        } else if (command.getTime().isAfter(LocalDateTime.now())) {
-            errors.put("time", "Время не может быть в будущем");
+        }
+
+        if (command.getDeadline() != null && command.getDeadline().isBefore(LocalDateTime.now())) {
+            errors.put("deadline", "Срок выполнения уже истёк");
+        } else if (command.getDeadline() != null && command.getTime() != null
+                && command.getDeadline().isBefore(command.getTime())) {
+            errors.put("deadline", "Срок выполнения не может быть раньше времени команды");
         }
 
         if (!errors.isEmpty()) {
@@ -55,70 +71,181 @@ public class CommandService {
         }
     }
 
+    private void validateSchedule(Duration repeatInterval, Integer repeatCount) {
+        Map<String, String> errors = new HashMap<>();
+
+        if (repeatInterval != null && (repeatInterval.isNegative() || repeatInterval.isZero())) {
+            errors.put("repeatInterval", "Интервал повторения должен быть положительным");
+        }
+
+        if (repeatCount != null) {
+            if (repeatInterval == null) {
+                errors.put("repeatCount", "Количество повторений задаётся только вместе с интервалом");
+            } else if (repeatCount < 1) {
+                errors.put("repeatCount", "Количество повторений должно быть положительным");
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw new CommandValidationException("Ошибка валидации расписания команды", errors);
+        }
+    }
+
     @WeylandWatchingYou("Обработка команды")
     public Map<String, Object> processCommand(@Valid Command command) {
+        return processCommand(command, null, null);
+    }
+
+    /**
+     * Принять команду. Команда со временем в будущем или с интервалом повторения ставится в расписание
+     * и передаётся в очередь в назначенное время.
+     *
+     * @param command        команда
+     * @param repeatInterval интервал повторения, null - однократное выполнение
+     * @param repeatCount    количество выполнений повторяющейся команды, null - без ограничения
+     * @return результат приёма команды
+     */
+    @WeylandWatchingYou("Обработка команды")
+    public Map<String, Object> processCommand(@Valid Command command, Duration repeatInterval, Integer repeatCount) {
         Objects.requireNonNull(command, "Команда не может быть пустой");
         validateCommand(command);
+        validateSchedule(repeatInterval, repeatCount);
+        if (repeatInterval != null || command.getTime().isAfter(LocalDateTime.now())) {
+            return scheduleCommand(command, repeatInterval, repeatCount);
+        }
         try {
-            if (command.getPriority() == Priority.CRITICAL) {
-                log.info("Обработка CRITICAL команды: {}", command);
-                metricsService.incrementProcessedByAuthor(command.getAuthor());
-                try {
-                    executeCriticalCommand(command);
-                    String commandId = UUID.randomUUID().toString();
-                    return Map.of(
-                        "status", "critical_command_executed",
-                        "commandId", commandId,
-                        "commandDescription", command.getDescription(),
-                        "timestamp", LocalDateTime.now()
-                    );
-                } catch (Exception e) {
-                    throw CommandExecutionException.forCommand("unknown", e.getMessage());
-                }
-            } else {
-                try {
-                    queueService.addCommand(command);
-                    int currentQueueSize = queueService.getQueueSize();
-                    metricsService.updateQueueSize(currentQueueSize);
-                    log.info("Команда поставлена в очередь. Текущий размер очереди: {}", currentQueueSize);
-                    String commandId = UUID.randomUUID().toString();
-                    return Map.of(
-                        "status", "command_queued",
-                        "commandId", commandId,
-                        "commandDescription", command.getDescription(),
-                        "queueSize", currentQueueSize,
-                        "timestamp", LocalDateTime.now()
-                    );
-                } catch (CommandQueueOverflowException e) {
-                    metricsService.incrementQueueOverflow();
-                    log.warn("Переполнение очереди команд. Максимальный размер: {}", queueService.getMaxQueueSize());
-                    throw e;
-                }
-            }
+            String commandId = queueService.addCommand(command);
+            int currentQueueSize = queueService.getQueueSize();
+            log.info("Команда {} поставлена в очередь. Текущий размер очереди: {}",
+                    command.getPriority(), currentQueueSize);
+            return Map.of(
+                "status", command.getPriority() == Priority.CRITICAL ? "critical_command_queued" : "command_queued",
+                "commandId", commandId,
+                "commandDescription", command.getDescription(),
+                "queueSize", currentQueueSize,
+                "timestamp", LocalDateTime.now()
+            );
+        } catch (CommandQueueOverflowException e) {
+            metricsService.incrementQueueOverflow();
+            log.warn("Переполнение очереди команд {}. Максимальный размер: {}",
+                    command.getPriority(), queueService.getMaxQueueSize());
+            throw e;
         } catch (Exception e) {
             log.error("Ошибка при обработке команды: {}", e.getMessage(), e);
             throw e;
         }
     }
 
-    private void executeCriticalCommand(Command command) {
-        try {
-            log.info("Выполнение критической команды: {}", command);
-            if (command.getDescription() != null && command.getDescription().contains("fail")) {
-                throw new IllegalStateException("Ошибка выполнения команды: ????????");
+    /**
+     * Принять пакет команд. Некорректные команды отмечаются в результате и не прерывают пакет,
+     * команды со временем в будущем ставятся в расписание, остальные добавляются в очередь одной пачкой.
+     *
+     * @param commands команды пакета
+     * @return результат по каждой команде в порядке пакета
+     */
+    @WeylandWatchingYou("Пакетная обработка команд")
+    public List<BatchItemResult> processBatch(List<Command> commands) {
+        BatchItemResult[] results = new BatchItemResult[commands.size()];
+        List<Command> immediate = new ArrayList<>(commands.size());
+        List<Integer> positions = new ArrayList<>(commands.size());
+        int scheduled = 0;
+        int rejected = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            try {
+                validateCommand(command);
+            } catch (CommandValidationException e) {
+                results[i] = BatchItemResult.invalid(i, String.join("; ", e.getValidationErrors().values()));
+                continue;
+            }
+            if (command.getTime().isAfter(now)) {
+                try {
+                    results[i] = BatchItemResult.scheduled(i, schedulerService.schedule(command, null, null));
+                    scheduled++;
+                } catch (CommandQueueOverflowException e) {
+                    rejected++;
+                    metricsService.incrementQueueOverflow();
+                    results[i] = BatchItemResult.rejected(i, e.getRetryAfterSeconds());
+                } catch (IllegalArgumentException e) {
+                    results[i] = BatchItemResult.invalid(i, e.getMessage());
+                }
+                continue;
+            }
+            immediate.add(command);
+            positions.add(i);
+        }
+        String[] accepted = queueService.addCommands(immediate);
+        int queued = 0;
+        for (int k = 0; k < accepted.length; k++) {
+            int index = positions.get(k);
+            if (accepted[k] != null) {
+                queued++;
+                results[index] = BatchItemResult.queued(index, accepted[k]);
+            } else {
+                rejected++;
+                metricsService.incrementQueueOverflow();
+                results[index] = BatchItemResult.rejected(index,
+                        queueService.estimateRetryAfterSeconds(immediate.get(k).getPriority()));
             }
-        } catch (Exception e) {
-            throw new CommandExecutionException("Ошибка выполнения критической команды: " + e.getMessage(), e);
         }
+        int currentQueueSize = queueService.getQueueSize();
+        log.info("Пакет из {} команд: поставлено в очередь {}, отложено {}, отклонено из-за переполнения {}. " +
+                "Текущий размер очереди: {}", commands.size(), queued, scheduled, rejected, currentQueueSize);
+        return Arrays.asList(results);
+    }
+
+    private Map<String, Object> scheduleCommand(Command command, Duration repeatInterval, Integer repeatCount) {
+        String scheduleId = schedulerService.schedule(command, repeatInterval, repeatCount);
+        log.info("Команда {} отложена до {}. Отложенных команд: {}",
+                command.getPriority(), command.getTime(), schedulerService.getPendingCount());
+        return Map.of(
+            "status", "command_scheduled",
+            "commandId", scheduleId,
+            "commandDescription", command.getDescription(),
+            "queueSize", queueService.getQueueSize(),
+            "scheduledAt", command.getTime(),
+            "timestamp", LocalDateTime.now()
+        );
+    }
+
+    /**
+     * Отменить отложенную или повторяющуюся команду
+     * @param scheduleId Идентификатор расписания
+     * @return true, если расписание было найдено и отменено
+     */
+    @WeylandWatchingYou("Отмена отложенной команды")
+    public boolean cancelScheduledCommand(String scheduleId) {
+        return schedulerService.cancel(scheduleId);
+    }
+
+    /**
+     * Получить состояние команды
+     * @param commandId Идентификатор команды
+     * @return состояние команды или null, если команда неизвестна
+     */
+    public CommandStatus getCommandStatus(String commandId) {
+        return queueService.getCommandStatus(commandId);
+    }
+
+    /**
+     * Дождаться завершения команды
+     * @param commandId Идентификатор команды
+     * @return результат, завершающийся по окончании выполнения, или null, если команда неизвестна
+     */
+    public CompletableFuture<CommandStatus> awaitCommandStatus(String commandId) {
+        return queueService.awaitCommandStatus(commandId);
     }
 
     @WeylandWatchingYou("Получение статуса очереди")
     public Map<String, Object> getQueueStatus() {
         return Map.of(
             "queueSize", queueService.getQueueSize(),
+            "laneDepths", queueService.getLaneDepths(),
             "processedCommands", metricsService.getProcessedCommandsCount(),
             "processedByAuthor", metricsService.getProcessedByAuthor(),
             "queueOverflowCount", metricsService.getQueueOverflowCount(),
+            "scheduledCommands", schedulerService.getPendingCount(),
             "timestamp", LocalDateTime.now()
         );
     }
@@ -3,6 +3,7 @@ package com.weyland.yutani.core.services;
 import com.weyland.yutani.core.services.exceptions.*;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -36,7 +38,27 @@ public class ErrorHandlerService {
             request.getDescription(false),
             LocalDateTime.now()
         );
-        return new ResponseEntity<>(errorResponse, HttpStatus.TOO_MANY_REQUESTS);
+        return tooManyRequests(errorResponse, ex.getRetryAfterSeconds());
+    }
+
+    @ExceptionHandler(CommandRateLimitedException.class)
+    public ResponseEntity<ErrorResponse> handleRateLimited(CommandRateLimitedException ex, WebRequest request) {
+        log.debug("Команда отклонена контролем допуска: {}", ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse(
+            HTTP_TOO_MANY_REQUESTS,
+            "Слишком много команд. Повторите попытку через " + ex.getRetryAfterSeconds() + " с.",
+            request.getDescription(false),
+            LocalDateTime.now()
+        );
+        return tooManyRequests(errorResponse, ex.getRetryAfterSeconds());
+    }
+
+    private ResponseEntity<ErrorResponse> tooManyRequests(ErrorResponse errorResponse, long retryAfterSeconds) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS);
+        if (retryAfterSeconds > 0) {
+            builder.header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        }
+        return builder.body(errorResponse);
     }
     
     @ExceptionHandler(CommandValidationException.class)
@@ -55,6 +77,32 @@ public class ErrorHandlerService {
         return new ResponseEntity<>(errorResponse, HttpStatus.UNPROCESSABLE_ENTITY);
     }
     
+    @ExceptionHandler(CommandIdempotencyConflictException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyConflict(CommandIdempotencyConflictException ex,
+                                                                   WebRequest request) {
+        log.warn("Конфликт ключа идемпотентности: {}", ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse(
+            HttpStatus.CONFLICT.value(),
+            ex.getMessage(),
+            request.getDescription(false),
+            LocalDateTime.now()
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(CommandIdempotencyKeyReusedException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyReused(CommandIdempotencyKeyReusedException ex,
+                                                                    WebRequest request) {
+        log.warn("Ключ идемпотентности использован с другим запросом: {}", ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse(
+            HTTP_UNPROCESSABLE_ENTITY,
+            ex.getMessage(),
+            request.getDescription(false),
+            LocalDateTime.now()
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
     @ExceptionHandler(CommandExecutionException.class)
     public ResponseEntity<ErrorResponse> handleCommandExecution(CommandExecutionException ex, WebRequest request) {
         log.error("Ошибка выполнения команды: {}", ex.getMessage(), ex);
@@ -120,6 +168,18 @@ public class ErrorHandlerService {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<ErrorResponse> handleResponseStatus(ResponseStatusException ex, WebRequest request) {
+        log.warn("Запрос отклонён: {}", ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse(
+            ex.getStatusCode().value(),
+            ex.getReason() != null ? ex.getReason() : ex.getMessage(),
+            request.getDescription(false),
+            LocalDateTime.now()
+        );
+        return new ResponseEntity<>(errorResponse, ex.getStatusCode());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericError(Exception ex, WebRequest request) {
         log.error("Непредвиденная ошибка: {}", ex.getMessage(), ex);
@@ -1,18 +1,25 @@
 package com.weyland.yutani.core.services;
 
+import com.weyland.yutani.core.annotations.WeylandWatchingYou;
+import com.weyland.yutani.core.model.Priority;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
@@ -22,12 +29,46 @@ public class MetricsService {
     private final Map<String, AtomicInteger> processedByAuthor = new ConcurrentHashMap<>();
     private final AtomicLong queueOverflowCount = new AtomicLong(0);
     private final AtomicLong processedCommandsCount = new AtomicLong(0);
-    private final AtomicInteger currentQueueSize = new AtomicInteger(0);
+    private final Map<Priority, Timer> laneWaitTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> executionTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> endToEndTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> expiredCounters = new EnumMap<>(Priority.class);
 
     private static final String QUEUE_SIZE_METRIC = "synthetic_human.queue.size";
     private static final String PROCESSED_COMMANDS_METRIC = "synthetic_human.commands.processed";
     private static final String QUEUE_OVERFLOW_METRIC = "synthetic_human.queue.overflow";
     private static final String COMMANDS_BY_AUTHOR_METRIC = "synthetic_human.commands.by_author";
+    private static final String AUTHOR_OVERFLOW_METRIC = "synthetic_human.queue.author_overflow";
+    private static final String ADMISSION_REJECTED_METRIC = "synthetic_human.admission.rejected";
+    private static final String VIRTUAL_THREAD_PINNED_METRIC = "synthetic_human.virtual_threads.pinned";
+    private static final String SCHEDULE_PENDING_METRIC = "synthetic_human.schedule.pending";
+    private static final String SCHEDULE_RELEASED_METRIC = "synthetic_human.schedule.released";
+    private static final String SCHEDULE_DEFERRED_METRIC = "synthetic_human.schedule.deferred";
+    private static final String IDEMPOTENT_REPLAY_METRIC = "synthetic_human.commands.idempotent_replayed";
+    private static final String COALESCED_METRIC = "synthetic_human.commands.coalesced";
+    private static final String DISTRIBUTED_SEND_FAILED_METRIC = "synthetic_human.queue.distributed.send_failed";
+    private static final String PACING_TARGET_METRIC = "synthetic_human.queue.pacing.target_rate";
+    private static final String PACING_ACTUAL_METRIC = "synthetic_human.queue.pacing.actual_rate";
+    private static final String WORKERS_METRIC = "synthetic_human.queue.workers";
+    private static final String LANE_DEPTH_METRIC = "synthetic_human.queue.lane.depth";
+    private static final String LANE_WAIT_METRIC = "synthetic_human.queue.lane.wait";
+    private static final String EXECUTION_METRIC = "synthetic_human.commands.execution";
+    private static final String END_TO_END_METRIC = "synthetic_human.commands.latency";
+    private static final String EXPIRED_METRIC = "synthetic_human.commands.expired";
+    private static final String AUDIT_BUFFER_DEPTH_METRIC = "synthetic_human.audit.buffer.depth";
+    private static final String AUDIT_DROPPED_METRIC = "synthetic_human.audit.dropped";
+    private static final String AUDIT_OUTBOX_BYTES_METRIC = "synthetic_human.audit.outbox.bytes";
+    private static final String AUDIT_OUTBOX_SPILLED_METRIC = "synthetic_human.audit.outbox.spilled";
+    private static final String AUDIT_OUTBOX_DRAINED_METRIC = "synthetic_human.audit.outbox.drained";
+
+    /**
+     * Границы SLO для гистограмм времени команд. Переопределяются свойствами
+     * {@code management.metrics.distribution.slo.<имя метрики>}.
+     */
+    private static final Duration[] COMMAND_SLO = {
+        Duration.ofMillis(10), Duration.ofMillis(100), Duration.ofMillis(500), Duration.ofSeconds(1),
+        Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(60)
+    };
 
     public MetricsService(MeterRegistry registry) {
         this.registry = registry;
@@ -35,24 +76,155 @@ public class MetricsService {
 
     @PostConstruct
     public void init() {
-        Gauge.builder(QUEUE_SIZE_METRIC, currentQueueSize, AtomicInteger::get)
-            .description("Текущее количество команд в очереди")
-            .register(registry);
         Counter.builder(PROCESSED_COMMANDS_METRIC)
             .description("Общее количество обработанных команд")
             .register(registry);
         Counter.builder(QUEUE_OVERFLOW_METRIC)
             .description("Количество случаев переполнения очереди команд")
             .register(registry);
+        for (Priority priority : Priority.values()) {
+            laneWaitTimers.put(priority, commandTimer(LANE_WAIT_METRIC,
+                "Время от постановки команды в очередь до начала выполнения", priority));
+            executionTimers.put(priority, commandTimer(EXECUTION_METRIC,
+                "Время выполнения команды", priority));
+            endToEndTimers.put(priority, commandTimer(END_TO_END_METRIC,
+                "Время от постановки команды в очередь до окончания выполнения", priority));
+            expiredCounters.put(priority, Counter.builder(EXPIRED_METRIC)
+                .description("Количество команд, снятых с выполнения по истечении срока")
+                .tag("priority", priority.name())
+                .register(registry));
+        }
         log.info("Сервис метрик инициализирован");
     }
 
+    private Timer commandTimer(String name, String description, Priority priority) {
+        return Timer.builder(name)
+            .description(description)
+            .tag("priority", priority.name())
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram()
+            .serviceLevelObjectives(COMMAND_SLO)
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofMinutes(10))
+            .register(registry);
+    }
+
+    /**
+     * Зарегистрировать метрику количества событий аудита, ожидающих публикации
+     * @param depth Источник текущего количества событий в буфере
+     */
+    public void registerAuditBufferDepth(Supplier<Number> depth) {
+        Gauge.builder(AUDIT_BUFFER_DEPTH_METRIC, depth)
+            .description("Количество событий аудита, ожидающих публикации")
+            .register(registry);
+    }
+
+    /**
+     * Зарегистрировать событие аудита, отброшенное при заполненном буфере
+     * @param severity Важность события
+     */
+    public void incrementAuditDropped(WeylandWatchingYou.Severity severity) {
+        Counter.builder(AUDIT_DROPPED_METRIC)
+            .description("Количество событий аудита, отброшенных при заполненном буфере")
+            .tag("severity", severity.name())
+            .register(registry)
+            .increment();
+    }
+
+    /**
+     * Зарегистрировать метрику объёма неотправленных событий аудита в локальном хранилище
+     * @param bytes Источник текущего объёма, байт
+     */
+    public void registerAuditOutboxBytes(Supplier<Number> bytes) {
+        Gauge.builder(AUDIT_OUTBOX_BYTES_METRIC, bytes)
+            .description("Объём событий аудита, ожидающих повторной отправки в Kafka")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    /**
+     * Зарегистрировать событие аудита, записанное в локальное хранилище вместо отправки в Kafka
+     */
+    public void incrementAuditSpilled() {
+        registry.counter(AUDIT_OUTBOX_SPILLED_METRIC).increment();
+    }
+
+    /**
+     * Зарегистрировать события аудита, повторно отправленные в Kafka из локального хранилища
+     * @param count Количество событий
+     */
+    public void incrementAuditDrained(int count) {
+        registry.counter(AUDIT_OUTBOX_DRAINED_METRIC).increment(count);
+    }
+
+    /**
+     * Зарегистрировать метрику текущего размера очереди
+     * @param size Источник текущего количества команд в очереди
+     */
+    public void registerQueueSize(Supplier<Number> size) {
+        Gauge.builder(QUEUE_SIZE_METRIC, size)
+            .description("Текущее количество команд в очереди")
+            .register(registry);
+    }
+
+    /**
+     * Зарегистрировать метрику количества рабочих потоков очереди
+     * @param workers Источник текущего количества рабочих потоков
+     */
+    public void registerWorkers(Supplier<Number> workers) {
+        Gauge.builder(WORKERS_METRIC, workers)
+            .description("Количество рабочих потоков очереди")
+            .register(registry);
+    }
+
+    /**
+     * Зарегистрировать метрику глубины полосы очереди
+     * @param priority Приоритет полосы
+     * @param depth Источник текущей глубины полосы
+     */
+    public void registerLaneDepth(Priority priority, Supplier<Number> depth) {
+        Gauge.builder(LANE_DEPTH_METRIC, depth)
+            .description("Текущее количество команд в полосе очереди")
+            .tag("priority", priority.name())
+            .register(registry);
+    }
+
+    /**
+     * Зарегистрировать время ожидания команды в очереди до начала выполнения
+     * @param priority Приоритет команды
+     * @param waitNanos Время ожидания в наносекундах
+     */
+    public void recordLaneWait(Priority priority, long waitNanos) {
+        record(laneWaitTimers, priority, waitNanos);
+    }
+
+    /**
+     * Зарегистрировать время выполнения команды и полное время от постановки в очередь
+     * @param priority Приоритет команды
+     * @param executionNanos Время выполнения в наносекундах
+     * @param endToEndNanos Время от постановки в очередь до окончания выполнения в наносекундах
+     */
+    public void recordExecution(Priority priority, long executionNanos, long endToEndNanos) {
+        record(executionTimers, priority, executionNanos);
+        record(endToEndTimers, priority, endToEndNanos);
+    }
+
     /**
-     * Обновить метрику текущего размера очереди
-     * @param size Текущий размер очереди
+     * Зарегистрировать команду, снятую с выполнения по истечении срока
+     * @param priority Приоритет команды
      */
-    public void updateQueueSize(int size) {
-        currentQueueSize.set(size);
+    public void incrementExpired(Priority priority) {
+        Counter counter = expiredCounters.get(priority);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static void record(Map<Priority, Timer> timers, Priority priority, long nanos) {
+        Timer timer = timers.get(priority);
+        if (timer != null) {
+            timer.record(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+        }
     }
 
     /**
@@ -78,6 +250,98 @@ public class MetricsService {
         registry.counter(QUEUE_OVERFLOW_METRIC).increment();
     }
 
+    /**
+     * Зарегистрировать отказ из-за исчерпания персонального лимита автора
+     * @param author Автор команды
+     */
+    public void incrementAuthorOverflow(String author) {
+        Counter.builder(AUTHOR_OVERFLOW_METRIC)
+            .description("Количество команд, отклонённых из-за лимита автора")
+            .tags(Tags.of(Tag.of("author", author)))
+            .register(registry)
+            .increment();
+    }
+
+    /**
+     * Зарегистрировать отказ системы контроля допуска
+     * @param reason Причина отказа: global, author или queue
+     */
+    public void incrementAdmissionRejected(String reason) {
+        registry.counter(ADMISSION_REJECTED_METRIC, "reason", reason).increment();
+    }
+
+    /**
+     * Зарегистрировать метрику количества отложенных команд
+     * @param pending Источник текущего количества
+     */
+    public void registerScheduledPending(Supplier<Number> pending) {
+        Gauge.builder(SCHEDULE_PENDING_METRIC, pending)
+            .description("Количество отложенных команд, ожидающих срока выполнения")
+            .register(registry);
+    }
+
+    /**
+     * Зарегистрировать передачу отложенной команды в очередь
+     */
+    public void incrementScheduledReleased() {
+        registry.counter(SCHEDULE_RELEASED_METRIC).increment();
+    }
+
+    /**
+     * Зарегистрировать перенос отложенной команды из-за переполнения очереди
+     */
+    public void incrementScheduledDeferred() {
+        registry.counter(SCHEDULE_DEFERRED_METRIC).increment();
+    }
+
+    /**
+     * Зарегистрировать повтор запроса с уже использованным ключом идемпотентности
+     */
+    public void incrementIdempotentReplay() {
+        registry.counter(IDEMPOTENT_REPLAY_METRIC).increment();
+    }
+
+    /**
+     * Зарегистрировать слияние команды с такой же командой, ожидающей в очереди
+     */
+    public void incrementCoalesced() {
+        registry.counter(COALESCED_METRIC).increment();
+    }
+
+    /**
+     * Зарегистрировать метрики целевой и фактической скорости выполнения команд
+     * @param target Источник целевой скорости, команд в секунду
+     * @param actual Источник фактической скорости, команд в секунду
+     */
+    public void registerPacingRates(Supplier<Number> target, Supplier<Number> actual) {
+        Gauge.builder(PACING_TARGET_METRIC, target)
+            .description("Целевая скорость выполнения команд")
+            .baseUnit("commands/s")
+            .register(registry);
+        Gauge.builder(PACING_ACTUAL_METRIC, actual)
+            .description("Фактическая скорость выполнения команд за последние 10 секунд")
+            .baseUnit("commands/s")
+            .register(registry);
+    }
+
+    /**
+     * Зарегистрировать команду, не записанную в общую очередь узлов
+     */
+    public void incrementDistributedSendFailed() {
+        registry.counter(DISTRIBUTED_SEND_FAILED_METRIC).increment();
+    }
+
+    /**
+     * Зарегистрировать закрепление виртуального потока за несущим потоком
+     * @param duration Длительность закрепления
+     */
+    public void recordVirtualThreadPinned(Duration duration) {
+        Timer.builder(VIRTUAL_THREAD_PINNED_METRIC)
+            .description("Закрепления виртуальных потоков за несущими потоками")
+            .register(registry)
+            .record(duration);
+    }
+
     /**
      * Получить количество команд, обработанных каждым автором
      * @return Map авторов и количества команд
@@ -0,0 +1,156 @@
+package com.weyland.yutani.core.services.admission;
+
+import com.weyland.yutani.core.config.AdmissionProperties;
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.CommandQueueService;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.exceptions.CommandQueueOverflowException;
+import com.weyland.yutani.core.services.exceptions.CommandRateLimitedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Контроль допуска команд перед {@link com.weyland.yutani.core.services.CommandService#processCommand}.
+ * Проверяет общий лимит скорости, лимит автора и наличие места в полосе очереди, не выполняя
+ * ни валидации, ни сериализации команды. Отказ сопровождается рекомендуемой задержкой повтора,
+ * рассчитанной по времени пополнения ведра или по измеренной скорости разбора очереди.
+ */
+@Slf4j
+@Service
+public class AdmissionControlService {
+
+    private final AdmissionProperties properties;
+    private final CommandQueueService queueService;
+    private final MetricsService metricsService;
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> authorBuckets = new ConcurrentHashMap<>();
+
+    public AdmissionControlService(AdmissionProperties properties, CommandQueueService queueService,
+                                   MetricsService metricsService) {
+        this.properties = properties;
+        this.queueService = queueService;
+        this.metricsService = metricsService;
+        this.globalBucket = new TokenBucket(properties.getGlobalRate(), properties.getGlobalBurst());
+    }
+
+    /**
+     * Проверяет, может ли команда быть принята. Сначала проверяется место в полосе, затем общий лимит
+     * и лимит автора; если лимит автора исчерпан, токен общего ведра возвращается.
+     *
+     * @param author   автор команды
+     * @param priority приоритет команды
+     * @throws CommandRateLimitedException   если превышен лимит скорости
+     * @throws CommandQueueOverflowException если полоса очереди заполнена
+     */
+    public void admit(String author, Priority priority) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (priority != null && queueService.isLaneFull(priority)) {
+            metricsService.incrementAdmissionRejected("queue");
+            metricsService.incrementQueueOverflow();
+            throw new CommandQueueOverflowException(
+                String.format("Очередь команд %s переполнена", priority),
+                Math.min(properties.getMaxRetryAfterSeconds(), queueService.estimateRetryAfterSeconds(priority)));
+        }
+        acquireGlobal();
+        if (author != null) {
+            long wait = authorBucket(author).tryAcquire(1);
+            if (wait > 0) {
+                globalBucket.release(1);
+                metricsService.incrementAdmissionRejected("author");
+                throw new CommandRateLimitedException(
+                    String.format("Превышен лимит скорости команд автора %s", author), retryAfterSeconds(wait));
+            }
+        }
+    }
+
+    /**
+     * Проверяет лимиты скорости для пакета команд. Каждая команда расходует токен общего ведра и токен ведра
+     * своего автора, как и одиночная команда. Если токенов не хватает, допускается столько первых команд
+     * автора, сколько позволяют вёдра, а для остальных рассчитывается задержка повтора; неизрасходованные
+     * токены общего ведра возвращаются.
+     *
+     * @param commandsByAuthor количество команд пакета по авторам в порядке их первого появления
+     * @return количество допущенных команд и задержка повтора по авторам
+     * @throws CommandRateLimitedException если общий лимит не допускает ни одной команды
+     */
+    public BatchAdmission admitBatch(Map<String, Integer> commandsByAuthor) {
+        if (!properties.isEnabled()) {
+            return new BatchAdmission(commandsByAuthor, Map.of());
+        }
+        int total = commandsByAuthor.values().stream().mapToInt(Integer::intValue).sum();
+        int global = globalBucket.tryAcquireUpTo(total);
+        if (global == 0 && total > 0) {
+            metricsService.incrementAdmissionRejected("global");
+            throw new CommandRateLimitedException("Превышен общий лимит скорости команд",
+                    retryAfterSeconds(globalBucket.waitNanos()));
+        }
+        Map<String, Integer> admitted = new HashMap<>();
+        Map<String, Long> retryAfter = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : commandsByAuthor.entrySet()) {
+            String author = entry.getKey();
+            int requested = entry.getValue();
+            int allowed = Math.min(requested, global);
+            int granted = author == null || allowed == 0 ? allowed : authorBucket(author).tryAcquireUpTo(allowed);
+            global -= granted;
+            admitted.put(author, granted);
+            if (granted < requested) {
+                boolean authorLimited = granted < allowed;
+                metricsService.incrementAdmissionRejected(authorLimited ? "author" : "global");
+                retryAfter.put(author, retryAfterSeconds(authorLimited
+                        ? authorBucket(author).waitNanos() : globalBucket.waitNanos()));
+            }
+        }
+        if (global > 0) {
+            globalBucket.release(global);
+        }
+        return new BatchAdmission(admitted, retryAfter);
+    }
+
+    private void acquireGlobal() {
+        long wait = globalBucket.tryAcquire(1);
+        if (wait > 0) {
+            metricsService.incrementAdmissionRejected("global");
+            throw new CommandRateLimitedException("Превышен общий лимит скорости команд", retryAfterSeconds(wait));
+        }
+    }
+
+    private TokenBucket authorBucket(String author) {
+        TokenBucket bucket = authorBuckets.get(author);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (authorBuckets.size() >= properties.getMaxTrackedAuthors()) {
+            authorBuckets.values().removeIf(TokenBucket::isIdle);
+        }
+        return authorBuckets.computeIfAbsent(author,
+                key -> new TokenBucket(properties.getAuthorRate(), properties.getAuthorBurst()));
+    }
+
+    private long retryAfterSeconds(long waitNanos) {
+        long seconds = (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        return Math.max(1, Math.min(properties.getMaxRetryAfterSeconds(), seconds));
+    }
+
+    /**
+     * Результат проверки пакета команд.
+     *
+     * @param admitted   количество допущенных первых команд по авторам
+     * @param retryAfter рекомендуемая задержка повтора, с, для авторов, чьи команды допущены не все
+     */
+    public record BatchAdmission(Map<String, Integer> admitted, Map<String, Long> retryAfter) {
+
+        /**
+         * @return количество допущенных команд автора
+         */
+        public int admitted(String author) {
+            return admitted.getOrDefault(author, 0);
+        }
+    }
+}
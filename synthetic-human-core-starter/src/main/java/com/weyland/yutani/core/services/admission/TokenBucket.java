@@ -0,0 +1,107 @@
+package com.weyland.yutani.core.services.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ведро токенов без блокировок в форме GCRA (generic cell rate algorithm).
+ * Вместо количества токенов хранится теоретическое время прибытия следующего запроса,
+ * поэтому проверка сводится к одному CAS и сразу даёт точное время ожидания при отказе.
+ */
+public final class TokenBucket {
+
+    private final int burst;
+    private final long emissionNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param ratePerSecond скорость пополнения ведра, токенов в секунду
+     * @param burst         ёмкость ведра, токенов
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.burst = Math.max(1, burst);
+        this.emissionNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.toleranceNanos = emissionNanos * Math.max(0, burst - 1);
+    }
+
+    /**
+     * Пытается забрать токены из ведра.
+     *
+     * @param permits количество токенов, не больше ёмкости ведра
+     * @return 0, если токены получены, иначе время в наносекундах, через которое они появятся
+     * @throws IllegalArgumentException если токенов больше, чем вмещает ведро: такой запрос не выполнится никогда
+     */
+    public long tryAcquire(int permits) {
+        if (permits > burst) {
+            throw new IllegalArgumentException(
+                    String.format("Запрошено %d токенов при ёмкости ведра %d", permits, burst));
+        }
+        long cost = emissionNanos * permits;
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long next = base + cost;
+            long wait = next - now - toleranceNanos - emissionNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Забирает из ведра столько токенов, сколько в нём есть, но не больше {@code permits}.
+     *
+     * @param permits наибольшее нужное количество токенов
+     * @return количество полученных токенов, 0 - ведро пусто
+     */
+    public int tryAcquireUpTo(int permits) {
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long available = (now + toleranceNanos + emissionNanos - base) / emissionNanos;
+            int granted = (int) Math.min(permits, Math.max(0, available));
+            if (granted == 0) {
+                return 0;
+            }
+            if (theoreticalArrival.compareAndSet(current, base + emissionNanos * granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * @return время в наносекундах, через которое в ведре появится токен, 0 - токен есть сейчас
+     */
+    public long waitNanos() {
+        long now = System.nanoTime();
+        long current = theoreticalArrival.get();
+        if (current == Long.MIN_VALUE) {
+            return 0;
+        }
+        return Math.max(0, current - now - toleranceNanos);
+    }
+
+    /**
+     * Возвращает токены, полученные {@link #tryAcquire} или {@link #tryAcquireUpTo}, если запрос отклонён
+     * следующей проверкой.
+     *
+     * @param permits количество токенов
+     */
+    public void release(int permits) {
+        theoreticalArrival.addAndGet(-emissionNanos * permits);
+    }
+
+    /**
+     * @return true, если ведро полностью пополнилось и его состояние можно забыть
+     */
+    public boolean isIdle() {
+        long current = theoreticalArrival.get();
+        return current == Long.MIN_VALUE || current - System.nanoTime() <= 0;
+    }
+}
@@ -0,0 +1,178 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.weyland.yutani.core.services.MetricsService;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченный буфер событий аудита между вызывающими потоками и фоновым публикатором.
+ * Добавление события - короткая операция под блокировкой без сериализации и ввода-вывода.
+ * При {@link AuditOverflowPolicy#DROP_LOW_SEVERITY} важные события хранятся отдельно от событий низкой важности,
+ * поэтому вытесняемое событие находится без просмотра буфера, а важные события публикуются первыми.
+ * Ожидающий публикатор будится, только когда набралась полная пачка, а неполную пачку он забирает по истечении
+ * времени ожидания, поэтому вызывающий поток не тратит время на пробуждение публикатора при каждом событии.
+ */
+public final class AuditBuffer {
+
+    private final int capacity;
+    private final AuditOverflowPolicy policy;
+    private final long blockTimeoutNanos;
+    private final MetricsService metricsService;
+    private final Deque<AuditEvent> important = new ArrayDeque<>();
+    private final Deque<AuditEvent> regular = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int count;
+
+    /**
+     * Количество событий, при котором будится ожидающий публикатор.
+     */
+    private int awaited = 1;
+
+    /**
+     * @param capacity       максимальное количество событий
+     * @param policy         поведение при заполненном буфере
+     * @param blockTimeoutMs максимальное время ожидания места в буфере, мс
+     * @param metricsService сервис метрик для учёта отброшенных событий
+     */
+    public AuditBuffer(int capacity, AuditOverflowPolicy policy, long blockTimeoutMs, MetricsService metricsService) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость буфера аудита должна быть больше нуля");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockTimeoutMs));
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Добавляет событие, при необходимости вытесняя другое согласно политике переполнения.
+     *
+     * @param event событие
+     * @return false, если событие отброшено
+     */
+    public boolean offer(AuditEvent event) {
+        AuditEvent dropped = null;
+        lock.lock();
+        try {
+            if (count == capacity) {
+                dropped = makeRoom(event);
+            }
+            if (dropped != event) {
+                queueOf(event).addLast(event);
+                count++;
+                if (count >= awaited) {
+                    notEmpty.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (dropped != null) {
+            metricsService.incrementAuditDropped(dropped.severity());
+        }
+        return dropped != event;
+    }
+
+    /**
+     * Извлекает очередную пачку событий, ожидая, пока наберётся {@code maxElements} событий или истечёт время ожидания.
+     *
+     * @param target      коллекция, в которую добавляются извлечённые события
+     * @param maxElements максимальное количество извлекаемых событий
+     * @param timeout     максимальное время ожидания
+     * @param unit        единица измерения {@code timeout}
+     * @return количество извлечённых событий, 0 - событий не появилось за время ожидания
+     */
+    public int drainTo(Collection<? super AuditEvent> target, int maxElements, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            awaited = Math.min(maxElements, capacity);
+            while (count < awaited && nanos > 0) {
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            int drained = drain(important, target, maxElements);
+            drained += drain(regular, target, maxElements - drained);
+            count -= drained;
+            notFull.signalAll();
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Освобождает место для события в заполненном буфере.
+     *
+     * @return вытесненное событие, {@code event} - если отброшено само событие, null - место освободилось
+     */
+    private AuditEvent makeRoom(AuditEvent event) {
+        return switch (policy) {
+            case DROP_OLDEST -> {
+                count--;
+                yield regular.pollFirst();
+            }
+            case DROP_LOW_SEVERITY -> {
+                if (!regular.isEmpty()) {
+                    count--;
+                    yield regular.pollFirst();
+                }
+                yield event.isLowSeverity() ? event : awaitRoom(event);
+            }
+            case BLOCK -> awaitRoom(event);
+        };
+    }
+
+    private AuditEvent awaitRoom(AuditEvent event) {
+        long nanos = blockTimeoutNanos;
+        try {
+            while (count == capacity) {
+                if (nanos <= 0) {
+                    return event;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return event;
+        }
+    }
+
+    private Deque<AuditEvent> queueOf(AuditEvent event) {
+        return policy == AuditOverflowPolicy.DROP_LOW_SEVERITY && !event.isLowSeverity() ? important : regular;
+    }
+
+    private static int drain(Deque<AuditEvent> source, Collection<? super AuditEvent> target, int maxElements) {
+        int drained = 0;
+        AuditEvent event;
+        while (drained < maxElements && (event = source.pollFirst()) != null) {
+            target.add(event);
+            drained++;
+        }
+        return drained;
+    }
+}
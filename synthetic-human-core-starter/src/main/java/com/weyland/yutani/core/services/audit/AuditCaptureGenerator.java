@@ -0,0 +1,534 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.util.Set;
+
+/**
+ * Генератор, ограничивающий захват аргументов и результата вызова по ходу сериализации.
+ * Поля не из списка разрешённых и их значения пропускаются, контейнеры глубже {@code maxDepth} заменяются
+ * отметкой {@link #TRUNCATED}, строки и двоичные значения обрезаются до {@code maxFieldBytes} байт UTF-8.
+ * Если событие превысило {@code maxEventBytes}, сериализация прерывается {@link LimitExceededException}
+ * перед очередным полем или элементом массива, поэтому выход всегда остаётся корректной структурой,
+ * которую достаточно закрыть. Размер контейнеров генератору события не передаётся: двоичные форматы с длиной
+ * в заголовке (CBOR) иначе отвергают контейнер, закрытый раньше времени. Если значение было обрезано или заменено отметкой, {@link #isTruncated()}
+ * возвращает true.
+ */
+final class AuditCaptureGenerator extends JsonGeneratorDelegate {
+
+    static final String TRUNCATED = "…";
+
+    private final int maxFieldBytes;
+    private final int maxEventBytes;
+    private final int maxDepth;
+    private final Set<String> fields;
+    private ByteArrayOutputStream output;
+    private int depth;
+    private int skipped;
+    private boolean skipNext;
+    private boolean truncated;
+
+    /**
+     * @param maxFieldBytes максимальный размер строки или двоичного значения, байт
+     * @param maxEventBytes максимальный размер события, байт
+     * @param maxDepth      максимальная вложенность контейнеров
+     * @param fields        разрешённые поля, пустой набор - все поля
+     */
+    AuditCaptureGenerator(int maxFieldBytes, int maxEventBytes, int maxDepth, Set<String> fields) {
+        super(null, false);
+        this.maxFieldBytes = maxFieldBytes;
+        this.maxEventBytes = maxEventBytes;
+        this.maxDepth = maxDepth;
+        this.fields = fields;
+    }
+
+    /**
+     * Готовит генератор к записи очередного значения события.
+     *
+     * @param generator генератор события
+     * @param output    буфер, в который пишет {@code generator}
+     */
+    AuditCaptureGenerator reset(JsonGenerator generator, ByteArrayOutputStream output) {
+        this.delegate = generator;
+        this.output = output;
+        this.depth = 0;
+        this.skipped = 0;
+        this.skipNext = false;
+        this.truncated = false;
+        return this;
+    }
+
+    /**
+     * Закрывает контейнеры, открытые до прерывания сериализации.
+     */
+    void closeOpen() throws IOException {
+        while (depth > 0) {
+            if (delegate.getOutputContext().inArray()) {
+                delegate.writeEndArray();
+            } else {
+                delegate.writeEndObject();
+            }
+            depth--;
+        }
+    }
+
+    /**
+     * @return true, если с последнего {@link #reset} хотя бы одно значение обрезано или заменено отметкой
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return true, если событие достигло {@code maxEventBytes}
+     */
+    boolean isFull() {
+        return written() >= maxEventBytes;
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        if (!skipContainer()) {
+            delegate.writeStartArray();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void writeStartArray(int size) throws IOException {
+        if (!skipContainer()) {
+            delegate.writeStartArray();
+        }
+    }
+
+    @Override
+    public void writeStartArray(Object forValue) throws IOException {
+        if (!skipContainer()) {
+            delegate.writeStartArray(forValue);
+        }
+    }
+
+    @Override
+    public void writeStartArray(Object forValue, int size) throws IOException {
+        if (!skipContainer()) {
+            delegate.writeStartArray(forValue);
+        }
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        if (!skipEnd()) {
+            delegate.writeEndArray();
+        }
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        if (!skipContainer()) {
+            delegate.writeStartObject();
+        }
+    }
+
+    @Override
+    public void writeStartObject(Object forValue) throws IOException {
+        if (!skipContainer()) {
+            delegate.writeStartObject(forValue);
+        }
+    }
+
+    @Override
+    public void writeStartObject(Object forValue, int size) throws IOException {
+        if (!skipContainer()) {
+            delegate.writeStartObject(forValue);
+        }
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        if (!skipEnd()) {
+            delegate.writeEndObject();
+        }
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        if (!skipField(name)) {
+            delegate.writeFieldName(name);
+        }
+    }
+
+    @Override
+    public void writeFieldName(SerializableString name) throws IOException {
+        if (!skipField(name.getValue())) {
+            delegate.writeFieldName(name);
+        }
+    }
+
+    @Override
+    public void writeFieldId(long id) throws IOException {
+        writeFieldName(Long.toString(id));
+    }
+
+    @Override
+    public void writeArray(int[] array, int offset, int length) throws IOException {
+        writeStartArray(array, length);
+        for (int i = offset; i < offset + length; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeArray(long[] array, int offset, int length) throws IOException {
+        writeStartArray(array, length);
+        for (int i = offset; i < offset + length; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeArray(double[] array, int offset, int length) throws IOException {
+        writeStartArray(array, length);
+        for (int i = offset; i < offset + length; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeArray(String[] array, int offset, int length) throws IOException {
+        writeStartArray(array, length);
+        for (int i = offset; i < offset + length; i++) {
+            writeString(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        if (skipValue()) {
+            return;
+        }
+        if (text == null) {
+            delegate.writeNull();
+            return;
+        }
+        int end = utf8Prefix(text, 0, text.length());
+        if (end == text.length()) {
+            delegate.writeString(text);
+        } else {
+            delegate.writeString(text.substring(0, end) + TRUNCATED);
+            truncated = true;
+        }
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int length) throws IOException {
+        if (skipValue()) {
+            return;
+        }
+        int end = utf8Prefix(text, offset, length);
+        if (end == length) {
+            delegate.writeString(text, offset, length);
+        } else {
+            delegate.writeString(new String(text, offset, end) + TRUNCATED);
+            truncated = true;
+        }
+    }
+
+    @Override
+    public void writeString(SerializableString text) throws IOException {
+        writeString(text.getValue());
+    }
+
+    @Override
+    public void writeString(Reader reader, int length) throws IOException {
+        if (!skipValue()) {
+            delegate.writeString(TRUNCATED);
+            truncated = true;
+        }
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        if (!skipValue()) {
+            int end = utf8Length(text, offset, length);
+            delegate.writeRawUTF8String(text, offset, end);
+            truncated |= end < length;
+        }
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        if (!skipValue()) {
+            int end = utf8Length(text, offset, length);
+            delegate.writeUTF8String(text, offset, end);
+            truncated |= end < length;
+        }
+    }
+
+    @Override
+    public void writeRawValue(String text) throws IOException {
+        if (skipValue()) {
+            return;
+        }
+        int end = utf8Prefix(text, 0, text.length());
+        if (end == text.length()) {
+            delegate.writeRawValue(text);
+        } else {
+            delegate.writeString(text.substring(0, end) + TRUNCATED);
+            truncated = true;
+        }
+    }
+
+    @Override
+    public void writeRawValue(String text, int offset, int length) throws IOException {
+        writeRawValue(text.substring(offset, offset + length));
+    }
+
+    @Override
+    public void writeRawValue(char[] text, int offset, int length) throws IOException {
+        writeRawValue(new String(text, offset, length));
+    }
+
+    @Override
+    public void writeBinary(Base64Variant variant, byte[] data, int offset, int length) throws IOException {
+        if (!skipValue()) {
+            delegate.writeBinary(variant, data, offset, Math.min(length, maxFieldBytes));
+            truncated |= length > maxFieldBytes;
+        }
+    }
+
+    @Override
+    public int writeBinary(Base64Variant variant, InputStream data, int length) throws IOException {
+        if (!skipValue()) {
+            delegate.writeString(TRUNCATED);
+            truncated = true;
+        }
+        return 0;
+    }
+
+    @Override
+    public void writeNumber(short value) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(value);
+        }
+    }
+
+    @Override
+    public void writeNumber(int value) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(value);
+        }
+    }
+
+    @Override
+    public void writeNumber(long value) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(value);
+        }
+    }
+
+    @Override
+    public void writeNumber(BigInteger value) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(value);
+        }
+    }
+
+    @Override
+    public void writeNumber(double value) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(value);
+        }
+    }
+
+    @Override
+    public void writeNumber(float value) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(value);
+        }
+    }
+
+    @Override
+    public void writeNumber(BigDecimal value) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(value);
+        }
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(encodedValue);
+        }
+    }
+
+    @Override
+    public void writeNumber(char[] encodedValue, int offset, int length) throws IOException {
+        if (!skipValue()) {
+            delegate.writeNumber(encodedValue, offset, length);
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean state) throws IOException {
+        if (!skipValue()) {
+            delegate.writeBoolean(state);
+        }
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        if (!skipValue()) {
+            delegate.writeNull();
+        }
+    }
+
+    @Override
+    public void writeEmbeddedObject(Object object) throws IOException {
+        if (!skipValue()) {
+            delegate.writeString(TRUNCATED);
+            truncated = true;
+        }
+    }
+
+    /**
+     * @return true, если скалярное значение пропускается
+     */
+    private boolean skipValue() {
+        if (skipped > 0) {
+            return true;
+        }
+        if (skipNext) {
+            skipNext = false;
+            return true;
+        }
+        checkArrayElement();
+        return false;
+    }
+
+    /**
+     * @return true, если контейнер пропускается целиком
+     */
+    private boolean skipContainer() throws IOException {
+        if (skipped > 0) {
+            skipped++;
+            return true;
+        }
+        if (skipNext) {
+            skipNext = false;
+            skipped = 1;
+            return true;
+        }
+        checkArrayElement();
+        if (depth >= maxDepth) {
+            delegate.writeString(TRUNCATED);
+            truncated = true;
+            skipped = 1;
+            return true;
+        }
+        depth++;
+        return false;
+    }
+
+    private boolean skipEnd() {
+        if (skipped > 0) {
+            skipped--;
+            return true;
+        }
+        depth--;
+        return false;
+    }
+
+    private boolean skipField(String name) {
+        if (skipped > 0) {
+            return true;
+        }
+        checkLimit();
+        if (!fields.isEmpty() && !fields.contains(name)) {
+            skipNext = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void checkArrayElement() {
+        if (depth > 0 && delegate.getOutputContext().inArray()) {
+            checkLimit();
+        }
+    }
+
+    private void checkLimit() {
+        if (isFull()) {
+            throw LimitExceededException.INSTANCE;
+        }
+    }
+
+    private int written() {
+        return output.size() + Math.max(0, delegate.getOutputBuffered());
+    }
+
+    /**
+     * @return количество символов {@code text}, занимающих не больше {@code maxFieldBytes} байт UTF-8
+     */
+    private int utf8Prefix(CharSequence text, int offset, int length) {
+        if (length * 3L <= maxFieldBytes) {
+            return length;
+        }
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(offset + i);
+            int size = c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isHighSurrogate(c) ? 4 : 3;
+            if (bytes + size > maxFieldBytes) {
+                return i;
+            }
+            bytes += size;
+            if (size == 4) {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private int utf8Prefix(char[] text, int offset, int length) {
+        return utf8Prefix(CharBuffer.wrap(text), offset, length);
+    }
+
+    /**
+     * @return длина не больше {@code maxFieldBytes}, не разрезающая символ UTF-8
+     */
+    private int utf8Length(byte[] text, int offset, int length) {
+        if (length <= maxFieldBytes) {
+            return length;
+        }
+        int end = maxFieldBytes;
+        while (end > 0 && (text[offset + end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Событие достигло {@code maxEventBytes}. Исключение без стека создаётся один раз.
+     */
+    static final class LimitExceededException extends RuntimeException {
+
+        static final LimitExceededException INSTANCE = new LimitExceededException();
+
+        private LimitExceededException() {
+            super("Превышен размер события аудита", null, false, false);
+        }
+    }
+}
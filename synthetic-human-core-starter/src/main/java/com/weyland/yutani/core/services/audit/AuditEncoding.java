@@ -0,0 +1,52 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Формат, в котором события аудита передаются в Kafka. Формат сообщения указывается в заголовке
+ * {@code contentType}, поэтому потребители могут читать топик при смене формата.
+ */
+public enum AuditEncoding {
+
+    /**
+     * JSON в UTF-8.
+     */
+    JSON("application/json"),
+
+    /**
+     * Двоичный JSON Smile: имена полей повторяются ссылками на первое вхождение.
+     */
+    SMILE("application/x-jackson-smile"),
+
+    /**
+     * Двоичный формат CBOR (RFC 8949).
+     */
+    CBOR("application/cbor");
+
+    private final String contentType;
+
+    AuditEncoding(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return фабрика генераторов формата; для {@link #JSON} - фабрика {@code objectMapper}
+     */
+    JsonFactory createFactory(ObjectMapper objectMapper) {
+        return switch (this) {
+            case JSON -> objectMapper.getFactory();
+            case SMILE -> SmileFactory.builder()
+                    .disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT)
+                    .build();
+            case CBOR -> new CBORFactory();
+        };
+    }
+}
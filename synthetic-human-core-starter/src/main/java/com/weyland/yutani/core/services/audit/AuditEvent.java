@@ -0,0 +1,45 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.weyland.yutani.core.annotations.WeylandWatchingYou.Severity;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Событие аудита, переданное из вызывающего потока фоновому публикатору.
+ * Содержит только ссылки на данные вызова, сериализация выполняется при публикации.
+ *
+ * @param auditId   идентификатор вызова, общий для событий START и SUCCESS/ERROR
+ * @param timestamp время события, мс от начала эпохи
+ * @param status    этап вызова
+ * @param method    сведения об отслеживаемом методе
+ * @param arguments аргументы вызова
+ * @param result    результат вызова, для {@link AuditStatus#SUMMARY} - {@link AuditRollup}
+ * @param error     сообщение об ошибке
+ */
+public record AuditEvent(String auditId, long timestamp, AuditStatus status, AuditMethod method,
+                         Object[] arguments, Object result, String error) {
+
+    public Severity severity() {
+        return method.getSeverity();
+    }
+
+    /**
+     * @return true для событий важности {@code LOW} и {@code INFO}
+     */
+    public boolean isLowSeverity() {
+        Severity severity = severity();
+        return severity == Severity.LOW || severity == Severity.INFO;
+    }
+
+    /**
+     * Случайный UUID версии 4. В отличие от {@link UUID#randomUUID()} не обращается к общему {@code SecureRandom}:
+     * идентификатору вызова не нужна криптографическая стойкость.
+     */
+    public static String newAuditId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
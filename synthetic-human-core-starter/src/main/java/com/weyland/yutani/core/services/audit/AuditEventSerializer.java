@@ -0,0 +1,217 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.config.AuditProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+
+/**
+ * Потоковая запись события аудита в JSON (UTF-8) или двоичный формат {@link AuditEncoding}.
+ * Событие пишется {@link JsonGenerator} в буфер потока, который переиспользуется между событиями;
+ * заголовок метода копируется из заранее закодированных строк, а время форматируется без промежуточных объектов.
+ * Через {@link ObjectMapper} сериализуются только аргументы и результат вызова.
+ * <p>
+ * Аргументы, результат и сообщение об ошибке пишутся через {@link AuditCaptureGenerator} с ограничениями
+ * {@code audit.capture}, поэтому большие значения не сериализуются целиком. Если событие достигло
+ * {@code maxEventBytes}, незаписанная часть аргументов и результата отбрасывается, а в событие добавляется
+ * {@code "truncated": true}. Событие может превысить {@code maxEventBytes} не больше чем на одно значение
+ * размером до {@code maxFieldBytes}. Поле {@code truncated} добавляется и тогда, когда строка или двоичное
+ * значение обрезаны до {@code maxFieldBytes} либо контейнер глубже {@code maxDepth} заменён отметкой;
+ * поля, не вошедшие в {@code audit.capture.fields}, отбрасываются без этого признака.
+ * Сводка {@link AuditStatus#SUMMARY} пишется в поле {@code summary} без ограничений захвата.
+ */
+public final class AuditEventSerializer {
+
+    private static final SerializedString AUDIT_ID = new SerializedString("auditId");
+    private static final SerializedString TIMESTAMP = new SerializedString("timestamp");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString METHOD = new SerializedString("method");
+    private static final SerializedString DESCRIPTION = new SerializedString("description");
+    private static final SerializedString CATEGORY = new SerializedString("category");
+    private static final SerializedString SEVERITY = new SerializedString("severity");
+    private static final SerializedString ARGUMENTS = new SerializedString("arguments");
+    private static final SerializedString RESULT = new SerializedString("result");
+    private static final SerializedString ERROR = new SerializedString("error");
+    private static final SerializedString TRUNCATED = new SerializedString("truncated");
+    private static final SerializedString SUMMARY = new SerializedString("summary");
+
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.");
+
+    /**
+     * Размер буфера, сверх которого он не сохраняется для следующих событий, байт.
+     */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final ThreadLocal<Workspace> workspaces;
+
+    public AuditEventSerializer(ObjectMapper objectMapper, AuditProperties.Capture capture) {
+        this(objectMapper, AuditEncoding.JSON, capture);
+    }
+
+    public AuditEventSerializer(ObjectMapper objectMapper, AuditEncoding encoding, AuditProperties.Capture capture) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = encoding.createFactory(objectMapper);
+        int maxFieldBytes = Math.max(1, capture.getMaxFieldBytes());
+        int maxEventBytes = Math.max(1, capture.getMaxEventBytes());
+        int maxDepth = Math.max(1, capture.getMaxDepth());
+        Set<String> fields = Set.copyOf(capture.getFields());
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(
+                new AuditCaptureGenerator(maxFieldBytes, maxEventBytes, maxDepth, fields)));
+    }
+
+    /**
+     * @return событие в формате сериализатора
+     */
+    public byte[] serialize(AuditEvent event) throws IOException {
+        Workspace workspace = workspaces.get();
+        Output output = workspace.output;
+        output.reset();
+        try (JsonGenerator generator = jsonFactory.createGenerator(output, JsonEncoding.UTF8)) {
+            AuditMethod method = event.method();
+            generator.writeStartObject();
+            generator.writeFieldName(AUDIT_ID);
+            generator.writeString(event.auditId());
+            generator.writeFieldName(TIMESTAMP);
+            generator.writeString(workspace.timestamp, 0, workspace.formatTimestamp(event.timestamp()));
+            generator.writeFieldName(STATUS);
+            generator.writeString(event.status().json());
+            generator.writeFieldName(METHOD);
+            generator.writeString(method.nameJson());
+            generator.writeFieldName(DESCRIPTION);
+            generator.writeString(method.descriptionJson());
+            generator.writeFieldName(CATEGORY);
+            generator.writeString(method.categoryJson());
+            generator.writeFieldName(SEVERITY);
+            generator.writeString(method.severityJson());
+            if (event.status() == AuditStatus.SUMMARY) {
+                generator.writeFieldName(SUMMARY);
+                objectMapper.writeValue(generator, event.result());
+            } else {
+                writeCall(generator, workspace.capture.reset(generator, output), event);
+            }
+            generator.writeEndObject();
+        }
+        byte[] bytes = output.toByteArray();
+        output.trim();
+        return bytes;
+    }
+
+    /**
+     * Пишет аргументы, результат и ошибку вызова с ограничениями захвата.
+     */
+    private void writeCall(JsonGenerator generator, AuditCaptureGenerator capture, AuditEvent event)
+            throws IOException {
+        boolean complete = true;
+        if (event.arguments() != null && event.arguments().length > 0) {
+            complete = capture(generator, capture, ARGUMENTS, event.arguments());
+        }
+        if (event.result() != null) {
+            complete = complete && capture(generator, capture, RESULT, event.result());
+        }
+        if (event.error() != null) {
+            generator.writeFieldName(ERROR);
+            capture.writeString(event.error());
+        }
+        if (!complete || capture.isTruncated()) {
+            generator.writeFieldName(TRUNCATED);
+            generator.writeBoolean(true);
+        }
+    }
+
+    /**
+     * Пишет поле {@code name} со значением {@code value} в пределах ограничений захвата.
+     *
+     * @return false, если событие достигло {@code maxEventBytes} и значение записано не полностью или не записано
+     */
+    private boolean capture(JsonGenerator generator, AuditCaptureGenerator capture, SerializableString name,
+                            Object value) throws IOException {
+        if (capture.isFull()) {
+            return false;
+        }
+        generator.writeFieldName(name);
+        try {
+            objectMapper.writeValue(capture, value);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            if (!isLimitExceeded(e)) {
+                throw e;
+            }
+            capture.closeOpen();
+            return false;
+        }
+    }
+
+    /**
+     * Jackson оборачивает исключения сериализаторов, поэтому признак превышения ищется по цепочке причин.
+     */
+    private static boolean isLimitExceeded(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause == AuditCaptureGenerator.LimitExceededException.INSTANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+
+        private Output() {
+            super(1024);
+        }
+
+        private void trim() {
+            if (buf.length > MAX_RETAINED_BUFFER) {
+                buf = new byte[1024];
+            }
+        }
+    }
+
+    /**
+     * Буферы одного потока. Начало метки времени до секунд пересчитывается только при смене секунды.
+     */
+    private static final class Workspace {
+
+        private final Output output = new Output();
+        private final AuditCaptureGenerator capture;
+        private final char[] timestamp = new char[32];
+        private long second = Long.MIN_VALUE;
+        private int prefixLength;
+
+        private Workspace(AuditCaptureGenerator capture) {
+            this.capture = capture;
+        }
+
+        /**
+         * Записывает время в формате ISO-8601 с миллисекундами в {@link #timestamp}.
+         *
+         * @return длина записанного времени
+         */
+        private int formatTimestamp(long epochMillis) {
+            long epochSecond = Math.floorDiv(epochMillis, 1000);
+            if (epochSecond != second) {
+                String prefix = SECOND_FORMAT.format(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+                prefix.getChars(0, prefix.length(), timestamp, 0);
+                prefixLength = prefix.length();
+                second = epochSecond;
+            }
+            int millis = Math.floorMod(epochMillis, 1000);
+            timestamp[prefixLength] = (char) ('0' + millis / 100);
+            timestamp[prefixLength + 1] = (char) ('0' + millis / 10 % 10);
+            timestamp[prefixLength + 2] = (char) ('0' + millis % 10);
+            timestamp[prefixLength + 3] = 'Z';
+            return prefixLength + 4;
+        }
+    }
+}
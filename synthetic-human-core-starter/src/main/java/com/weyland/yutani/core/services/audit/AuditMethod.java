@@ -0,0 +1,96 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.weyland.yutani.core.annotations.WeylandWatchingYou;
+import com.weyland.yutani.core.annotations.WeylandWatchingYou.Severity;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Неизменяемые сведения об отслеживаемом методе, общие для всех его событий аудита.
+ * Вычисляются один раз на метод; строковые поля заранее закодированы для записи в JSON,
+ * поэтому заголовок события записывается копированием готовых байтов.
+ */
+public final class AuditMethod {
+
+    private final String name;
+    private final String description;
+    private final String category;
+    private final Severity severity;
+    private final double sampleRate;
+    private final SerializedString nameJson;
+    private final SerializedString descriptionJson;
+    private final SerializedString categoryJson;
+    private final SerializedString severityJson;
+
+    /**
+     * @param sampleRate доля аудируемых вызовов: 1 - каждый вызов, 0 - ни одного
+     */
+    public AuditMethod(String name, String description, String category, Severity severity, double sampleRate) {
+        this.name = name;
+        this.description = description;
+        this.category = category;
+        this.severity = severity;
+        this.sampleRate = sampleRate;
+        this.nameJson = new SerializedString(name);
+        this.descriptionJson = new SerializedString(description);
+        this.categoryJson = new SerializedString(category);
+        this.severityJson = new SerializedString(severity.name());
+    }
+
+    /**
+     * @param targetClass класс объекта, метод которого вызывается
+     * @param method      вызываемый метод
+     * @param annotation  аннотация метода
+     * @param sampleRate  доля аудируемых вызовов
+     */
+    public static AuditMethod of(Class<?> targetClass, Method method, WeylandWatchingYou annotation,
+                                 double sampleRate) {
+        return new AuditMethod(targetClass.getSimpleName() + '.' + method.getName(), annotation.value(),
+                annotation.category(), annotation.severity(), sampleRate);
+    }
+
+    /**
+     * Решает, аудировать ли очередной вызов метода, до создания событий.
+     */
+    public boolean sample() {
+        return sampleRate >= 1.0 || sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    SerializedString nameJson() {
+        return nameJson;
+    }
+
+    SerializedString descriptionJson() {
+        return descriptionJson;
+    }
+
+    SerializedString categoryJson() {
+        return categoryJson;
+    }
+
+    SerializedString severityJson() {
+        return severityJson;
+    }
+}
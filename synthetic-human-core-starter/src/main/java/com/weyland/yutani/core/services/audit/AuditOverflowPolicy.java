@@ -0,0 +1,24 @@
+package com.weyland.yutani.core.services.audit;
+
+/**
+ * Поведение буфера аудита, в котором не осталось места для нового события.
+ */
+public enum AuditOverflowPolicy {
+
+    /**
+     * Вызывающий поток ждёт освобождения места ограниченное время, после чего событие отбрасывается.
+     */
+    BLOCK,
+
+    /**
+     * Отбрасывается самое старое событие буфера.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Отбрасывается самое старое событие низкой важности ({@code LOW} или {@code INFO}).
+     * Если таких событий в буфере нет, новое событие низкой важности отбрасывается,
+     * а важное событие ждёт освобождения места, как при {@link #BLOCK}.
+     */
+    DROP_LOW_SEVERITY
+}
@@ -0,0 +1,34 @@
+package com.weyland.yutani.core.services.audit;
+
+/**
+ * Ключ сообщения аудита в Kafka, по которому сообщения распределяются между разделами топика.
+ */
+public enum AuditPartitionKey {
+
+    /**
+     * Идентификатор вызова: события одного вызова попадают в один раздел и читаются по порядку.
+     */
+    AUDIT_ID,
+
+    /**
+     * Категория метода из {@code @WeylandWatchingYou}: события одной категории читаются по порядку,
+     * но нагрузка распределяется только между разделами используемых категорий.
+     */
+    CATEGORY,
+
+    /**
+     * Без ключа: производитель заполняет разделы по очереди пачками.
+     */
+    NONE;
+
+    /**
+     * @return ключ сообщения для {@code event} или null
+     */
+    String of(AuditEvent event) {
+        return switch (this) {
+            case AUDIT_ID -> event.auditId();
+            case CATEGORY -> event.method().getCategory();
+            case NONE -> null;
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.weyland.yutani.core.services.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновый публикатор событий аудита. Забирает события из буфера пачками и передаёт их получателю,
+ * поэтому вызывающие потоки не ждут сериализации и отправки.
+ * Останавливается после веб-сервера и перед остановкой публикует оставшиеся в буфере события.
+ */
+@Slf4j
+public class AuditPublisher implements SmartLifecycle {
+
+    private static final long STOP_TIMEOUT_MS = 5000;
+
+    private final AuditBuffer buffer;
+    private final AuditSink sink;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param buffer          буфер событий
+     * @param sink            получатель событий
+     * @param batchSize       максимальное количество событий в пачке
+     * @param flushIntervalMs максимальное время ожидания событий перед публикацией неполной пачки, мс
+     */
+    public AuditPublisher(AuditBuffer buffer, AuditSink sink, int batchSize, long flushIntervalMs) {
+        this.buffer = buffer;
+        this.sink = sink;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        sink.start();
+        thread = Thread.ofPlatform().name("audit-publisher").daemon(true).start(this::run);
+        log.info("Публикатор аудита запущен: буфер {}, пачка {}", buffer.getCapacity(), batchSize);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (buffer.size() > 0) {
+            log.warn("Публикатор аудита остановлен, не опубликовано событий: {}", buffer.size());
+        }
+        sink.close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void run() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running || buffer.size() > 0) {
+            try {
+                if (buffer.drainTo(batch, batchSize, flushIntervalMs, TimeUnit.MILLISECONDS) > 0) {
+                    sink.publish(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка публикации пачки событий аудита: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.weyland.yutani.core.services.audit;
+
+import java.time.Instant;
+
+/**
+ * Сводка вызовов одного метода за окно {@link AuditSummary}.
+ * Время выполнения приводится в миллисекундах; процентили - верхние границы интервалов гистограммы,
+ * их погрешность не больше 25%.
+ *
+ * @param windowStart начало окна
+ * @param windowEnd   конец окна
+ * @param calls       количество завершённых вызовов
+ * @param errors      количество вызовов, завершённых исключением
+ * @param meanMs      среднее время выполнения
+ * @param p50Ms       медиана времени выполнения
+ * @param p90Ms       90-й процентиль времени выполнения
+ * @param p99Ms       99-й процентиль времени выполнения
+ * @param maxMs       максимальное время выполнения
+ */
+public record AuditRollup(Instant windowStart, Instant windowEnd, long calls, long errors,
+                          double meanMs, double p50Ms, double p90Ms, double p99Ms, double maxMs) {
+}
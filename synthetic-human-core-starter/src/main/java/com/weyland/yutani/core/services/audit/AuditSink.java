@@ -0,0 +1,28 @@
+package com.weyland.yutani.core.services.audit;
+
+import java.util.List;
+
+/**
+ * Получатель пачек событий аудита. Вызывается только из потока публикатора.
+ */
+public interface AuditSink {
+
+    /**
+     * Публикует пачку событий в порядке их следования.
+     *
+     * @param events события
+     */
+    void publish(List<AuditEvent> events);
+
+    /**
+     * Запускает фоновые задачи получателя перед запуском публикатора.
+     */
+    default void start() {
+    }
+
+    /**
+     * Освобождает ресурсы получателя после остановки публикатора.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,19 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * Этап вызова, к которому относится событие аудита, или {@link #SUMMARY} - сводка по методу за окно.
+ */
+public enum AuditStatus {
+    START, SUCCESS, ERROR, SUMMARY;
+
+    private final SerializedString json = new SerializedString(name());
+
+    /**
+     * @return название этапа, заранее закодированное для записи в JSON
+     */
+    public SerializedString json() {
+        return json;
+    }
+}
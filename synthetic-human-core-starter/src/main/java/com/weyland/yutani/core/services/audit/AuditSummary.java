@@ -0,0 +1,235 @@
+package com.weyland.yutani.core.services.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сводка вызовов по методам для {@code audit.mode: SUMMARY}.
+ * Вызывающие потоки только увеличивают счётчики метода: количество вызовов, ошибок, суммарное время
+ * и гистограмму времени выполнения на {@link LongAdder}, которые распределяют конкурирующие обновления по ячейкам
+ * без блокировок. Счётчики не обнуляются: в конце окна фоновый поток вычитает значения, опубликованные
+ * в прошлый раз, поэтому каждый вызов попадает ровно в одно окно. Для каждого метода с вызовами в окне
+ * в буфер аудита передаётся одно событие {@link AuditStatus#SUMMARY} со сводкой {@link AuditRollup}.
+ * <p>
+ * Гистограмма логарифмическая с четырьмя интервалами на каждую степень двойки микросекунд, до 2<sup>32</sup> мкс.
+ * Останавливается после веб-сервера, но до публикатора, и перед остановкой публикует сводку последнего окна.
+ */
+@Slf4j
+public class AuditSummary implements SmartLifecycle {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 31;
+    private static final int BUCKETS = ((MAX_EXPONENT - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + SUB_BUCKETS;
+
+    private final AuditBuffer buffer;
+    private final long windowMillis;
+    private final Map<AuditMethod, Stats> stats = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timer;
+    private long windowStart;
+    private volatile boolean running;
+
+    /**
+     * @param buffer       буфер, в который передаются сводки
+     * @param windowMillis длительность окна, мс
+     */
+    public AuditSummary(AuditBuffer buffer, long windowMillis) {
+        this.buffer = buffer;
+        this.windowMillis = Math.max(1, windowMillis);
+    }
+
+    /**
+     * Учитывает завершённый вызов метода.
+     *
+     * @param method метод
+     * @param nanos  время выполнения, нс
+     * @param error  true, если вызов завершился исключением
+     */
+    public void record(AuditMethod method, long nanos, boolean error) {
+        Stats methodStats = stats.get(method);
+        if (methodStats == null) {
+            methodStats = stats.computeIfAbsent(method, m -> new Stats());
+        }
+        methodStats.record(nanos, error);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        windowStart = System.currentTimeMillis();
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audit-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::roll, windowMillis - windowStart % windowMillis, windowMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Сводка аудита запущена: окно {} мс", windowMillis);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        timer.shutdownNow();
+        try {
+            timer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        roll();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 3072;
+    }
+
+    /**
+     * Завершает окно и передаёт сводки методов с вызовами в буфер аудита.
+     */
+    private synchronized void roll() {
+        try {
+            long windowEnd = System.currentTimeMillis();
+            Instant start = Instant.ofEpochMilli(windowStart);
+            Instant end = Instant.ofEpochMilli(windowEnd);
+            stats.forEach((method, methodStats) -> {
+                AuditRollup rollup = methodStats.rollup(start, end);
+                if (rollup != null && !buffer.offer(new AuditEvent(AuditEvent.newAuditId(), windowEnd,
+                        AuditStatus.SUMMARY, method, null, rollup, null))) {
+                    log.debug("Буфер аудита заполнен, сводка {} отброшена", method.getName());
+                }
+            });
+            windowStart = windowEnd;
+        } catch (RuntimeException e) {
+            log.error("Ошибка формирования сводки аудита: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return номер интервала гистограммы для времени {@code micros}
+     */
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) | (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return верхняя граница интервала гистограммы {@code bucket} (не включая её), мкс
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1)) + 1) << shift;
+    }
+
+    /**
+     * Счётчики одного метода. Обновляются вызывающими потоками, а поля {@code reported*} читает и пишет
+     * только поток сводки.
+     */
+    private static final class Stats {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+        private final long[] reportedBuckets = new long[BUCKETS];
+        private long reportedCalls;
+        private long reportedErrors;
+        private long reportedMicros;
+
+        private Stats() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos, boolean error) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            calls.increment();
+            if (error) {
+                errors.increment();
+            }
+            totalMicros.add(micros);
+            buckets[bucket(micros)].increment();
+            maxMicros.accumulate(micros);
+        }
+
+        /**
+         * @return сводка вызовов после прошлой сводки или null, если вызовов не было
+         */
+        private AuditRollup rollup(Instant windowStart, Instant windowEnd) {
+            long callsNow = calls.sum();
+            long windowCalls = callsNow - reportedCalls;
+            if (windowCalls == 0) {
+                return null;
+            }
+            long errorsNow = errors.sum();
+            long microsNow = totalMicros.sum();
+            long[] counts = new long[BUCKETS];
+            long counted = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = buckets[i].sum();
+                counts[i] = value - reportedBuckets[i];
+                reportedBuckets[i] = value;
+                counted += counts[i];
+            }
+            long max = maxMicros.getThenReset();
+            AuditRollup rollup = new AuditRollup(windowStart, windowEnd, windowCalls, errorsNow - reportedErrors,
+                    millis((double) (microsNow - reportedMicros) / windowCalls),
+                    millis(percentile(counts, counted, 0.50, max)),
+                    millis(percentile(counts, counted, 0.90, max)),
+                    millis(percentile(counts, counted, 0.99, max)),
+                    millis(max));
+            reportedCalls = callsNow;
+            reportedErrors = errorsNow;
+            reportedMicros = microsNow;
+            return rollup;
+        }
+
+        private static long percentile(long[] counts, long total, double quantile, long max) {
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        private static double millis(double micros) {
+            return Math.round(micros) / 1000.0;
+        }
+    }
+}
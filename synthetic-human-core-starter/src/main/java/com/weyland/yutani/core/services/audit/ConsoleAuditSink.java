@@ -0,0 +1,31 @@
+package com.weyland.yutani.core.services.audit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Публикация событий аудита в журнал приложения.
+ */
+@Slf4j
+public class ConsoleAuditSink implements AuditSink {
+
+    private final AuditEventSerializer serializer;
+
+    public ConsoleAuditSink(AuditEventSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    @Override
+    public void publish(List<AuditEvent> events) {
+        for (AuditEvent event : events) {
+            try {
+                log.info("[AUDIT] {}", new String(serializer.serialize(event), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.error("Ошибка сериализации данных аудита {}: {}", event.auditId(), e.getMessage());
+            }
+        }
+    }
+}
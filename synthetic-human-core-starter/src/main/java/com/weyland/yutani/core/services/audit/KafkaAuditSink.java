@@ -0,0 +1,258 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.weyland.yutani.core.annotations.WeylandWatchingYou.Severity;
+import com.weyland.yutani.core.config.AuditProperties;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.admission.TokenBucket;
+import com.weyland.yutani.core.services.audit.outbox.AuditOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.ProducerListener;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.messaging.MessageHeaders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Публикация событий аудита в топик Kafka. Пачка передаётся производителю без ожидания подтверждений,
+ * поэтому сообщения отправляются брокеру пачками производителя.
+ * Событие передаётся производителю готовым массивом байтов, поэтому аудит использует собственного
+ * производителя с {@link ByteArraySerializer} и настройками подключения общей фабрики производителей,
+ * к которым добавлены сжатие и размер пачек из {@code audit.kafka.producer}.
+ * Формат сообщения указывается в заголовке {@code contentType}.
+ * <p>
+ * С хранилищем {@link AuditOutbox} события не теряются при недоступности Kafka: после ошибки отправки
+ * все события записываются в хранилище, а также туда попадают события сверх {@code maxInFlight}
+ * неподтверждённых сообщений. Фоновый поток отправляет события из хранилища с ограниченной скоростью
+ * и возвращает публикацию в Kafka, когда все события из хранилища отправлены.
+ */
+@Slf4j
+public class KafkaAuditSink implements AuditSink {
+
+    private static final long DRAIN_IDLE_MS = 200;
+    private static final int CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final AuditEventSerializer serializer;
+    private final String topic;
+    private final AuditPartitionKey key;
+    private final List<Header> headers;
+    private final AuditOutbox outbox;
+    private final MetricsService metricsService;
+    private final int maxInFlight;
+    private final int drainBatchSize;
+    private final long retryIntervalMs;
+    private final TokenBucket drainRate;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean spilling;
+    private volatile boolean running;
+    private Thread drainer;
+
+    /**
+     * @param outbox хранилище неотправленных событий или null, если события при ошибке отправки отбрасываются
+     */
+    public KafkaAuditSink(ProducerFactory<?, ?> sharedProducerFactory, AuditEventSerializer serializer,
+                          AuditProperties.Kafka properties, AuditOutbox outbox, MetricsService metricsService) {
+        Map<String, Object> config = new HashMap<>(sharedProducerFactory.getConfigurationProperties());
+        AuditProperties.Kafka.Producer producer = properties.getProducer();
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, producer.getCompressionType());
+        config.put(ProducerConfig.LINGER_MS_CONFIG, producer.getLingerMs());
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, producer.getBatchSize());
+        config.put(ProducerConfig.ACKS_CONFIG, producer.getAcks());
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, producer.getMaxBlockMs());
+        config.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, producer.getDeliveryTimeoutMs());
+        this.producerFactory = new DefaultKafkaProducerFactory<>(config, new StringSerializer(),
+                new ByteArraySerializer());
+        this.producerFactory.setPhysicalCloseTimeout(CLOSE_TIMEOUT_SECONDS);
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        // Ошибки отправки обрабатываются здесь же, журнал шаблона повторял бы их при каждой попытке
+        this.kafkaTemplate.setProducerListener(new ProducerListener<>() {
+        });
+        this.serializer = serializer;
+        this.topic = properties.getTopic();
+        this.key = properties.getKey();
+        this.headers = List.of(new RecordHeader(MessageHeaders.CONTENT_TYPE,
+                properties.getEncoding().getContentType().getBytes(StandardCharsets.UTF_8)));
+        this.outbox = outbox;
+        this.metricsService = metricsService;
+        AuditProperties.Kafka.Outbox outboxProperties = properties.getOutbox();
+        this.maxInFlight = outboxProperties.getMaxInFlight();
+        this.drainBatchSize = Math.max(1, outboxProperties.getDrainBatchSize());
+        this.retryIntervalMs = Math.max(1, outboxProperties.getRetryIntervalMs());
+        this.drainRate = new TokenBucket(outboxProperties.getDrainRate(), drainBatchSize);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (outbox == null || running) {
+            return;
+        }
+        running = true;
+        drainer = Thread.ofPlatform().name("audit-outbox-drainer").daemon(true).start(this::drain);
+    }
+
+    @Override
+    public void publish(List<AuditEvent> events) {
+        for (AuditEvent event : events) {
+            byte[] payload;
+            try {
+                payload = serializer.serialize(event);
+            } catch (IOException e) {
+                log.error("Ошибка сериализации данных аудита {}: {}", event.auditId(), e.getMessage());
+                continue;
+            }
+            String messageKey = key.of(event);
+            if (outbox != null && (spilling || inFlight.get() >= maxInFlight)) {
+                spill(messageKey, payload, event.severity());
+            } else {
+                send(event.auditId(), event.severity(), messageKey, payload);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+            if (drainer != null) {
+                drainer.interrupt();
+                try {
+                    drainer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        // Неподтверждённые сообщения завершаются ошибкой при закрытии производителя и попадают в хранилище
+        producerFactory.destroy();
+    }
+
+    private void send(String auditId, Severity severity, String messageKey, byte[] payload) {
+        inFlight.incrementAndGet();
+        try {
+            kafkaTemplate.send(record(messageKey, payload))
+                    .whenComplete((sendResult, ex) -> {
+                        inFlight.decrementAndGet();
+                        if (ex == null) {
+                            log.trace("Сообщение аудита отправлено: {}", auditId);
+                        } else {
+                            failed(auditId, severity, messageKey, payload, ex);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            failed(auditId, severity, messageKey, payload, e);
+        }
+    }
+
+    private void failed(String auditId, Severity severity, String messageKey, byte[] payload, Throwable ex) {
+        if (outbox == null) {
+            log.error("Ошибка при отправке сообщения аудита: {}", auditId, ex);
+            return;
+        }
+        if (!spilling) {
+            spilling = true;
+            log.warn("Ошибка при отправке сообщения аудита {}, события записываются в локальное хранилище: {}",
+                    auditId, ex.getMessage());
+        }
+        spill(messageKey, payload, severity);
+    }
+
+    private void spill(String messageKey, byte[] payload, Severity severity) {
+        if (outbox.append(messageKey, payload)) {
+            metricsService.incrementAuditSpilled();
+        } else {
+            metricsService.incrementAuditDropped(severity);
+        }
+    }
+
+    /**
+     * Отправляет события из хранилища пачками с ограниченной скоростью. Пачка отмечается отправленной
+     * после подтверждения всех её сообщений, при ошибке отправка повторяется через {@code retryIntervalMs}.
+     */
+    private void drain() {
+        while (running) {
+            try {
+                AuditOutbox.Batch batch = outbox.read(drainBatchSize);
+                if (batch.entries().isEmpty()) {
+                    resumeIfDrained();
+                    Thread.sleep(DRAIN_IDLE_MS);
+                    continue;
+                }
+                long wait;
+                while ((wait = drainRate.tryAcquire(batch.entries().size())) > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                if (sendBatch(batch)) {
+                    outbox.commit(batch);
+                    metricsService.incrementAuditDrained(batch.entries().size());
+                    resumeIfDrained();
+                } else {
+                    Thread.sleep(retryIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка отправки событий аудита из хранилища: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(retryIntervalMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает публикацию в Kafka, когда хранилище опустошено. До этого новые события пишутся в хранилище,
+     * чтобы не обгонять события, записанные в него раньше.
+     */
+    private void resumeIfDrained() {
+        if (spilling && outbox.isEmpty()) {
+            spilling = false;
+            log.info("Отправка аудита в Kafka восстановлена, хранилище опустошено");
+        }
+    }
+
+    private boolean sendBatch(AuditOutbox.Batch batch) throws InterruptedException {
+        List<CompletableFuture<SendResult<String, byte[]>>> futures = new ArrayList<>(batch.entries().size());
+        try {
+            for (AuditOutbox.Entry entry : batch.entries()) {
+                CompletableFuture<SendResult<String, byte[]>> future =
+                        kafkaTemplate.send(record(entry.key(), entry.payload()));
+                futures.add(future);
+                if (future.isCompletedExceptionally()) {
+                    // Производитель не дождался метаданных или места в буфере - остальные сообщения ждали бы так же
+                    break;
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get();
+            return true;
+        } catch (ExecutionException | RuntimeException e) {
+            log.debug("Пачка аудита из хранилища не отправлена: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private ProducerRecord<String, byte[]> record(String messageKey, byte[] payload) {
+        return new ProducerRecord<>(topic, null, messageKey, payload, headers);
+    }
+}
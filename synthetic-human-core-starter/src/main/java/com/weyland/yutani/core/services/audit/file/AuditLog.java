@@ -0,0 +1,223 @@
+package com.weyland.yutani.core.services.audit.file;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Локальный журнал аудита из сегментов, отображённых в память.
+ * События дописываются последовательно одним потоком публикатора. Сегмент сменяется при заполнении или
+ * по истечении {@code rollInterval}; старые сегменты удаляются по истечении {@code retention} или при
+ * превышении {@code maxTotalBytes} записанных данных. Сегменты предыдущих запусков открываются при старте,
+ * поэтому записанные до перезапуска события остаются доступны для поиска; запись продолжается в последний
+ * из них, пока он не заполнится или не истечёт {@code rollInterval}.
+ */
+@Slf4j
+public class AuditLog implements AutoCloseable {
+
+    private static final long RETENTION_CHECK_INTERVAL_MS = 60_000;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long rollIntervalMs;
+    private final long retentionMs;
+    private final long maxTotalBytes;
+    private final ConcurrentSkipListMap<Long, AuditLogSegment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, MethodKey> methods = new ConcurrentHashMap<>();
+    private AuditLogSegment active;
+    private long lastRetentionCheck;
+    private volatile boolean open;
+
+    /**
+     * @param directory     каталог сегментов
+     * @param segmentSize   размер сегмента, байт; сегмент отображается в память одним буфером,
+     *                      поэтому не больше {@link Integer#MAX_VALUE}
+     * @param rollInterval  максимальное время записи в один сегмент
+     * @param retention     время хранения сегмента после последней записи в него
+     * @param maxTotalBytes максимальный общий объём записанных в сегменты данных, байт
+     */
+    public AuditLog(Path directory, long segmentSize, Duration rollInterval, Duration retention, long maxTotalBytes) {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Размер сегмента журнала аудита должен быть от 1 байта до 2 ГБ: "
+                    + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize;
+        this.rollIntervalMs = rollInterval.toMillis();
+        this.retentionMs = retention.toMillis();
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * Открывает сегменты предыдущих запусков: последний - для дописывания, остальные - для чтения.
+     * Новый сегмент создаётся, только если сегментов ещё нет.
+     */
+    public synchronized void open() {
+        List<Path> paths = listSegments();
+        for (int i = 0; i < paths.size(); i++) {
+            AuditLogSegment segment = AuditLogSegment.open(paths.get(i), name -> method(name).id(),
+                    i == paths.size() - 1);
+            segments.put(segment.id(), segment);
+        }
+        if (segments.isEmpty()) {
+            active = AuditLogSegment.create(directory, 1, segmentSize);
+            segments.put(active.id(), active);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        open = true;
+        enforceRetention(System.currentTimeMillis());
+        log.info("Журнал аудита открыт в {}: сегментов {}", directory, segments.size());
+    }
+
+    /**
+     * Дописывает событие. Вызывается только потоком публикатора.
+     *
+     * @param timestamp время события, мс от начала эпохи
+     * @param method    класс и имя метода
+     * @param auditId   идентификатор вызова
+     * @param payload   событие в JSON
+     */
+    public synchronized void append(long timestamp, String method, String auditId, byte[] payload) {
+        if (!open) {
+            throw new IllegalStateException("Журнал аудита закрыт");
+        }
+        MethodKey methodKey = method(method);
+        byte[] auditIdBytes = auditId.getBytes(StandardCharsets.UTF_8);
+        int recordSize = AuditLogSegment.recordSize(methodKey.bytes(), auditIdBytes, payload);
+        if (recordSize + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Событие аудита превышает размер сегмента: " + recordSize);
+        }
+        long now = System.currentTimeMillis();
+        if (!active.hasRoom(recordSize) || now - active.createdAt() >= rollIntervalMs) {
+            roll();
+        }
+        active.append(timestamp, methodKey.id(), methodKey.bytes(), auditId, auditIdBytes, payload);
+        if (now - lastRetentionCheck >= RETENTION_CHECK_INTERVAL_MS) {
+            enforceRetention(now);
+        }
+    }
+
+    /**
+     * Ищет события от новых к старым.
+     *
+     * @param method  класс и имя метода, null - любой метод
+     * @param auditId идентификатор вызова, null - любой
+     * @param from    начало интервала, мс от начала эпохи, включительно
+     * @param to      конец интервала, мс от начала эпохи, включительно
+     * @param limit   максимальное количество событий
+     * @return события в JSON
+     */
+    public List<byte[]> find(String method, String auditId, long from, long to, int limit) {
+        List<byte[]> result = new ArrayList<>(Math.min(limit, 1024));
+        int methodId = -1;
+        if (method != null) {
+            MethodKey methodKey = methods.get(method);
+            if (methodKey == null) {
+                return result;
+            }
+            methodId = methodKey.id();
+        }
+        for (AuditLogSegment segment : segments.descendingMap().values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (segment.count() == 0) {
+                continue;
+            }
+            if (segment.lastTimestamp() < from) {
+                break;
+            }
+            if (segment.firstTimestamp() <= to) {
+                segment.find(methodId, auditId, from, to, limit, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Сбрасывает записанные события на диск.
+     */
+    public synchronized void flush() {
+        if (active != null) {
+            active.flush();
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        flush();
+    }
+
+    private MethodKey method(String name) {
+        MethodKey key = methods.get(name);
+        if (key == null) {
+            synchronized (methods) {
+                key = methods.computeIfAbsent(name,
+                        n -> new MethodKey(methods.size(), n.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        return key;
+    }
+
+    private void roll() {
+        active.flush();
+        active = AuditLogSegment.create(directory, active.id() + 1, segmentSize);
+        segments.put(active.id(), active);
+        enforceRetention(System.currentTimeMillis());
+    }
+
+    private void enforceRetention(long now) {
+        lastRetentionCheck = now;
+        long totalBytes = 0;
+        for (AuditLogSegment segment : segments.values()) {
+            totalBytes += segment.writtenBytes();
+        }
+        while (true) {
+            Map.Entry<Long, AuditLogSegment> oldest = segments.firstEntry();
+            if (oldest == null || oldest.getValue() == active) {
+                return;
+            }
+            AuditLogSegment segment = oldest.getValue();
+            if (now - segment.lastTimestamp() < retentionMs && totalBytes <= maxTotalBytes) {
+                return;
+            }
+            segments.remove(oldest.getKey());
+            totalBytes -= segment.writtenBytes();
+            segment.delete();
+            log.debug("Сегмент аудита удалён: {}", segment.path());
+        }
+    }
+
+    private List<Path> listSegments() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                return files.filter(path -> path.getFileName().toString().endsWith(AuditLogSegment.SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать каталог аудита " + directory, e);
+        }
+    }
+
+    private record MethodKey(int id, byte[] bytes) {
+    }
+}
@@ -0,0 +1,292 @@
+package com.weyland.yutani.core.services.audit.file;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32C;
+
+/**
+ * Сегмент журнала аудита: файл фиксированного размера, отображённый в память, и его индекс.
+ * Формат записи: {@code [длина тела][CRC32C тела][время][длина метода][метод][длина auditId][auditId][JSON]},
+ * нулевая длина означает конец записанных данных. После каждой записи пишется нулевой заголовок, поэтому
+ * запись поверх оборванного хвоста не оставляет за собой его остатков.
+ * Индекс хранит для каждой записи время, смещение, номер метода и хэш auditId (20 байт на запись),
+ * поэтому поиск по времени, методу и auditId не читает сегмент, а лишь проверяет найденные записи.
+ * Записи добавляются одним потоком; индекс публикуется изменением {@link #count}, поэтому читать
+ * сегмент можно из любого потока.
+ */
+@Slf4j
+final class AuditLogSegment {
+
+    static final String SUFFIX = ".audit";
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final int INITIAL_INDEX_SIZE = 1024;
+
+    private final Path path;
+    private final long id;
+    private final MappedByteBuffer buffer;
+    private long createdAt;
+    private long[] timestamps = new long[INITIAL_INDEX_SIZE];
+    private int[] offsets = new int[INITIAL_INDEX_SIZE];
+    private int[] methodIds = new int[INITIAL_INDEX_SIZE];
+    private int[] idHashes = new int[INITIAL_INDEX_SIZE];
+    private volatile int count;
+    private int writePosition;
+    private int flushedPosition;
+
+    private AuditLogSegment(Path path, long id, long createdAt, MappedByteBuffer buffer) {
+        this.path = path;
+        this.id = id;
+        this.createdAt = createdAt;
+        this.buffer = buffer;
+    }
+
+    static AuditLogSegment create(Path directory, long id, int size) {
+        Path path = directory.resolve(String.format("%020d%s", id, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new AuditLogSegment(path, id, System.currentTimeMillis(), buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент аудита " + path, e);
+        }
+    }
+
+    /**
+     * Открывает сегмент предыдущего запуска и восстанавливает его индекс. Временем создания непустого
+     * сегмента считается время его первой записи.
+     *
+     * @param methodIds номер метода по имени
+     * @param writable  true - сегмент открывается для дописывания с конца записанных данных
+     */
+    static AuditLogSegment open(Path path, ToIntFunction<String> methodIds, boolean writable) {
+        String fileName = path.getFileName().toString();
+        long id = Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            AuditLogSegment segment = new AuditLogSegment(path, id, Files.getLastModifiedTime(path).toMillis(), buffer);
+            segment.recover(methodIds);
+            if (segment.count > 0) {
+                segment.createdAt = Math.min(segment.createdAt, segment.timestamps[0]);
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать сегмент аудита " + path, e);
+        }
+    }
+
+    private void recover(ToIntFunction<String> methodIdResolver) {
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.limit()) {
+            int bodyLength = buffer.getInt(position);
+            int bodyOffset = position + HEADER_BYTES;
+            if (bodyLength <= 0 || bodyOffset + bodyLength > buffer.limit()) {
+                break;
+            }
+            if (checksum(buffer.slice(bodyOffset, bodyLength)) != buffer.getInt(position + Integer.BYTES)) {
+                log.warn("Повреждённая запись в сегменте аудита {} на позиции {}, дальнейшие записи пропущены",
+                        path, position);
+                break;
+            }
+            long timestamp = buffer.getLong(bodyOffset);
+            int methodLength = buffer.getShort(bodyOffset + Long.BYTES);
+            String method = readString(bodyOffset + Long.BYTES + Short.BYTES, methodLength);
+            int idOffset = bodyOffset + Long.BYTES + Short.BYTES + methodLength;
+            String auditId = readString(idOffset + Short.BYTES, buffer.getShort(idOffset));
+            index(timestamp, position, methodIdResolver.applyAsInt(method), auditId.hashCode());
+            position = bodyOffset + bodyLength;
+        }
+        writePosition = position;
+        flushedPosition = position;
+    }
+
+    /**
+     * @return размер записи с указанными полями, байт
+     */
+    static int recordSize(byte[] method, byte[] auditId, byte[] payload) {
+        return HEADER_BYTES + Long.BYTES + Short.BYTES * 2 + method.length + auditId.length + payload.length;
+    }
+
+    boolean hasRoom(int bytes) {
+        // Оставляем место под нулевой заголовок, обозначающий конец данных
+        return writePosition + bytes + Integer.BYTES <= buffer.capacity();
+    }
+
+    void append(long timestamp, int methodId, byte[] method, String auditId, byte[] auditIdBytes, byte[] payload) {
+        int position = writePosition;
+        int bodyOffset = position + HEADER_BYTES;
+        int cursor = bodyOffset;
+        buffer.putLong(cursor, timestamp);
+        cursor += Long.BYTES;
+        buffer.putShort(cursor, (short) method.length);
+        buffer.put(cursor + Short.BYTES, method);
+        cursor += Short.BYTES + method.length;
+        buffer.putShort(cursor, (short) auditIdBytes.length);
+        buffer.put(cursor + Short.BYTES, auditIdBytes);
+        cursor += Short.BYTES + auditIdBytes.length;
+        buffer.put(cursor, payload);
+        cursor += payload.length;
+        buffer.putInt(cursor, 0);
+        int bodyLength = cursor - bodyOffset;
+        buffer.putInt(position + Integer.BYTES, checksum(buffer.slice(bodyOffset, bodyLength)));
+        buffer.putInt(position, bodyLength);
+        writePosition = cursor;
+        index(timestamp, position, methodId, auditId.hashCode());
+    }
+
+    private void index(long timestamp, int offset, int methodId, int idHash) {
+        int n = count;
+        if (n == timestamps.length) {
+            int size = n * 2;
+            long[] grownTimestamps = Arrays.copyOf(timestamps, size);
+            int[] grownOffsets = Arrays.copyOf(offsets, size);
+            int[] grownMethodIds = Arrays.copyOf(methodIds, size);
+            int[] grownIdHashes = Arrays.copyOf(idHashes, size);
+            timestamps = grownTimestamps;
+            offsets = grownOffsets;
+            methodIds = grownMethodIds;
+            idHashes = grownIdHashes;
+        }
+        timestamps[n] = n > 0 ? Math.max(timestamps[n - 1], timestamp) : timestamp;
+        offsets[n] = offset;
+        methodIds[n] = methodId;
+        idHashes[n] = idHash;
+        count = n + 1;
+    }
+
+    /**
+     * Добавляет в {@code result} записи, подходящие под запрос, от новых к старым.
+     *
+     * @param methodId номер метода, -1 - любой метод
+     * @param auditId  идентификатор вызова, null - любой
+     * @param from     начало интервала, мс от начала эпохи, включительно
+     * @param to       конец интервала, мс от начала эпохи, включительно
+     * @param limit    максимальный размер {@code result}
+     */
+    void find(int methodId, String auditId, long from, long to, int limit, List<byte[]> result) {
+        int n = count;
+        long[] timestamps = this.timestamps;
+        int[] offsets = this.offsets;
+        int[] methodIds = this.methodIds;
+        int[] idHashes = this.idHashes;
+        int idHash = auditId != null ? auditId.hashCode() : 0;
+        for (int i = n - 1; i >= 0 && result.size() < limit; i--) {
+            if (timestamps[i] > to) {
+                continue;
+            }
+            if (timestamps[i] < from) {
+                break;
+            }
+            if (methodId >= 0 && methodIds[i] != methodId) {
+                continue;
+            }
+            if (auditId != null && (idHashes[i] != idHash || !auditId.equals(readAuditId(offsets[i])))) {
+                continue;
+            }
+            result.add(readPayload(offsets[i]));
+        }
+    }
+
+    private String readAuditId(int position) {
+        int idOffset = position + HEADER_BYTES + Long.BYTES;
+        idOffset += Short.BYTES + buffer.getShort(idOffset);
+        return readString(idOffset + Short.BYTES, buffer.getShort(idOffset));
+    }
+
+    private byte[] readPayload(int position) {
+        int bodyOffset = position + HEADER_BYTES;
+        int cursor = bodyOffset + Long.BYTES;
+        cursor += Short.BYTES + buffer.getShort(cursor);
+        cursor += Short.BYTES + buffer.getShort(cursor);
+        byte[] payload = new byte[bodyOffset + buffer.getInt(position) - cursor];
+        buffer.get(cursor, payload);
+        return payload;
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Сбрасывает на диск записанные с прошлого сброса данные.
+     */
+    void flush() {
+        int target = writePosition;
+        if (target > flushedPosition) {
+            buffer.force(flushedPosition, target - flushedPosition);
+            flushedPosition = target;
+        }
+    }
+
+    long id() {
+        return id;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return время первой записи, мс от начала эпохи, или время создания пустого сегмента
+     */
+    long firstTimestamp() {
+        return count > 0 ? timestamps[0] : createdAt;
+    }
+
+    /**
+     * @return время последней записи, мс от начала эпохи, или время создания пустого сегмента
+     */
+    long lastTimestamp() {
+        int n = count;
+        return n > 0 ? timestamps[n - 1] : createdAt;
+    }
+
+    /**
+     * @return объём записанных данных, байт. Файл сегмента разрежен, поэтому на диске занято примерно столько же,
+     * хотя его размер равен размеру отображения
+     */
+    long writtenBytes() {
+        return writePosition;
+    }
+
+    void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось удалить сегмент аудита " + path, e);
+        }
+    }
+
+    private static int checksum(ByteBuffer body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,39 @@
+package com.weyland.yutani.core.services.audit.file;
+
+import com.weyland.yutani.core.services.audit.AuditEvent;
+import com.weyland.yutani.core.services.audit.AuditEventSerializer;
+import com.weyland.yutani.core.services.audit.AuditSink;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Публикация событий аудита в локальный журнал {@link AuditLog}.
+ * Данные сбрасываются на диск после каждой пачки.
+ */
+@Slf4j
+public class FileAuditSink implements AuditSink {
+
+    private final AuditLog auditLog;
+    private final AuditEventSerializer serializer;
+
+    public FileAuditSink(AuditLog auditLog, AuditEventSerializer serializer) {
+        this.auditLog = auditLog;
+        this.serializer = serializer;
+    }
+
+    @Override
+    public void publish(List<AuditEvent> events) {
+        for (AuditEvent event : events) {
+            try {
+                auditLog.append(event.timestamp(), event.method().getName(), event.auditId(), serializer.serialize(event));
+            } catch (IOException e) {
+                log.error("Ошибка сериализации данных аудита {}: {}", event.auditId(), e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("Ошибка записи события аудита {} в журнал: {}", event.auditId(), e.getMessage());
+            }
+        }
+        auditLog.flush();
+    }
+}
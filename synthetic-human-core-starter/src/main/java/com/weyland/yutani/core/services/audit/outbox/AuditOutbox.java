@@ -0,0 +1,305 @@
+package com.weyland.yutani.core.services.audit.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Локальное хранилище событий аудита, не отправленных в Kafka.
+ * События дописываются в конец файлов-сегментов и читаются с начала самого старого сегмента. Отправленная часть
+ * отмечается в файле контрольной точки, а полностью отправленные сегменты удаляются, поэтому после перезапуска
+ * повторно отправляется не больше одной пачки.
+ * Формат записи: {@code [длина тела][CRC32C тела][длина ключа, -1 - без ключа][ключ][событие]}.
+ * Записи не сбрасываются на диск синхронно: события переживают остановку процесса, но не сбой ОС.
+ */
+@Slf4j
+public class AuditOutbox implements AutoCloseable {
+
+    static final String SUFFIX = ".outbox";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long maxBytes;
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel writer;
+    private long activeId;
+    private long activeSize;
+    private long readPosition;
+    private volatile long pendingBytes;
+
+    /**
+     * @param directory   каталог сегментов
+     * @param segmentSize размер сегмента, после которого начинается новый, байт
+     * @param maxBytes    максимальный объём неотправленных событий, байт
+     */
+    public AuditOutbox(Path directory, long segmentSize, long maxBytes) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Открывает сегменты предыдущих запусков и создаёт сегмент для записи.
+     */
+    public synchronized void open() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                        .forEach(path -> segments.put(segmentId(path), path));
+            }
+            long[] checkpoint = readCheckpoint();
+            while (!segments.isEmpty() && segments.firstKey() < checkpoint[0]) {
+                Files.deleteIfExists(segments.pollFirstEntry().getValue());
+            }
+            readPosition = !segments.isEmpty() && segments.firstKey() == checkpoint[0] ? checkpoint[1] : 0;
+            long total = 0;
+            for (Path path : segments.values()) {
+                total += Files.size(path);
+            }
+            pendingBytes = Math.max(0, total - readPosition);
+            roll(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть хранилище аудита " + directory, e);
+        }
+        if (pendingBytes > 0) {
+            log.info("Хранилище аудита {}: неотправленных событий {} байт", directory, pendingBytes);
+        }
+    }
+
+    /**
+     * Дописывает событие.
+     *
+     * @param key     ключ сообщения или null
+     * @param payload событие
+     * @return false, если хранилище заполнено и событие не записано
+     */
+    public synchronized boolean append(String key, byte[] payload) {
+        byte[] keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : null;
+        int bodyLength = Short.BYTES + (keyBytes != null ? keyBytes.length : 0) + payload.length;
+        int recordLength = HEADER_BYTES + bodyLength;
+        if (pendingBytes + recordLength > maxBytes) {
+            return false;
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        record.putInt(bodyLength).putInt(0);
+        record.putShort((short) (keyBytes != null ? keyBytes.length : -1));
+        if (keyBytes != null) {
+            record.put(keyBytes);
+        }
+        record.put(payload);
+        record.putInt(Integer.BYTES, checksum(record.slice(HEADER_BYTES, bodyLength)));
+        record.flip();
+        try {
+            if (activeSize >= segmentSize) {
+                roll(activeId + 1);
+            }
+            while (record.hasRemaining()) {
+                writer.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать событие в хранилище аудита " + directory, e);
+        }
+        activeSize += recordLength;
+        pendingBytes += recordLength;
+        return true;
+    }
+
+    /**
+     * Читает очередную пачку событий из самого старого сегмента. Пачка считается отправленной
+     * только после {@link #commit}, до этого следующий вызов вернёт те же события.
+     *
+     * @param maxEntries максимальное количество событий
+     * @return пачка событий, пустая - если неотправленных событий нет
+     */
+    public synchronized Batch read(int maxEntries) {
+        while (true) {
+            Map.Entry<Long, Path> head = segments.firstEntry();
+            long segmentId = head.getKey();
+            boolean active = segmentId == activeId;
+            try (FileChannel channel = FileChannel.open(head.getValue(), StandardOpenOption.READ)) {
+                long size = active ? activeSize : channel.size();
+                if (readPosition >= size) {
+                    if (active) {
+                        return new Batch(List.of(), segmentId, readPosition, readPosition);
+                    }
+                    removeHead();
+                    continue;
+                }
+                List<Entry> entries = new ArrayList<>(Math.min(maxEntries, 1024));
+                long position = readPosition;
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (entries.size() < maxEntries && position + HEADER_BYTES <= size) {
+                    header.clear();
+                    channel.read(header, position);
+                    int bodyLength = header.getInt(0);
+                    if (bodyLength < Short.BYTES || position + HEADER_BYTES + bodyLength > size) {
+                        break;
+                    }
+                    ByteBuffer body = ByteBuffer.allocate(bodyLength);
+                    channel.read(body, position + HEADER_BYTES);
+                    body.flip();
+                    if (checksum(body.duplicate()) != header.getInt(Integer.BYTES)) {
+                        break;
+                    }
+                    entries.add(decode(body));
+                    position += HEADER_BYTES + bodyLength;
+                }
+                if (entries.isEmpty()) {
+                    log.warn("Повреждённая запись в хранилище аудита {} на позиции {}, остаток сегмента пропущен",
+                            head.getValue(), position);
+                    pendingBytes -= size - readPosition;
+                    if (active) {
+                        readPosition = size;
+                        return new Batch(List.of(), segmentId, readPosition, readPosition);
+                    }
+                    removeHead();
+                    continue;
+                }
+                return new Batch(entries, segmentId, readPosition, position);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось прочитать хранилище аудита " + head.getValue(), e);
+            }
+        }
+    }
+
+    /**
+     * Отмечает пачку отправленной.
+     */
+    public synchronized void commit(Batch batch) {
+        if (segments.isEmpty() || segments.firstKey() != batch.segmentId() || readPosition != batch.start()) {
+            return;
+        }
+        readPosition = batch.end();
+        pendingBytes -= batch.end() - batch.start();
+        writeCheckpoint();
+    }
+
+    /**
+     * @return true, если неотправленных событий нет
+     */
+    public boolean isEmpty() {
+        return pendingBytes <= 0;
+    }
+
+    /**
+     * @return объём неотправленных событий, байт
+     */
+    public long getPendingBytes() {
+        return Math.max(0, pendingBytes);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.force(false);
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия хранилища аудита {}: {}", directory, e.getMessage());
+        }
+        writer = null;
+    }
+
+    private void roll(long id) throws IOException {
+        if (writer != null) {
+            writer.force(false);
+            writer.close();
+        }
+        Path path = directory.resolve(String.format("%020d%s", id, SUFFIX));
+        writer = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.put(id, path);
+        activeId = id;
+        activeSize = 0;
+    }
+
+    private void removeHead() throws IOException {
+        Files.deleteIfExists(segments.pollFirstEntry().getValue());
+        readPosition = 0;
+        writeCheckpoint();
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT);
+        if (!Files.exists(path)) {
+            return new long[]{0, 0};
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        return buffer.remaining() == Long.BYTES * 2 ? new long[]{buffer.getLong(), buffer.getLong()} : new long[]{0, 0};
+    }
+
+    private void writeCheckpoint() {
+        Path path = directory.resolve(CHECKPOINT);
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2)
+                .putLong(segments.firstKey())
+                .putLong(readPosition);
+        try {
+            Files.write(temp, buffer.array());
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить контрольную точку хранилища аудита {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static Entry decode(ByteBuffer body) {
+        int keyLength = body.getShort();
+        String key = null;
+        if (keyLength >= 0) {
+            key = new String(body.array(), body.position(), keyLength, StandardCharsets.UTF_8);
+            body.position(body.position() + keyLength);
+        }
+        byte[] payload = new byte[body.remaining()];
+        body.get(payload);
+        return new Entry(key, payload);
+    }
+
+    private static long segmentId(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+    }
+
+    private static int checksum(ByteBuffer body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Событие хранилища.
+     *
+     * @param key     ключ сообщения или null
+     * @param payload событие
+     */
+    public record Entry(String key, byte[] payload) {
+    }
+
+    /**
+     * Пачка событий, прочитанных из одного сегмента.
+     *
+     * @param entries   события
+     * @param segmentId сегмент
+     * @param start     позиция первой записи пачки
+     * @param end       позиция за последней записью пачки
+     */
+    public record Batch(List<Entry> entries, long segmentId, long start, long end) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.weyland.yutani.core.services.diagnostics;
+
+import com.weyland.yutani.core.services.MetricsService;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Сообщает о закреплении виртуальных потоков за несущими потоками.
+ * Закреплённый виртуальный поток (блокировка внутри {@code synchronized} или нативного кадра)
+ * занимает несущий поток целиком, поэтому такие места сводят выигрыш от виртуальных потоков на нет.
+ * Источник событий - поток JFR {@code jdk.VirtualThreadPinned} внутри самого приложения.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int REPORTED_FRAMES = 8;
+
+    private final long thresholdMs;
+    private final MetricsService metricsService;
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(long thresholdMs, MetricsService metricsService) {
+        this.thresholdMs = thresholdMs;
+        this.metricsService = metricsService;
+    }
+
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Диагностика закрепления виртуальных потоков включена, порог: {} мс", thresholdMs);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        metricsService.recordVirtualThreadPinned(event.getDuration());
+        log.warn("Виртуальный поток {} закреплён за несущим потоком на {} мс:\n{}",
+                event.getThread() != null ? event.getThread().getJavaName() : "?",
+                event.getDuration().toMillis(), frames(event.getStackTrace()));
+    }
+
+    private static String frames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\tстек недоступен";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        return frames.stream()
+                .limit(REPORTED_FRAMES)
+                .map(frame -> "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Override
+    public void close() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.weyland.yutani.core.services.exceptions;
+
+/**
+ * Исключение, возникающее, когда запрос с тем же ключом идемпотентности ещё выполняется
+ * и его ответ не был получен за допустимое время ожидания.
+ */
+public class CommandIdempotencyConflictException extends RuntimeException {
+
+    /**
+     * Создает новое исключение с указанным сообщением.
+     *
+     * @param message подробное сообщение об ошибке
+     */
+    public CommandIdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.weyland.yutani.core.services.exceptions;
+
+/**
+ * Исключение, возникающее, когда ключ идемпотентности повторно используется с другим телом запроса.
+ */
+public class CommandIdempotencyKeyReusedException extends RuntimeException {
+
+    /**
+     * Создает новое исключение с указанным сообщением.
+     *
+     * @param message подробное сообщение об ошибке
+     */
+    public CommandIdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -8,6 +8,7 @@ package com.weyland.yutani.core.services.exceptions;
 public class CommandQueueOverflowException extends RuntimeException {
     private static final String DEFAULT_MESSAGE = "Очередь команд переполнена. Максимальный размер: %d";
     private final int maxQueueSize;
+    private long retryAfterSeconds = -1;
 
     /**
      * Создает новое исключение с сообщением по умолчанию.
@@ -40,6 +41,27 @@ public class CommandQueueOverflowException extends RuntimeException {
         this.maxQueueSize = -1;
     }
 
+    /**
+     * Создает новое исключение с пользовательским сообщением и рекомендуемой задержкой перед повтором.
+     *
+     * @param message           подробное сообщение об ошибке
+     * @param retryAfterSeconds через сколько секунд имеет смысл повторить запрос
+     */
+    public CommandQueueOverflowException(String message, long retryAfterSeconds) {
+        super(message);
+        this.maxQueueSize = -1;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Возвращает рекомендуемую задержку перед повтором запроса.
+     *
+     * @return задержка в секундах или -1, если не установлена
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
     /**
      * Возвращает максимальный размер очереди команд.
      *
@@ -0,0 +1,29 @@
+package com.weyland.yutani.core.services.exceptions;
+
+/**
+ * Исключение, возникающее при отказе в приёме команды системой контроля допуска.
+ * Генерируется до валидации команды, когда исчерпан общий лимит скорости или лимит автора.
+ */
+public class CommandRateLimitedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    /**
+     * Создает новое исключение с сообщением и рекомендуемой задержкой перед повтором.
+     *
+     * @param message           подробное сообщение об ошибке
+     * @param retryAfterSeconds через сколько секунд имеет смысл повторить запрос
+     */
+    public CommandRateLimitedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Возвращает рекомендуемую задержку перед повтором запроса.
+     *
+     * @return задержка в секундах
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
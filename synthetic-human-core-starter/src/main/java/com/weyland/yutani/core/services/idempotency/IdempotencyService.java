@@ -0,0 +1,152 @@
+package com.weyland.yutani.core.services.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.config.IdempotencyProperties;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.exceptions.CommandIdempotencyConflictException;
+import com.weyland.yutani.core.services.exceptions.CommandIdempotencyKeyReusedException;
+import com.weyland.yutani.core.services.exceptions.CommandValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный по размеру и времени хранения кэш ответов на запросы с заголовком {@code Idempotency-Key}.
+ * Первый запрос с ключом выполняется, его ответ сохраняется вместе с хэшем SHA-256 тела запроса;
+ * повторы с тем же ключом и тем же телом получают сохранённый ответ, в том числе если исходный запрос
+ * ещё выполняется, а повтор с другим телом отклоняется. Неуспешный запрос не сохраняется:
+ * ожидавшие его повторы получают ту же ошибку, а следующий повтор выполняется заново.
+ * Записи вытесняются в порядке создания по истечении TTL или при превышении количества записей.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private final IdempotencyProperties properties;
+    private final MetricsService metricsService;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> created = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    public IdempotencyService(IdempotencyProperties properties, MetricsService metricsService,
+                              ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.metricsService = metricsService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Выполняет действие не более одного раза для ключа.
+     *
+     * @param scope  область ключа, например имя конечной точки; ключи разных областей не пересекаются
+     * @param key     значение заголовка {@code Idempotency-Key}, null - действие выполняется без сохранения
+     * @param request тело запроса, с которым сравниваются повторы
+     * @param action  действие, результат которого сохраняется
+     * @return результат действия или сохранённый результат первого запроса с этим ключом
+     * @throws CommandIdempotencyConflictException  если исходный запрос не завершился за время ожидания
+     * @throws CommandIdempotencyKeyReusedException если ключ уже использован с другим телом запроса
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String scope, String key, Object request, Supplier<T> action) {
+        if (!properties.isEnabled() || key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > properties.getMaxKeyLength()) {
+            throw new CommandValidationException(
+                String.format("Длина Idempotency-Key превышает %d символов", properties.getMaxKeyLength())
+            );
+        }
+        evict();
+        Entry fresh = new Entry(scope + ':' + key, hash(request));
+        Entry existing = entries.putIfAbsent(fresh.key, fresh);
+        if (existing != null) {
+            if (!MessageDigest.isEqual(existing.requestHash, fresh.requestHash)) {
+                throw new CommandIdempotencyKeyReusedException(
+                    String.format("Idempotency-Key %s уже использован с другим телом запроса", key)
+                );
+            }
+            metricsService.incrementIdempotentReplay();
+            log.debug("Повтор запроса с Idempotency-Key {}", key);
+            return (T) await(existing, key);
+        }
+        created.offer(fresh);
+        try {
+            T result = action.get();
+            fresh.result.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            entries.remove(fresh.key, fresh);
+            fresh.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private byte[] hash(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Не удалось вычислить хэш тела запроса", e);
+        }
+    }
+
+    private Object await(Entry entry, String key) {
+        try {
+            return entry.result.get(properties.getMaxWaitSeconds(), TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new CommandIdempotencyConflictException(
+                String.format("Запрос с Idempotency-Key %s ещё выполняется", key)
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Прервано ожидание ответа на исходный запрос", e);
+        }
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long expiredBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(properties.getTtlSeconds());
+            Entry head;
+            while ((head = created.peek()) != null
+                    && (head.createdAt < expiredBefore || entries.size() > properties.getMaxEntries())) {
+                created.poll();
+                entries.remove(head.key, head);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final byte[] requestHash;
+        private final long createdAt = System.currentTimeMillis();
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Entry(String key, byte[] requestHash) {
+            this.key = key;
+            this.requestHash = requestHash;
+        }
+    }
+}
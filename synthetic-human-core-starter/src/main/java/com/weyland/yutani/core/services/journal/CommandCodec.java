@@ -0,0 +1,90 @@
+package com.weyland.yutani.core.services.journal;
+
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Компактное двоичное представление {@link Command} для журнала очереди.
+ */
+final class CommandCodec {
+
+    private static final byte VERSION = 2;
+    private static final byte VERSION_WITHOUT_DEADLINE = 1;
+    private static final int TIME_BYTES = 1 + Long.BYTES + Integer.BYTES;
+
+    private CommandCodec() {
+    }
+
+    static byte[] encode(Command command) {
+        byte[] description = bytes(command.getDescription());
+        byte[] author = bytes(command.getAuthor());
+        byte[] priority = bytes(command.getPriority() == null ? null : command.getPriority().name());
+        int size = 1 + sizeOf(description) + sizeOf(author) + sizeOf(priority) + 2 * TIME_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        putBytes(buffer, description);
+        putBytes(buffer, author);
+        putBytes(buffer, priority);
+        putTime(buffer, command.getTime());
+        putTime(buffer, command.getDeadline());
+        return buffer.array();
+    }
+
+    static Command decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION && version != VERSION_WITHOUT_DEADLINE) {
+            throw new IllegalStateException("Неподдерживаемая версия записи журнала: " + version);
+        }
+        String description = getString(buffer);
+        String author = getString(buffer);
+        String priority = getString(buffer);
+        LocalDateTime time = getTime(buffer);
+        LocalDateTime deadline = version == VERSION ? getTime(buffer) : null;
+        return new Command(description, priority == null ? null : Priority.valueOf(priority), author, time, deadline);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sizeOf(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void putTime(ByteBuffer buffer, LocalDateTime time) {
+        buffer.put((byte) (time == null ? 0 : 1));
+        buffer.putLong(time == null ? 0 : time.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(time == null ? 0 : time.getNano());
+    }
+
+    private static LocalDateTime getTime(ByteBuffer buffer) {
+        boolean present = buffer.get() != 0;
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        return present ? LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC) : null;
+    }
+}
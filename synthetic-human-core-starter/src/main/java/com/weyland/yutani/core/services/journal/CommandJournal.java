@@ -0,0 +1,335 @@
+package com.weyland.yutani.core.services.journal;
+
+import com.weyland.yutani.core.model.Command;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Журнал упреждающей записи для команд очереди.
+ * Каждая принятая команда дописывается в сегмент, отображённый в память, а после выполнения
+ * помечается записью подтверждения. Сброс на диск выполняется фоновым потоком группами:
+ * один вызов {@link MappedByteBuffer#force} подтверждает все команды, записанные с прошлого сброса,
+ * а следующий сброс начинается сразу, как только появились новые ожидающие записи.
+ * Сегменты удаляются по порядку, как только все команды в них и в более старых сегментах выполнены.
+ */
+@Slf4j
+public class CommandJournal implements AutoCloseable {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+    private final ConcurrentSkipListMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private final Object appendLock = new Object();
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableCondition = durableLock.newCondition();
+    private JournalSegment active;
+    private long nextSeq = 1;
+    private volatile long writtenSeq;
+    private volatile long durableSeq;
+    private volatile boolean running;
+    private volatile boolean closed;
+    private Thread flusher;
+
+    /**
+     * @param segmentSize размер сегмента, байт; не больше {@link Integer#MAX_VALUE}, предела одного отображения
+     */
+    public CommandJournal(Path directory, long segmentSize, long flushIntervalMs) {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Размер сегмента журнала должен быть от 1 байта до 2047 МБ: "
+                    + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+    }
+
+    /**
+     * Открывает журнал и восстанавливает команды, не получившие подтверждения.
+     * Восстановленные команды переписываются в новый сегмент, старые сегменты удаляются.
+     * Номер нового сегмента больше номеров всех прежних, в том числе сегментов без команд.
+     *
+     * @return невыполненные команды в порядке их поступления
+     */
+    public List<JournaledCommand> open() {
+        Map<Long, Command> unacknowledged = new LinkedHashMap<>();
+        List<Path> oldSegments = listSegments();
+        long maxSeq = 0;
+        for (Path segment : oldSegments) {
+            maxSeq = Math.max(maxSeq, readSegment(segment, unacknowledged));
+            maxSeq = Math.max(maxSeq, JournalSegment.firstSeq(segment));
+        }
+        synchronized (appendLock) {
+            nextSeq = maxSeq + 1;
+            roll();
+        }
+        List<JournaledCommand> replayed = new ArrayList<>(unacknowledged.size());
+        for (Command command : unacknowledged.values()) {
+            replayed.add(new JournaledCommand(append(command), command));
+        }
+        flushNow();
+        for (Path segment : oldSegments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось удалить сегмент журнала " + segment, e);
+            }
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "command-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Журнал команд открыт в {}: восстановлено команд: {}", directory, replayed.size());
+        return replayed;
+    }
+
+    /**
+     * Дописывает команду в журнал. Запись становится надёжной после ближайшего группового сброса.
+     *
+     * @param command принятая команда
+     * @return порядковый номер записи
+     */
+    public long append(Command command) {
+        byte[] payload = CommandCodec.encode(command);
+        synchronized (appendLock) {
+            ensureRoom(JournalRecords.HEADER_BYTES + payload.length);
+            long seq = nextSeq++;
+            active.append(JournalRecords.COMMAND, seq, payload);
+            active.retain();
+            writtenSeq = seq;
+            return seq;
+        }
+    }
+
+    /**
+     * Дописывает пачку команд в журнал за один захват блокировки.
+     *
+     * @param commands принятые команды
+     * @return порядковые номера записей в порядке команд
+     */
+    public long[] appendAll(List<Command> commands) {
+        byte[][] payloads = new byte[commands.size()][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = CommandCodec.encode(commands.get(i));
+        }
+        long[] seqs = new long[payloads.length];
+        synchronized (appendLock) {
+            for (int i = 0; i < payloads.length; i++) {
+                ensureRoom(JournalRecords.HEADER_BYTES + payloads[i].length);
+                long seq = nextSeq++;
+                active.append(JournalRecords.COMMAND, seq, payloads[i]);
+                active.retain();
+                seqs[i] = seq;
+                writtenSeq = seq;
+            }
+        }
+        return seqs;
+    }
+
+    /**
+     * Ожидает, пока запись с указанным номером будет сброшена на диск.
+     *
+     * @param seq номер записи, полученный от {@link #append}
+     * @throws IllegalStateException если журнал закрыт, а запись так и не сброшена на диск
+     */
+    public void awaitDurable(long seq) throws InterruptedException {
+        if (durableSeq >= seq) {
+            return;
+        }
+        LockSupport.unpark(flusher);
+        durableLock.lock();
+        try {
+            while (durableSeq < seq && !closed) {
+                durableCondition.await();
+            }
+        } finally {
+            durableLock.unlock();
+        }
+        if (durableSeq < seq) {
+            throw new IllegalStateException("Журнал команд закрыт, запись " + seq + " не сброшена на диск");
+        }
+    }
+
+    /**
+     * Помечает команду выполненной.
+     *
+     * @param seq номер записи команды
+     */
+    public void acknowledge(long seq) {
+        Map.Entry<Long, JournalSegment> owner = segments.floorEntry(seq);
+        if (owner == null) {
+            return;
+        }
+        synchronized (appendLock) {
+            if (!running) {
+                return;
+            }
+            ensureRoom(JournalRecords.HEADER_BYTES);
+            active.append(JournalRecords.ACK, seq, new byte[0]);
+        }
+        owner.getValue().releaseOne();
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            running = false;
+        }
+        if (flusher != null) {
+            LockSupport.unpark(flusher);
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushNow();
+        closed = true;
+        signalDurable();
+    }
+
+    private void runFlusher() {
+        while (running) {
+            if (writtenSeq == durableSeq) {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+            try {
+                flushNow();
+                deleteCompletedSegments();
+            } catch (RuntimeException e) {
+                log.error("Ошибка при сбросе журнала команд: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private synchronized void flushNow() {
+        long target = writtenSeq;
+        for (JournalSegment segment : segments.values()) {
+            segment.flush();
+        }
+        if (target > durableSeq) {
+            durableSeq = target;
+            signalDurable();
+        }
+    }
+
+    private void signalDurable() {
+        durableLock.lock();
+        try {
+            durableCondition.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void deleteCompletedSegments() {
+        while (true) {
+            JournalSegment oldest;
+            synchronized (appendLock) {
+                Map.Entry<Long, JournalSegment> first = segments.firstEntry();
+                if (first == null || first.getValue() == active || first.getValue().outstanding() > 0) {
+                    return;
+                }
+                oldest = segments.pollFirstEntry().getValue();
+            }
+            // Сброс не должен обращаться к сегменту во время освобождения его отображения
+            synchronized (this) {
+                oldest.delete();
+            }
+            log.debug("Сегмент журнала удалён: {}", oldest.path());
+        }
+    }
+
+    private void ensureRoom(int recordBytes) {
+        if (recordBytes + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Запись журнала превышает размер сегмента: " + recordBytes);
+        }
+        if (!active.hasRoom(recordBytes)) {
+            roll();
+        }
+    }
+
+    private void roll() {
+        JournalSegment segment = JournalSegment.create(directory, nextSeq, segmentSize);
+        segments.put(segment.firstSeq(), segment);
+        active = segment;
+    }
+
+    private List<Path> listSegments() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                return files.filter(path -> path.getFileName().toString().endsWith(".journal"))
+                        .sorted()
+                        .toList();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать каталог журнала " + directory, e);
+        }
+    }
+
+    private long readSegment(Path path, Map<Long, Command> unacknowledged) {
+        long maxSeq = 0;
+        MappedByteBuffer buffer = null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            while (position + Integer.BYTES * 2 <= buffer.limit()) {
+                int bodyLength = buffer.getInt(position);
+                int bodyOffset = position + Integer.BYTES * 2;
+                if (bodyLength <= 0 || bodyOffset + bodyLength > buffer.limit()) {
+                    break;
+                }
+                if (JournalRecords.checksum(buffer, bodyOffset, bodyLength) != buffer.getInt(position + Integer.BYTES)) {
+                    log.warn("Повреждённая запись в сегменте журнала {} на позиции {}, дальнейшие записи пропущены",
+                            path, position);
+                    break;
+                }
+                byte type = buffer.get(bodyOffset);
+                long seq = buffer.getLong(bodyOffset + 1);
+                if (type == JournalRecords.COMMAND) {
+                    int payloadOffset = bodyOffset + 1 + Long.BYTES;
+                    unacknowledged.put(seq, CommandCodec.decode(
+                            buffer.slice(payloadOffset, bodyLength - 1 - Long.BYTES)));
+                    maxSeq = Math.max(maxSeq, seq);
+                } else if (type == JournalRecords.ACK) {
+                    unacknowledged.remove(seq);
+                }
+                position = bodyOffset + bodyLength;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать сегмент журнала " + path, e);
+        } finally {
+            // Команды декодируются в собственные строки и не ссылаются на отображение
+            if (buffer != null) {
+                MappedBuffers.unmap(buffer);
+            }
+        }
+        return maxSeq;
+    }
+
+    /**
+     * Команда, восстановленная из журнала.
+     *
+     * @param seq     номер записи в журнале
+     * @param command команда
+     */
+    public record JournaledCommand(long seq, Command command) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.weyland.yutani.core.services.journal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Формат записи журнала: {@code [длина тела][CRC32C тела][тип][seq][данные]}.
+ * Нулевая длина означает конец записанных данных сегмента.
+ */
+final class JournalRecords {
+
+    static final byte COMMAND = 1;
+    static final byte ACK = 2;
+    static final int HEADER_BYTES = Integer.BYTES * 2 + 1 + Long.BYTES;
+
+    private JournalRecords() {
+    }
+
+    static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,114 @@
+package com.weyland.yutani.core.services.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сегмент журнала: файл фиксированного размера, отображённый в память.
+ * Запись выполняется под блокировкой журнала, сброс на диск - потоком группового коммита.
+ */
+final class JournalSegment {
+
+    private final Path path;
+    private final long firstSeq;
+    private final MappedByteBuffer buffer;
+    private final AtomicInteger outstanding = new AtomicInteger(0);
+    private volatile int writePosition;
+    private int flushedPosition;
+
+    private JournalSegment(Path path, long firstSeq, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSeq = firstSeq;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path directory, long firstSeq, int size) {
+        Path path = directory.resolve(fileName(firstSeq));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new JournalSegment(path, firstSeq, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала " + path, e);
+        }
+    }
+
+    static String fileName(long firstSeq) {
+        return String.format("%020d.journal", firstSeq);
+    }
+
+    /**
+     * @return номер первой записи сегмента из имени его файла
+     */
+    static long firstSeq(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - ".journal".length()));
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long firstSeq() {
+        return firstSeq;
+    }
+
+    boolean hasRoom(int bytes) {
+        // Оставляем место под нулевой заголовок, обозначающий конец данных
+        return writePosition + bytes + Integer.BYTES <= buffer.capacity();
+    }
+
+    void append(byte type, long seq, byte[] payload) {
+        int bodyLength = 1 + Long.BYTES + payload.length;
+        int position = writePosition;
+        buffer.put(position + Integer.BYTES * 2, type);
+        buffer.putLong(position + Integer.BYTES * 2 + 1, seq);
+        buffer.put(position + Integer.BYTES * 2 + 1 + Long.BYTES, payload);
+        buffer.putInt(position + Integer.BYTES, JournalRecords.checksum(buffer, position + Integer.BYTES * 2, bodyLength));
+        buffer.putInt(position, bodyLength);
+        writePosition = position + Integer.BYTES * 2 + bodyLength;
+    }
+
+    /**
+     * Сбрасывает на диск всё, что было записано в сегмент до вызова.
+     */
+    void flush() {
+        int target = writePosition;
+        if (target > flushedPosition) {
+            buffer.force(flushedPosition, target - flushedPosition);
+            flushedPosition = target;
+        }
+    }
+
+    void retain() {
+        outstanding.incrementAndGet();
+    }
+
+    int releaseOne() {
+        return outstanding.decrementAndGet();
+    }
+
+    int outstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Освобождает отображение и удаляет файл сегмента. После вызова сегмент не используется.
+     */
+    void delete() {
+        MappedBuffers.unmap(buffer);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось удалить сегмент журнала " + path, e);
+        }
+    }
+}
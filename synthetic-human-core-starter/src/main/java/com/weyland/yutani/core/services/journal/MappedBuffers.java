@@ -0,0 +1,52 @@
+package com.weyland.yutani.core.services.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Освобождение отображений файлов в память. Без него отображение удалённого сегмента живёт до сборки мусора
+ * буфера, и объём отображённой памяти растёт вместе с количеством прочитанных и удалённых сегментов.
+ * Используется {@code sun.misc.Unsafe#invokeCleaner}; если он недоступен, отображение освобождает сборщик мусора.
+ */
+@Slf4j
+final class MappedBuffers {
+
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * Освобождает отображение. После вызова обращение к {@code buffer} недопустимо.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.warn("Не удалось освободить отображение сегмента журнала: {}", e.getMessage());
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.info("Отображения сегментов журнала освобождаются сборщиком мусора: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.weyland.yutani.core.services.queue;
+
+import java.util.Collection;
+
+/**
+ * Хранилище команд одного шарда.
+ * Команды добавляются из любого потока, а извлекаются только тем рабочим потоком,
+ * который в данный момент владеет шардом.
+ */
+public interface CommandBuffer {
+
+    /**
+     * Добавляет команду в хранилище.
+     *
+     * @param command команда
+     * @return false, если в хранилище нет места
+     */
+    boolean offer(QueuedCommand command);
+
+    /**
+     * Извлекает очередную пачку команд.
+     *
+     * @param target      коллекция, в которую добавляются извлечённые команды
+     * @param maxElements максимальное количество извлекаемых команд
+     * @return количество извлечённых команд
+     */
+    int drainTo(Collection<? super QueuedCommand> target, int maxElements);
+
+    boolean isEmpty();
+}
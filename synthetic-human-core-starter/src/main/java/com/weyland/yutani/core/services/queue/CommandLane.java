@@ -0,0 +1,199 @@
+package com.weyland.yutani.core.services.queue;
+
+import com.weyland.yutani.core.model.Priority;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Полоса очереди для одного {@link Priority}.
+ * У каждой полосы собственная ёмкость, поэтому поток обычных команд
+ * не может занять места, зарезервированные под критические.
+ */
+public final class CommandLane {
+
+    private final Priority priority;
+    private final int weight;
+    private volatile int capacity;
+    private final CommandShard[] shards;
+    private final Queue<CommandShard> readyShards = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final int maxPerAuthor;
+    private final Map<String, Integer> pendingByAuthor = new ConcurrentHashMap<>();
+    private final RateMeter drainRate = new RateMeter(10);
+
+    /**
+     * @param priority      приоритет полосы
+     * @param weight        вес полосы при выборе следующей пачки
+     * @param capacity      ёмкость полосы
+     * @param shardCount    количество шардов
+     * @param maxPerAuthor  максимальное количество команд одного автора в полосе, 0 - без ограничения
+     * @param bufferFactory фабрика хранилищ команд для шардов
+     */
+    public CommandLane(Priority priority, int weight, int capacity, int shardCount,
+                       int maxPerAuthor, Supplier<CommandBuffer> bufferFactory) {
+        this.priority = priority;
+        this.weight = Math.max(1, weight);
+        this.capacity = capacity;
+        this.maxPerAuthor = maxPerAuthor;
+        this.shards = new CommandShard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new CommandShard(this, i, bufferFactory.get());
+        }
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Изменяет ёмкость полосы. Уже принятые команды остаются в полосе, даже если их больше новой ёмкости;
+     * новые команды принимаются, когда глубина полосы опустится ниже неё.
+     *
+     * @param capacity новая ёмкость полосы
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getMaxPerAuthor() {
+        return maxPerAuthor;
+    }
+
+    public int getDepth() {
+        return pending.get();
+    }
+
+    /**
+     * Резервирует место под команду автора с учётом его персонального лимита.
+     *
+     * @param author автор команды
+     * @return false, если лимит автора исчерпан
+     */
+    public boolean tryReserveForAuthor(String author) {
+        if (maxPerAuthor <= 0 || author == null) {
+            return true;
+        }
+        boolean[] reserved = new boolean[1];
+        pendingByAuthor.compute(author, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxPerAuthor) {
+                return count;
+            }
+            reserved[0] = true;
+            return current + 1;
+        });
+        return reserved[0];
+    }
+
+    /**
+     * Освобождает место, занятое командой автора.
+     *
+     * @param author автор команды
+     */
+    public void releaseForAuthor(String author) {
+        if (maxPerAuthor <= 0 || author == null) {
+            return;
+        }
+        pendingByAuthor.computeIfPresent(author, (key, count) -> count <= 1 ? null : count - 1);
+    }
+
+    /**
+     * Резервирует место под одну команду.
+     *
+     * @return false, если полоса заполнена
+     */
+    public boolean tryReserve() {
+        while (true) {
+            int current = pending.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Резервирует места под пачку команд одной операцией.
+     *
+     * @param count запрошенное количество мест
+     * @return количество зарезервированных мест, от 0 до {@code count}
+     */
+    public int tryReserve(int count) {
+        while (true) {
+            int current = pending.get();
+            int granted = Math.min(count, capacity - current);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (pending.compareAndSet(current, current + granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * Занимает место под команду без проверки ёмкости и лимита автора.
+     * Используется для команд, уже принятых ранее, например восстановленных из журнала.
+     *
+     * @param author автор команды
+     */
+    public void forceReserve(String author) {
+        pending.incrementAndGet();
+        if (maxPerAuthor > 0 && author != null) {
+            pendingByAuthor.merge(author, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Освобождает места, занятые извлечёнными командами.
+     *
+     * @param count количество извлечённых команд
+     */
+    public void release(int count) {
+        pending.addAndGet(-count);
+    }
+
+    public boolean isFull() {
+        return pending.get() >= capacity;
+    }
+
+    /**
+     * Отмечает извлечение пачки команд рабочим потоком.
+     *
+     * @param count количество извлечённых команд
+     */
+    public void markDrained(int count) {
+        drainRate.mark(count);
+    }
+
+    /**
+     * @return скорость разбора полосы, команд в секунду
+     */
+    public double getDrainRate() {
+        return drainRate.rate();
+    }
+
+    public CommandShard shardFor(String author) {
+        return shards[Math.floorMod(Objects.hashCode(author), shards.length)];
+    }
+
+    Queue<CommandShard> readyShards() {
+        return readyShards;
+    }
+}
@@ -0,0 +1,102 @@
+package com.weyland.yutani.core.services.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничитель скорости выполнения команд, общий для всех рабочих потоков.
+ * Как и ведро токенов контроля допуска, хранит теоретическое время выполнения следующей команды (GCRA),
+ * но выдаёт сразу несколько разрешений на пачку и ждёт, пока появится хотя бы одно.
+ * За время простоя накапливается запас до {@code burst} разрешений, поэтому после паузы
+ * очередь догоняет целевую скорость без ожидания.
+ */
+public final class CommandPacer {
+
+    private volatile double targetRate;
+    private volatile long emissionNanos;
+    private volatile long toleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+    private final RateMeter actualRate = new RateMeter(10);
+
+    /**
+     * @param ratePerSecond целевая скорость выполнения, команд в секунду
+     * @param burst         запас разрешений, накапливаемый за время простоя
+     */
+    public CommandPacer(double ratePerSecond, int burst) {
+        setRate(ratePerSecond, burst);
+    }
+
+    /**
+     * Изменяет целевую скорость и запас разрешений. Уже выданные разрешения не пересчитываются.
+     *
+     * @param ratePerSecond целевая скорость выполнения, команд в секунду
+     * @param burst         запас разрешений, накапливаемый за время простоя
+     */
+    public synchronized void setRate(double ratePerSecond, int burst) {
+        long emission = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.emissionNanos = emission;
+        this.toleranceNanos = emission * Math.max(0, burst - 1);
+        this.targetRate = ratePerSecond;
+    }
+
+    /**
+     * Получает от одного до {@code max} разрешений, ожидая, пока появится хотя бы одно.
+     *
+     * @param max максимальное количество разрешений
+     * @return количество полученных разрешений
+     */
+    public int acquire(int max) throws InterruptedException {
+        while (true) {
+            long emissionNanos = this.emissionNanos;
+            long toleranceNanos = this.toleranceNanos;
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long headroom = now + toleranceNanos + emissionNanos - base;
+            if (headroom < emissionNanos) {
+                TimeUnit.NANOSECONDS.sleep(emissionNanos - headroom);
+                continue;
+            }
+            int granted = (int) Math.min(max, headroom / emissionNanos);
+            if (theoreticalArrival.compareAndSet(current, base + granted * emissionNanos)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * Возвращает неиспользованные разрешения, например если в шарде оказалось меньше команд.
+     *
+     * @param permits количество разрешений
+     */
+    public void release(int permits) {
+        if (permits > 0) {
+            theoreticalArrival.addAndGet(-permits * emissionNanos);
+        }
+    }
+
+    /**
+     * Отмечает выполненные команды для измерения фактической скорости.
+     */
+    public void mark(int commands) {
+        actualRate.mark(commands);
+    }
+
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    /**
+     * @return запас разрешений, накапливаемый за время простоя
+     */
+    public int getBurst() {
+        return (int) (toleranceNanos / emissionNanos) + 1;
+    }
+
+    /**
+     * @return средняя скорость выполнения за последние 10 секунд, команд в секунду
+     */
+    public double getActualRate() {
+        return actualRate.rate();
+    }
+}
@@ -0,0 +1,59 @@
+package com.weyland.yutani.core.services.queue;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Шард полосы очереди команд.
+ * В любой момент времени шард обрабатывается не более чем одним рабочим потоком,
+ * что сохраняет порядок выполнения команд внутри шарда.
+ */
+public final class CommandShard {
+
+    private final CommandLane lane;
+    private final int index;
+    private final CommandBuffer commands;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    public CommandShard(CommandLane lane, int index, CommandBuffer commands) {
+        this.lane = lane;
+        this.index = index;
+        this.commands = commands;
+    }
+
+    public CommandLane getLane() {
+        return lane;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean offer(QueuedCommand command) {
+        return commands.offer(command);
+    }
+
+    public int drainTo(Collection<? super QueuedCommand> target, int maxElements) {
+        return commands.drainTo(target, maxElements);
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Пытается захватить шард для постановки в очередь готовых шардов.
+     *
+     * @return true, если шард ещё не был запланирован и теперь принадлежит вызывающему
+     */
+    public boolean trySchedule() {
+        return scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Освобождает шард после обработки очередной пачки команд.
+     */
+    public void release() {
+        scheduled.set(false);
+    }
+}
@@ -0,0 +1,78 @@
+package com.weyland.yutani.core.services.queue;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Справедливое хранилище команд: отдельная подочередь для каждого автора
+ * и обход подочередей по алгоритму deficit round-robin.
+ * За один ход автор получает не более {@code quantum} команд, поэтому автор,
+ * заваливший шард командами, не задерживает остальных авторов этого шарда.
+ */
+public final class FairCommandBuffer implements CommandBuffer {
+
+    private final int quantum;
+    private final Map<String, AuthorQueue> queues = new HashMap<>();
+    private final ArrayDeque<AuthorQueue> active = new ArrayDeque<>();
+    private volatile int size;
+
+    public FairCommandBuffer(int quantum) {
+        this.quantum = Math.max(1, quantum);
+    }
+
+    @Override
+    public synchronized boolean offer(QueuedCommand command) {
+        String author = command.command().getAuthor();
+        AuthorQueue queue = queues.computeIfAbsent(author, AuthorQueue::new);
+        queue.commands.addLast(command);
+        if (!queue.active) {
+            queue.active = true;
+            queue.deficit = 0;
+            active.addLast(queue);
+        }
+        size++;
+        return true;
+    }
+
+    @Override
+    public synchronized int drainTo(Collection<? super QueuedCommand> target, int maxElements) {
+        int drained = 0;
+        while (drained < maxElements && !active.isEmpty()) {
+            AuthorQueue queue = active.peekFirst();
+            if (queue.deficit <= 0) {
+                queue.deficit += quantum;
+            }
+            while (drained < maxElements && queue.deficit > 0 && !queue.commands.isEmpty()) {
+                target.add(queue.commands.pollFirst());
+                queue.deficit--;
+                drained++;
+            }
+            if (queue.commands.isEmpty()) {
+                active.pollFirst();
+                queues.remove(queue.author);
+            } else if (queue.deficit <= 0) {
+                active.addLast(active.pollFirst());
+            }
+        }
+        size -= drained;
+        return drained;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static final class AuthorQueue {
+        private final String author;
+        private final ArrayDeque<QueuedCommand> commands = new ArrayDeque<>();
+        private boolean active;
+        private int deficit;
+
+        private AuthorQueue(String author) {
+            this.author = author;
+        }
+    }
+}
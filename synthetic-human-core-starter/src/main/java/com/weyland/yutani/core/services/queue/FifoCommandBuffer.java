@@ -0,0 +1,28 @@
+package com.weyland.yutani.core.services.queue;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Хранилище команд в порядке поступления на основе {@link LinkedBlockingQueue}.
+ */
+public final class FifoCommandBuffer implements CommandBuffer {
+
+    private final BlockingQueue<QueuedCommand> commands = new LinkedBlockingQueue<>();
+
+    @Override
+    public boolean offer(QueuedCommand command) {
+        return commands.offer(command);
+    }
+
+    @Override
+    public int drainTo(Collection<? super QueuedCommand> target, int maxElements) {
+        return commands.drainTo(target, maxElements);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+}
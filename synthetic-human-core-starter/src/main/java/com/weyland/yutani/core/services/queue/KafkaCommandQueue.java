@@ -0,0 +1,245 @@
+package com.weyland.yutani.core.services.queue;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.exceptions.CommandQueueOverflowException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Общая очередь нескольких узлов в разделённом топике Kafka.
+ * Принятая команда записывается в топик с ключом-автором, поэтому команды одного автора попадают
+ * в один раздел и выполняются по порядку. Каждый узел запускает потребителей одной группы,
+ * и разделы топика распределяются между всеми узлами. Смещения фиксируются после обработки пачки,
+ * поэтому команда, не выполненная до остановки узла, будет выполнена другим узлом.
+ * Пачка обрабатывается в исполнителе очереди, а не в потоке потребителя: на время обработки разделы пачки
+ * приостанавливаются, и потребитель продолжает опрашивать брокер, поэтому медленная обработка или пауза
+ * после пачки не приводит к превышению {@code max.poll.interval.ms} и перебалансировке группы.
+ * Потребители запускаются после обновления контекста, когда топик уже создан с нужным числом разделов.
+ */
+@Slf4j
+public class KafkaCommandQueue implements SmartLifecycle {
+
+    private static final long RETRY_AFTER_SECONDS = 5;
+
+    private final CommandQueueProperties.Distributed properties;
+    private final Set<Priority> priorities;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ConsumerFactory<String, String> consumerFactory;
+    private final ObjectMapper objectMapper;
+    private final MetricsService metricsService;
+    private int batchSize = 1;
+    private Executor executor;
+    private Predicate<List<QueuedCommand>> handler;
+    private volatile ConcurrentMessageListenerContainer<String, String> container;
+
+    public KafkaCommandQueue(CommandQueueProperties.Distributed properties, KafkaTemplate<String, String> kafkaTemplate,
+                             ConsumerFactory<String, String> consumerFactory, ObjectMapper objectMapper,
+                             MetricsService metricsService) {
+        this.properties = properties;
+        this.priorities = Set.copyOf(properties.getPriorities());
+        this.kafkaTemplate = kafkaTemplate;
+        this.consumerFactory = consumerFactory;
+        this.objectMapper = objectMapper;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Проверяет, передаются ли команды приоритета в топик.
+     */
+    public boolean handles(Priority priority) {
+        return priorities.contains(priority);
+    }
+
+    /**
+     * Записывает команду в топик и ожидает подтверждения брокера.
+     *
+     * @param id      идентификатор команды
+     * @param command команда
+     * @throws CommandQueueOverflowException если брокер не подтвердил запись
+     */
+    public void send(String id, Command command) {
+        if (!await(publish(id, command))) {
+            throw new CommandQueueOverflowException(
+                String.format("Общая очередь команд %s недоступна", properties.getTopic()),
+                RETRY_AFTER_SECONDS
+            );
+        }
+    }
+
+    /**
+     * Записывает пачку команд в топик. Запись не ждёт подтверждения каждой команды по отдельности,
+     * поэтому производитель отправляет команды пачками.
+     *
+     * @param ids      идентификаторы команд
+     * @param commands команды
+     * @return признаки записи каждой команды, подтверждённой брокером
+     */
+    public boolean[] sendAll(List<String> ids, List<Command> commands) {
+        List<CompletableFuture<SendResult<String, String>>> futures = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            futures.add(publish(ids.get(i), commands.get(i)));
+        }
+        boolean[] acknowledged = new boolean[futures.size()];
+        for (int i = 0; i < futures.size(); i++) {
+            acknowledged[i] = await(futures.get(i));
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Задаёт обработчик команд, получаемых потребителями группы.
+     *
+     * @param batchSize максимальное количество команд, получаемых за один опрос
+     * @param executor  исполнитель, в котором вызывается обработчик
+     * @param handler   обработчик пачки команд; false - обработка прервана, смещения пачки не фиксируются
+     */
+    public void bind(int batchSize, Executor executor, Predicate<List<QueuedCommand>> handler) {
+        this.batchSize = batchSize;
+        this.executor = executor;
+        this.handler = handler;
+    }
+
+    @Override
+    public void start() {
+        if (handler == null) {
+            log.warn("Обработчик общей очереди команд не задан, потребители не запущены");
+            return;
+        }
+        ContainerProperties containerProperties = new ContainerProperties(properties.getTopic());
+        containerProperties.setGroupId(properties.getGroupId());
+        Properties consumerProperties = new Properties();
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(batchSize));
+        consumerProperties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumerProperties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        consumerProperties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        containerProperties.setKafkaConsumerProperties(consumerProperties);
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        containerProperties.setMessageListener((BatchAcknowledgingMessageListener<String, String>) this::dispatch);
+        container = new ConcurrentMessageListenerContainer<>(consumerFactory, containerProperties);
+        container.setConcurrency(Math.max(1, properties.getConcurrency()));
+        container.setBeanName("android-distributed");
+        container.start();
+        log.info("Общая очередь команд запущена: топик {}, группа {}, потребителей {}, приоритеты {}",
+                properties.getTopic(), properties.getGroupId(), properties.getConcurrency(), priorities);
+    }
+
+    @Override
+    public void stop() {
+        ConcurrentMessageListenerContainer<String, String> current = container;
+        if (current != null) {
+            current.stop();
+            container = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return container != null;
+    }
+
+    /**
+     * Приостанавливает разделы пачки и передаёт её исполнителю. Смещения фиксируются и разделы
+     * возобновляются после обработки; подтверждение из потока исполнителя фиксируется потоком
+     * потребителя при следующем опросе.
+     */
+    private void dispatch(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) {
+        ConcurrentMessageListenerContainer<String, String> current = container;
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (ConsumerRecord<String, String> record : records) {
+            partitions.add(new TopicPartition(record.topic(), record.partition()));
+        }
+        partitions.forEach(current::pausePartition);
+        List<QueuedCommand> batch = decode(records);
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!handler.test(batch)) {
+                        log.info("Обработка пачки общей очереди прервана, разделы {} остаются приостановленными",
+                                partitions);
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // Повтор пачки завершился бы той же ошибкой, поэтому смещения фиксируются
+                    log.error("Ошибка обработки пачки общей очереди: {}", e.getMessage(), e);
+                }
+                acknowledgment.acknowledge();
+                partitions.forEach(current::resumePartition);
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Пачка общей очереди не принята к обработке, смещения не фиксируются: {}", e.getMessage());
+        }
+    }
+
+    private CompletableFuture<SendResult<String, String>> publish(String id, Command command) {
+        try {
+            String value = objectMapper.writeValueAsString(new Envelope(id, command));
+            return kafkaTemplate.send(properties.getTopic(), command.getAuthor(), value);
+        } catch (JsonProcessingException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private boolean await(CompletableFuture<SendResult<String, String>> future) {
+        try {
+            future.get(properties.getAckTimeoutMs(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            metricsService.incrementDistributedSendFailed();
+            log.error("Команда не записана в общую очередь {}: {}", properties.getTopic(),
+                    e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return false;
+        }
+    }
+
+    private List<QueuedCommand> decode(List<ConsumerRecord<String, String>> records) {
+        List<QueuedCommand> batch = new ArrayList<>(records.size());
+        long now = System.nanoTime();
+        long nowMs = System.currentTimeMillis();
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                Envelope envelope = objectMapper.readValue(record.value(), Envelope.class);
+                long waitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, nowMs - record.timestamp()));
+                batch.add(new QueuedCommand(envelope.id(), envelope.command(), now - waitNanos, 0));
+            } catch (JsonProcessingException e) {
+                log.error("Запись {}-{}@{} общей очереди пропущена: {}", record.topic(), record.partition(),
+                        record.offset(), e.getMessage());
+            }
+        }
+        return batch;
+    }
+
+    private record Envelope(String id, Command command) {
+    }
+}
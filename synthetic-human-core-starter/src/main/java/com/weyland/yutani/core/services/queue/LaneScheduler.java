@@ -0,0 +1,129 @@
+package com.weyland.yutani.core.services.queue;
+
+import com.weyland.yutani.core.model.Priority;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Планировщик полос очереди команд.
+ * Рабочие потоки выбирают полосу по алгоритму плавного взвешенного кругового обхода
+ * (smooth weighted round-robin): при наличии работы во всех полосах доля пачек каждой полосы
+ * пропорциональна её весу, а пустые полосы пропускаются, поэтому ни одна полоса не голодает.
+ */
+public final class LaneScheduler {
+
+    private final Map<Priority, CommandLane> lanes;
+    private final CommandLane[] order;
+    private final Semaphore readySignal = new Semaphore(0);
+    private final WaitStrategy waitStrategy;
+
+    public LaneScheduler(Collection<CommandLane> lanes, WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+        EnumMap<Priority, CommandLane> byPriority = new EnumMap<>(Priority.class);
+        lanes.forEach(lane -> byPriority.put(lane.getPriority(), lane));
+        this.lanes = Collections.unmodifiableMap(byPriority);
+        this.order = byPriority.values().toArray(new CommandLane[0]);
+    }
+
+    public CommandLane lane(Priority priority) {
+        CommandLane lane = lanes.get(priority);
+        if (lane == null) {
+            throw new IllegalArgumentException("Неизвестный приоритет команды: " + priority);
+        }
+        return lane;
+    }
+
+    public Collection<CommandLane> lanes() {
+        return lanes.values();
+    }
+
+    /**
+     * Добавляет команду в шард её автора.
+     *
+     * @return false, если в хранилище шарда нет места
+     */
+    public boolean enqueue(CommandLane lane, QueuedCommand command) {
+        CommandShard shard = lane.shardFor(command.command().getAuthor());
+        if (!shard.offer(command)) {
+            return false;
+        }
+        schedule(shard);
+        return true;
+    }
+
+    /**
+     * Возвращает шард рабочему пулу после обработки пачки.
+     * Если за время обработки в шард поступили новые команды, он снова планируется.
+     */
+    public void release(CommandShard shard) {
+        shard.release();
+        if (!shard.isEmpty()) {
+            schedule(shard);
+        }
+    }
+
+    private void schedule(CommandShard shard) {
+        if (shard.trySchedule()) {
+            shard.getLane().readyShards().offer(shard);
+            readySignal.release();
+        }
+    }
+
+    public Cursor newCursor() {
+        return new Cursor(order.length);
+    }
+
+    /**
+     * Ожидает готовый к обработке шард.
+     *
+     * @param cursor  состояние взвешенного обхода вызывающего рабочего потока
+     * @param timeout максимальное время ожидания
+     * @param unit    единица измерения времени ожидания
+     * @return шард, захваченный вызывающим потоком, или null по истечении времени ожидания
+     */
+    public CommandShard next(Cursor cursor, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!waitStrategy.await(readySignal, unit.toNanos(timeout))) {
+            return null;
+        }
+        // Каждое разрешение семафора соответствует шарду, уже добавленному в одну из полос
+        while (true) {
+            int best = -1;
+            int total = 0;
+            for (int i = 0; i < order.length; i++) {
+                if (order[i].readyShards().isEmpty()) {
+                    continue;
+                }
+                cursor.current[i] += order[i].getWeight();
+                total += order[i].getWeight();
+                if (best < 0 || cursor.current[i] > cursor.current[best]) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            cursor.current[best] -= total;
+            CommandShard shard = order[best].readyShards().poll();
+            if (shard != null) {
+                return shard;
+            }
+        }
+    }
+
+    /**
+     * Состояние взвешенного обхода, принадлежащее одному рабочему потоку.
+     */
+    public static final class Cursor {
+        private final int[] current;
+
+        private Cursor(int lanes) {
+            this.current = new int[lanes];
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.weyland.yutani.core.services.queue;
+
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Точный индекс команд, ожидающих в очереди, по автору, описанию и приоритету.
+ * Используется для слияния одинаковых команд: пока команда не забрана рабочим потоком,
+ * повторная такая же команда получает её идентификатор и в очередь не добавляется.
+ */
+public final class PendingCommandIndex {
+
+    private final Map<Key, String> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Регистрирует команду, если такая же команда ещё не ожидает выполнения.
+     *
+     * @param command команда
+     * @param id      идентификатор, под которым команда будет поставлена в очередь
+     * @return идентификатор ожидающей такой же команды, null - команда зарегистрирована под {@code id}
+     */
+    public String claim(Command command, String id) {
+        return pending.putIfAbsent(Key.of(command), id);
+    }
+
+    /**
+     * Снимает регистрацию команды, если она зарегистрирована под {@code id}.
+     */
+    public void release(Command command, String id) {
+        pending.remove(Key.of(command), id);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private record Key(String author, String description, Priority priority) {
+
+        private static Key of(Command command) {
+            return new Key(command.getAuthor(), command.getDescription(), command.getPriority());
+        }
+    }
+}
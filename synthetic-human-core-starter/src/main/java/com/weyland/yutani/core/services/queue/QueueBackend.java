@@ -0,0 +1,17 @@
+package com.weyland.yutani.core.services.queue;
+
+/**
+ * Реализация хранилища команд в шардах очереди.
+ */
+public enum QueueBackend {
+
+    /**
+     * {@link FifoCommandBuffer} на основе {@code LinkedBlockingQueue}.
+     */
+    LINKED,
+
+    /**
+     * Предвыделенный кольцевой буфер без блокировок {@link RingCommandBuffer}.
+     */
+    RING
+}
@@ -0,0 +1,22 @@
+package com.weyland.yutani.core.services.queue;
+
+import com.weyland.yutani.core.model.Command;
+
+/**
+ * Команда, принятая в очередь, вместе со служебными отметками времени.
+ *
+ * @param id              идентификатор команды, по которому отслеживается её состояние
+ * @param command         исходная команда
+ * @param enqueuedAtNanos момент постановки в очередь по {@link System#nanoTime()}
+ * @param journalSeq      номер записи в журнале очереди, 0 - команда не журналируется
+ */
+public record QueuedCommand(String id, Command command, long enqueuedAtNanos, long journalSeq) {
+
+    public static QueuedCommand of(String id, Command command) {
+        return of(id, command, 0);
+    }
+
+    public static QueuedCommand of(String id, Command command, long journalSeq) {
+        return new QueuedCommand(id, command, System.nanoTime(), journalSeq);
+    }
+}
@@ -0,0 +1,46 @@
+package com.weyland.yutani.core.services.queue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеритель скорости по скользящему окну из секундных корзин.
+ */
+public final class RateMeter {
+
+    private static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long[] counts;
+    private final long[] epochs;
+
+    /**
+     * @param windowSeconds длина окна измерения, секунд
+     */
+    public RateMeter(int windowSeconds) {
+        this.counts = new long[Math.max(1, windowSeconds)];
+        this.epochs = new long[counts.length];
+    }
+
+    public synchronized void mark(long events) {
+        long epoch = System.nanoTime() / BUCKET_NANOS;
+        int index = (int) Math.floorMod(epoch, (long) counts.length);
+        if (epochs[index] != epoch) {
+            epochs[index] = epoch;
+            counts[index] = 0;
+        }
+        counts[index] += events;
+    }
+
+    /**
+     * @return среднее количество событий в секунду за окно измерения
+     */
+    public synchronized double rate() {
+        long epoch = System.nanoTime() / BUCKET_NANOS;
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (epoch - epochs[i] < counts.length) {
+                total += counts[i];
+            }
+        }
+        return (double) total / counts.length;
+    }
+}
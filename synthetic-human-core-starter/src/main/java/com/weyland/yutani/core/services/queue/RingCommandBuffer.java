@@ -0,0 +1,83 @@
+package com.weyland.yutani.core.services.queue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный кольцевой буфер без блокировок для множества производителей и одного потребителя.
+ * Слоты выделяются один раз при создании, поэтому постановка команды не создаёт узлов списка
+ * и не захватывает блокировок: производитель занимает слот одним CAS по хвосту и публикует его
+ * записью номера последовательности в слот. Единственным потребителем является рабочий поток,
+ * владеющий шардом.
+ */
+public final class RingCommandBuffer implements CommandBuffer {
+
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int mask;
+    private final long[] sequences;
+    private final QueuedCommand[] items;
+    private final AtomicLong tail = new AtomicLong(0);
+    private volatile long head;
+
+    /**
+     * @param capacity минимальная ёмкость буфера, округляется вверх до степени двойки
+     */
+    public RingCommandBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new long[size];
+        this.items = new QueuedCommand[size];
+        for (int i = 0; i < size; i++) {
+            sequences[i] = i;
+        }
+    }
+
+    @Override
+    public boolean offer(QueuedCommand command) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long sequence = (long) SEQUENCES.getAcquire(sequences, index);
+            long difference = sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = command;
+                    SEQUENCES.setRelease(sequences, index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super QueuedCommand> target, int maxElements) {
+        long position = head;
+        int drained = 0;
+        while (drained < maxElements) {
+            int index = (int) position & mask;
+            if ((long) SEQUENCES.getAcquire(sequences, index) != position + 1) {
+                break;
+            }
+            target.add(items[index]);
+            items[index] = null;
+            SEQUENCES.setRelease(sequences, index, position + mask + 1);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+}
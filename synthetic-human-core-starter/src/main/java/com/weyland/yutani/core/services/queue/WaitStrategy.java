@@ -0,0 +1,79 @@
+package com.weyland.yutani.core.services.queue;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Способ ожидания свободным рабочим потоком появления готового шарда.
+ * Стратегии без блокировки сокращают задержку подхвата команды ценой загрузки процессора.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Блокирующее ожидание на семафоре: поток будится сразу при появлении работы.
+     */
+    BLOCKING {
+        @Override
+        boolean await(Semaphore readySignal, long timeoutNanos) throws InterruptedException {
+            return readySignal.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        void idle() {
+        }
+    },
+
+    /**
+     * Опрос с короткой парковкой потока между попытками.
+     */
+    PARK {
+        @Override
+        void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    },
+
+    /**
+     * Опрос с уступкой процессора другим потокам между попытками.
+     */
+    YIELD {
+        @Override
+        void idle() {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Непрерывный опрос. Минимальная задержка, но рабочий поток постоянно занимает ядро.
+     */
+    BUSY_SPIN {
+        @Override
+        void idle() {
+            Thread.onSpinWait();
+        }
+    };
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Ожидает разрешение семафора готовых шардов.
+     *
+     * @return true, если разрешение получено до истечения времени ожидания
+     */
+    boolean await(Semaphore readySignal, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (!readySignal.tryAcquire()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            idle();
+        }
+        return true;
+    }
+
+    abstract void idle();
+}
@@ -0,0 +1,97 @@
+package com.weyland.yutani.core.services.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров.
+ * Добавление и отмена таймера выполняются за O(1); часы продвигаются только до срока ближайшей
+ * непустой корзины, поэтому пустые тики не обрабатываются. Время - монотонные миллисекунды
+ * {@link #nowMs()}.
+ *
+ * @param <T> полезная нагрузка таймеров
+ */
+public final class HierarchicalTimer<T> {
+
+    private final DelayQueue<TimerBucket<T>> queue = new DelayQueue<>();
+    private final AtomicInteger counter = new AtomicInteger();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TimingWheel<T> wheel;
+
+    /**
+     * @param tickMs    шаг нижнего уровня колеса, мс
+     * @param wheelSize количество корзин на каждом уровне
+     */
+    public HierarchicalTimer(long tickMs, int wheelSize) {
+        this.wheel = new TimingWheel<>(Math.max(1, tickMs), Math.max(2, wheelSize), nowMs(), counter, queue);
+    }
+
+    static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Ставит таймер. Срок округляется вверх до шага колеса, поэтому таймер не срабатывает раньше времени;
+     * таймер с наступившим сроком срабатывает на ближайшем тике.
+     *
+     * @param delayMs задержка срабатывания, мс
+     * @param payload полезная нагрузка
+     * @return таймер, который можно отменить
+     */
+    public TimerEntry<T> schedule(long delayMs, T payload) {
+        lock.readLock().lock();
+        try {
+            long tickMs = wheel.getTickMs();
+            long expirationMs = Math.max(nowMs() + delayMs, wheel.getCurrentTime() + tickMs);
+            TimerEntry<T> entry = new TimerEntry<>(Math.ceilDiv(expirationMs, tickMs) * tickMs, payload);
+            wheel.add(entry);
+            return entry;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ждёт ближайшую корзину с наступившим сроком, продвигает часы и передаёт сработавшие таймеры обработчику.
+     * Таймеры верхних уровней при этом переносятся в нижние.
+     *
+     * @param timeoutMs максимальное время ожидания, мс
+     * @param onExpired обработчик сработавших таймеров, вызывается вне блокировки колеса
+     * @return true, если часы были продвинуты
+     */
+    public boolean advance(long timeoutMs, Consumer<TimerEntry<T>> onExpired) throws InterruptedException {
+        TimerBucket<T> bucket = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (bucket == null) {
+            return false;
+        }
+        List<TimerEntry<T>> expired = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            while (bucket != null) {
+                wheel.advanceClock(bucket.getExpiration());
+                for (TimerEntry<T> entry : bucket.flush()) {
+                    if (!wheel.add(entry) && !entry.isCancelled()) {
+                        expired.add(entry);
+                    }
+                }
+                bucket = queue.poll();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        expired.forEach(onExpired);
+        return true;
+    }
+
+    /**
+     * @return количество ожидающих таймеров
+     */
+    public int size() {
+        return counter.get();
+    }
+}
@@ -0,0 +1,97 @@
+package com.weyland.yutani.core.services.schedule;
+
+import com.weyland.yutani.core.model.Command;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Отложенная или повторяющаяся команда, ожидающая срока в колесе таймеров.
+ * Изменяется только потоком планировщика, кроме флага отмены.
+ * Крайний срок команды отсчитывается от срока каждого выполнения с тем же запасом, что у исходной команды.
+ */
+public final class ScheduledCommand {
+
+    private final String id;
+    private final Command template;
+    private final Duration repeatInterval;
+    private final Duration deadlineOffset;
+    private LocalDateTime dueTime;
+    private int remaining;
+    private volatile boolean cancelled;
+
+    /**
+     * @param id             идентификатор расписания
+     * @param template       команда, копии которой отправляются в очередь
+     * @param repeatInterval интервал повторения, null - однократное выполнение
+     * @param repeatCount    количество выполнений повторяющейся команды, null - без ограничения
+     */
+    public ScheduledCommand(String id, Command template, Duration repeatInterval, Integer repeatCount) {
+        this.id = id;
+        this.template = template;
+        this.repeatInterval = repeatInterval;
+        this.dueTime = template.getTime();
+        this.deadlineOffset = template.getDeadline() == null ? null
+                : Duration.between(template.getTime(), template.getDeadline());
+        this.remaining = repeatInterval == null ? 1 : repeatCount == null ? -1 : repeatCount;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public LocalDateTime getDueTime() {
+        return dueTime;
+    }
+
+    public boolean isRecurring() {
+        return repeatInterval != null;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return команда очередного выполнения со временем, равным сроку выполнения
+     */
+    public Command nextCommand() {
+        return new Command(template.getDescription(), template.getPriority(), template.getAuthor(), dueTime,
+                deadlineOffset == null ? null : dueTime.plus(deadlineOffset));
+    }
+
+    /**
+     * Переходит к следующему выполнению. Выполнения, срок которых уже прошёл, пропускаются
+     * и засчитываются в количество выполнений, поэтому расписание, начатое в прошлом, не выполняется
+     * подряд за все пропущенные интервалы.
+     *
+     * @param now текущее время
+     * @return true, если расписание ещё не исчерпано
+     */
+    public boolean advance(LocalDateTime now) {
+        if (remaining > 0) {
+            remaining--;
+        }
+        if (remaining == 0 || repeatInterval == null) {
+            return false;
+        }
+        LocalDateTime next = dueTime.plus(repeatInterval);
+        if (next.isBefore(now)) {
+            long skipped = Math.ceilDiv(Duration.between(next, now).toMillis(), Math.max(1, repeatInterval.toMillis()));
+            if (remaining > 0) {
+                if (skipped >= remaining) {
+                    remaining = 0;
+                    return false;
+                }
+                remaining -= (int) skipped;
+            }
+            next = next.plus(repeatInterval.multipliedBy(skipped));
+        }
+        dueTime = next;
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package com.weyland.yutani.core.services.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Корзина колеса: кольцевой двусвязный список таймеров с общим сроком срабатывания.
+ * В {@link java.util.concurrent.DelayQueue} попадают только непустые корзины, а не отдельные таймеры.
+ */
+final class TimerBucket<T> implements Delayed {
+
+    private final TimerEntry<T> root = new TimerEntry<>(-1, null);
+    private final AtomicLong expiration = new AtomicLong(-1);
+    private final AtomicInteger counter;
+
+    TimerBucket(AtomicInteger counter) {
+        this.counter = counter;
+        root.prev = root;
+        root.next = root;
+    }
+
+    synchronized void add(TimerEntry<T> entry) {
+        TimerEntry<T> tail = root.prev;
+        entry.next = root;
+        entry.prev = tail;
+        tail.next = entry;
+        root.prev = entry;
+        entry.bucket = this;
+        counter.incrementAndGet();
+    }
+
+    synchronized void remove(TimerEntry<T> entry) {
+        if (entry.bucket != this) {
+            return;
+        }
+        unlink(entry);
+        counter.decrementAndGet();
+    }
+
+    /**
+     * Извлекает все таймеры корзины и сбрасывает её срок.
+     *
+     * @return извлечённые таймеры в порядке добавления
+     */
+    synchronized List<TimerEntry<T>> flush() {
+        List<TimerEntry<T>> entries = new ArrayList<>();
+        TimerEntry<T> entry = root.next;
+        while (entry != root) {
+            TimerEntry<T> next = entry.next;
+            unlink(entry);
+            entries.add(entry);
+            entry = next;
+        }
+        counter.addAndGet(-entries.size());
+        expiration.set(-1);
+        return entries;
+    }
+
+    private void unlink(TimerEntry<T> entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+        entry.bucket = null;
+    }
+
+    /**
+     * @return true, если срок корзины изменился и её нужно заново поставить в очередь задержек
+     */
+    boolean setExpiration(long expirationMs) {
+        return expiration.getAndSet(expirationMs) != expirationMs;
+    }
+
+    long getExpiration() {
+        return expiration.get();
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(Math.max(0, getExpiration() - HierarchicalTimer.nowMs()), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(getExpiration(), ((TimerBucket<?>) other).getExpiration());
+    }
+}
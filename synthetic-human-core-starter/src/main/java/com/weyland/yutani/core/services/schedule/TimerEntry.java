@@ -0,0 +1,40 @@
+package com.weyland.yutani.core.services.schedule;
+
+/**
+ * Таймер в корзине колеса. Узел двусвязного списка корзины, поэтому вставка и удаление выполняются за O(1).
+ *
+ * @param <T> полезная нагрузка таймера
+ */
+public final class TimerEntry<T> {
+
+    final long expirationMs;
+    final T payload;
+    TimerEntry<T> prev;
+    TimerEntry<T> next;
+    volatile TimerBucket<T> bucket;
+    private volatile boolean cancelled;
+
+    TimerEntry(long expirationMs, T payload) {
+        this.expirationMs = expirationMs;
+        this.payload = payload;
+    }
+
+    public T getPayload() {
+        return payload;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Отменяет таймер. Отменённый таймер удаляется из корзины и больше не срабатывает.
+     */
+    public void cancel() {
+        cancelled = true;
+        TimerBucket<T> owner = bucket;
+        if (owner != null) {
+            owner.remove(this);
+        }
+    }
+}
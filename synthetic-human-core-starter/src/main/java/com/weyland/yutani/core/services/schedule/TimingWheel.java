@@ -0,0 +1,90 @@
+package com.weyland.yutani.core.services.schedule;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Один уровень иерархического колеса таймеров.
+ * Таймеры, не помещающиеся в интервал уровня, передаются в колесо следующего уровня с шагом,
+ * равным интервалу текущего, которое создаётся при первой необходимости.
+ */
+final class TimingWheel<T> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final AtomicInteger counter;
+    private final DelayQueue<TimerBucket<T>> queue;
+    private final TimerBucket<T>[] buckets;
+    private volatile long currentTime;
+    private volatile TimingWheel<T> overflowWheel;
+
+    TimingWheel(long tickMs, int wheelSize, long startMs, AtomicInteger counter, DelayQueue<TimerBucket<T>> queue) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.counter = counter;
+        this.queue = queue;
+        @SuppressWarnings("unchecked")
+        TimerBucket<T>[] buckets = (TimerBucket<T>[]) new TimerBucket<?>[wheelSize];
+        this.buckets = buckets;
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new TimerBucket<>(counter);
+        }
+        this.currentTime = startMs - (startMs % tickMs);
+    }
+
+    long getTickMs() {
+        return tickMs;
+    }
+
+    long getCurrentTime() {
+        return currentTime;
+    }
+
+    /**
+     * Добавляет таймер в подходящую корзину.
+     *
+     * @return false, если срок таймера уже наступил или таймер отменён
+     */
+    boolean add(TimerEntry<T> entry) {
+        long expirationMs = entry.expirationMs;
+        if (entry.isCancelled() || expirationMs < currentTime + tickMs) {
+            return false;
+        }
+        if (expirationMs < currentTime + interval) {
+            long virtualId = expirationMs / tickMs;
+            TimerBucket<T> bucket = buckets[(int) (virtualId % wheelSize)];
+            bucket.add(entry);
+            if (bucket.setExpiration(virtualId * tickMs)) {
+                queue.offer(bucket);
+            }
+            return true;
+        }
+        return overflowWheel().add(entry);
+    }
+
+    void advanceClock(long timeMs) {
+        if (timeMs >= currentTime + tickMs) {
+            currentTime = timeMs - (timeMs % tickMs);
+            TimingWheel<T> overflow = overflowWheel;
+            if (overflow != null) {
+                overflow.advanceClock(currentTime);
+            }
+        }
+    }
+
+    private TimingWheel<T> overflowWheel() {
+        TimingWheel<T> overflow = overflowWheel;
+        if (overflow == null) {
+            synchronized (this) {
+                overflow = overflowWheel;
+                if (overflow == null) {
+                    overflow = new TimingWheel<>(interval, wheelSize, currentTime, counter, queue);
+                    overflowWheel = overflow;
+                }
+            }
+        }
+        return overflow;
+    }
+}
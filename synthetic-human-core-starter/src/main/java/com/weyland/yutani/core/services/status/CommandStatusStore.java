@@ -0,0 +1,214 @@
+package com.weyland.yutani.core.services.status;
+
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.CommandState;
+import com.weyland.yutani.core.model.CommandStatus;
+import com.weyland.yutani.core.model.Priority;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Хранилище состояний принятых команд.
+ * Завершённые команды хранятся не дольше TTL и вытесняются в порядке завершения, как только
+ * количество записей превышает предел; незавершённые записи не вытесняются, их количество
+ * ограничено ёмкостью очереди и расписания.
+ */
+public final class CommandStatusStore {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final int maxEntries;
+    private final long ttlMs;
+
+    /**
+     * @param maxEntries максимальное количество записей
+     * @param ttlSeconds время хранения завершённых команд, с
+     */
+    public CommandStatusStore(int maxEntries, long ttlSeconds) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    public void register(String id, Command command, CommandState state) {
+        entries.put(id, new Entry(id, command.getPriority(), command.getAuthor(), state));
+    }
+
+    public void remove(String id) {
+        entries.remove(id);
+    }
+
+    /**
+     * Отмечает постановку команды в очередь, заводя запись, если её ещё нет.
+     *
+     * @return предыдущее состояние команды, null - команда не была известна
+     */
+    public CommandState markQueued(String id, Command command) {
+        Entry entry = entries.putIfAbsent(id, new Entry(id, command.getPriority(), command.getAuthor(),
+                CommandState.QUEUED));
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            CommandState previous = entry.state;
+            entry.state = CommandState.QUEUED;
+            return previous;
+        }
+    }
+
+    /**
+     * Отменяет {@link #markQueued}, если команда не была принята очередью.
+     *
+     * @param previous состояние, возвращённое {@link #markQueued}
+     */
+    public void revert(String id, CommandState previous) {
+        if (previous == null) {
+            entries.remove(id);
+        } else {
+            update(id, previous);
+        }
+    }
+
+    public void markRunning(String id) {
+        update(id, CommandState.RUNNING);
+    }
+
+    /**
+     * Отмечает завершение команды и будит ожидающих её завершения.
+     *
+     * @param id    идентификатор команды
+     * @param error причина ошибки, null - команда выполнена успешно
+     */
+    public void markFinished(String id, String error) {
+        finish(id, error == null ? CommandState.DONE : CommandState.FAILED, error);
+    }
+
+    /**
+     * Отмечает команду, снятую с выполнения по истечении срока, и будит ожидающих её завершения.
+     *
+     * @param id идентификатор команды
+     */
+    public void markExpired(String id) {
+        finish(id, CommandState.EXPIRED, "Срок выполнения команды истёк");
+    }
+
+    private void finish(String id, CommandState state, String error) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        CompletableFuture<CommandStatus> completion;
+        synchronized (entry) {
+            entry.state = state;
+            entry.error = error;
+            entry.finishedAt = System.currentTimeMillis();
+            completion = entry.completion;
+        }
+        finished.offer(entry);
+        if (completion != null) {
+            completion.complete(entry.snapshot());
+        }
+        evict();
+    }
+
+    public CommandStatus get(String id) {
+        evict();
+        Entry entry = entries.get(id);
+        return entry == null ? null : entry.snapshot();
+    }
+
+    /**
+     * Возвращает результат, который завершится при окончании выполнения команды.
+     *
+     * @param id идентификатор команды
+     * @return null, если команда неизвестна
+     */
+    public CompletableFuture<CommandStatus> awaitFinished(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            if (entry.state.isFinished()) {
+                return CompletableFuture.completedFuture(entry.snapshot());
+            }
+            if (entry.completion == null) {
+                entry.completion = new CompletableFuture<>();
+            }
+            return entry.completion;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void update(String id, CommandState state) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            entry.state = state;
+            if (state == CommandState.RUNNING) {
+                entry.startedAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long expiredBefore = System.currentTimeMillis() - ttlMs;
+            Entry head;
+            while ((head = finished.peek()) != null
+                    && (head.finishedAt < expiredBefore || entries.size() > maxEntries)) {
+                finished.poll();
+                entries.remove(head.id, head);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String id;
+        private final Priority priority;
+        private final String author;
+        private final long submittedAt = System.currentTimeMillis();
+        private volatile CommandState state;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile String error;
+        private CompletableFuture<CommandStatus> completion;
+
+        private Entry(String id, Priority priority, String author, CommandState state) {
+            this.id = id;
+            this.priority = priority;
+            this.author = author;
+            this.state = state;
+        }
+
+        private synchronized CommandStatus snapshot() {
+            return new CommandStatus(id, state, priority, author, time(submittedAt), time(startedAt),
+                    time(finishedAt), error);
+        }
+
+        private static LocalDateTime time(long epochMillis) {
+            return epochMillis == 0 ? null
+                    : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package com.weyland.yutani.core.web;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import com.weyland.yutani.core.model.BatchItemResult;
 import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.CommandStatus;
 import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.CommandQueueService;
 import com.weyland.yutani.core.services.CommandService;
 import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.admission.AdmissionControlService;
+import com.weyland.yutani.core.services.exceptions.CommandRateLimitedException;
+import com.weyland.yutani.core.services.exceptions.CommandValidationException;
+import com.weyland.yutani.core.services.idempotency.IdempotencyService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,9 +30,19 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Validated
@@ -28,20 +52,31 @@ import java.util.Map;
 @Tag(name = "Команды", description = "API для отправки команд и проверки статуса очереди")
 public class CommandController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final CommandService commandService;
+    private final CommandQueueService queueService;
     private final MetricsService metricsService;
+    private final AdmissionControlService admissionControlService;
+    private final IdempotencyService idempotencyService;
+    private final CommandQueueProperties queueProperties;
+    private final ObjectMapper objectMapper;
 
     /**
      * Отправить новую команду на обработку
      *
-     * @param commandDto Команда для обработки
+     * @param commandDto     Команда для обработки
+     * @param idempotencyKey Ключ идемпотентности: повтор запроса с тем же ключом получает исходный ответ
      * @return Ответ, указывающий статус отправки команды
      */
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(
         summary = "Отправить новую команду",
-        description = "Отправляет новую команду на обработку. Критические команды обрабатываются немедленно, " +
-                     "а обычные команды добавляются в очередь обработки.",
+        description = "Отправляет новую команду на обработку. Команда добавляется в полосу очереди своего приоритета; " +
+                     "критическая полоса обслуживается с большим весом и имеет собственную ёмкость. " +
+                     "Повтор запроса с тем же заголовком Idempotency-Key и тем же телом возвращает исходный ответ " +
+                     "и не добавляет команду повторно.",
         responses = {
             @ApiResponse(
                 responseCode = "202",
@@ -55,27 +90,158 @@ public class CommandController {
                 responseCode = "400",
                 description = "Неверные данные команды"
             ),
+            @ApiResponse(
+                responseCode = "409",
+                description = "Запрос с тем же Idempotency-Key ещё выполняется"
+            ),
+            @ApiResponse(
+                responseCode = "422",
+                description = "Idempotency-Key уже использован с другим телом запроса"
+            ),
             @ApiResponse(
                 responseCode = "429",
-                description = "Очередь команд переполнена"
+                description = "Очередь команд переполнена или превышен лимит скорости, см. заголовок Retry-After"
             )
         }
     )
-    public ResponseEntity<CommandResponse> submitCommand(@Valid @RequestBody CommandDto commandDto) {
+    public ResponseEntity<CommandResponse> submitCommand(
+            @Valid @RequestBody CommandDto commandDto,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.debug("Получен запрос на отправку команды: {}", commandDto);
-        Command command = new Command(
-            commandDto.description(),
-            commandDto.priority(),
-            commandDto.author(),
-            commandDto.time() != null ? commandDto.time() : LocalDateTime.now()
-        );
-        Map<String, Object> result = commandService.processCommand(command);
+        CommandResponse response = idempotencyService.execute("api.v1.commands", idempotencyKey, commandDto,
+                () -> submit(commandDto));
+        return ResponseEntity.accepted().body(response);
+    }
+
+    private CommandResponse submit(CommandDto commandDto) {
+        admissionControlService.admit(commandDto.author(), commandDto.priority());
+        Command command = toCommand(commandDto);
+        Map<String, Object> result = commandService.processCommand(command,
+                commandDto.repeatInterval(), commandDto.repeatCount());
         CommandResponse response = new CommandResponse(
             (String) result.get("status"),
+            (String) result.get("commandId"),
             command,
             (Integer) result.getOrDefault("queueSize", 0)
         );
-        return ResponseEntity.accepted().body(response);
+        return response;
+    }
+
+    /**
+     * Отправить пакет команд одним запросом
+     *
+     * @param commandDtos Команды пакета
+     * @return Результат приёма каждой команды
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Отправить пакет команд",
+        description = "Принимает JSON-массив команд и добавляет их в очередь одной пачкой. " +
+                     "Команды проверяются независимо, результат возвращается для каждой команды.",
+        responses = {
+            @ApiResponse(responseCode = "202", description = "Пакет обработан"),
+            @ApiResponse(responseCode = "400", description = "Пакет превышает допустимый размер")
+        }
+    )
+    public ResponseEntity<BatchResponse> submitBatch(@RequestBody List<CommandDto> commandDtos) {
+        int maxBatchSize = queueProperties.getMaxBatchSize();
+        if (commandDtos.size() > maxBatchSize) {
+            throw new CommandValidationException("Пакет команд превышает допустимый размер",
+                    Map.of("commands", String.format("Не более %d команд в пакете", maxBatchSize)));
+        }
+        List<BatchItemResult> results = new ArrayList<>(commandDtos.size());
+        submitChunk(commandDtos, 0, results);
+        return ResponseEntity.accepted().body(BatchResponse.of(results, queueService.getQueueSize(), null));
+    }
+
+    /**
+     * Отправить поток команд в формате NDJSON (одна команда JSON на строку).
+     * Тело разбирается по мере чтения, команды добавляются в очередь порциями.
+     *
+     * @param request Запрос с потоком команд
+     * @return Результат приёма каждой команды
+     */
+    @PostMapping(value = "/batch", consumes = NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Отправить поток команд (NDJSON)",
+        description = "Принимает команды по одной на строку и добавляет их в очередь порциями по " +
+                     "command.queue.max-batch-size. Ошибка разбора останавливает поток: уже принятые команды " +
+                     "остаются в очереди и перечислены в ответе.",
+        responses = {
+            @ApiResponse(responseCode = "202", description = "Поток обработан"),
+            @ApiResponse(responseCode = "400", description = "Ошибка разбора потока")
+        }
+    )
+    public ResponseEntity<BatchResponse> submitStream(HttpServletRequest request) throws IOException {
+        int chunkSize = Math.max(1, queueProperties.getMaxBatchSize());
+        List<BatchItemResult> results = new ArrayList<>();
+        List<CommandDto> chunk = new ArrayList<>(chunkSize);
+        int offset = 0;
+        String error = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream());
+             MappingIterator<CommandDto> items = objectMapper.readerFor(CommandDto.class).readValues(parser)) {
+            while (items.hasNextValue()) {
+                chunk.add(items.nextValue());
+                if (chunk.size() == chunkSize) {
+                    submitChunk(chunk, offset, results);
+                    offset += chunk.size();
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            error = String.format("Ошибка разбора команды %d: %s", offset + chunk.size(), e.getOriginalMessage());
+            log.warn("Поток команд прерван: {}", error);
+        }
+        submitChunk(chunk, offset, results);
+        BatchResponse response = BatchResponse.of(results, queueService.getQueueSize(), error);
+        return error == null ? ResponseEntity.accepted().body(response) : ResponseEntity.badRequest().body(response);
+    }
+
+    private void submitChunk(List<CommandDto> chunk, int offset, List<BatchItemResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        int firstResult = results.size();
+        Map<String, Integer> commandsByAuthor = new LinkedHashMap<>();
+        chunk.forEach(commandDto -> commandsByAuthor.merge(commandDto.author(), 1, Integer::sum));
+        AdmissionControlService.BatchAdmission admission;
+        try {
+            admission = admissionControlService.admitBatch(commandsByAuthor);
+        } catch (CommandRateLimitedException e) {
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(BatchItemResult.rejected(offset + i, e.getRetryAfterSeconds()));
+            }
+            return;
+        }
+        Map<String, Integer> acceptedByAuthor = new HashMap<>();
+        List<Command> commands = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            CommandDto commandDto = chunk.get(i);
+            int accepted = acceptedByAuthor.merge(commandDto.author(), 1, Integer::sum);
+            if (accepted > admission.admitted(commandDto.author())) {
+                results.add(BatchItemResult.rejected(offset + i, admission.retryAfter().get(commandDto.author())));
+                continue;
+            }
+            commands.add(toCommand(commandDto));
+            positions.add(offset + i);
+        }
+        List<BatchItemResult> processed = commandService.processBatch(commands);
+        for (int k = 0; k < processed.size(); k++) {
+            results.add(processed.get(k).withIndex(positions.get(k)));
+        }
+        results.subList(firstResult, results.size()).sort(Comparator.comparingInt(BatchItemResult::index));
+    }
+
+    private static Command toCommand(CommandDto commandDto) {
+        return new Command(
+            commandDto.description(),
+            commandDto.priority(),
+            commandDto.author(),
+            commandDto.time() != null ? commandDto.time() : LocalDateTime.now(),
+            commandDto.deadline()
+        );
     }
 
     /**
@@ -102,14 +268,75 @@ public class CommandController {
         Map<String, Object> status = commandService.getQueueStatus();
         QueueStatusResponse response = new QueueStatusResponse(
             (Integer) status.get("queueSize"),
+            queueService.getLaneDepths(),
             (Long) status.get("processedCommands"),
             (Map<String, Integer>) status.get("processedByAuthor"),
             (Long) status.get("queueOverflowCount"),
+            (Integer) status.get("scheduledCommands"),
             (LocalDateTime) status.get("timestamp")
         );
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Получить состояние команды
+     *
+     * @param commandId Идентификатор команды, полученный при отправке
+     * @param waitMs    Время ожидания завершения команды, мс; 0 - вернуть текущее состояние сразу
+     * @return Состояние команды или 404, если команда неизвестна или её состояние уже вытеснено
+     */
+    @GetMapping(value = "/{commandId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Получить состояние команды",
+        description = "Возвращает состояние команды: SCHEDULED, QUEUED, RUNNING, DONE или FAILED. " +
+                     "С параметром waitMs запрос ждёт завершения команды, но не дольше " +
+                     "command.queue.status.max-wait-seconds, и возвращает состояние на момент ответа.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Состояние команды"),
+            @ApiResponse(responseCode = "404", description = "Команда не найдена")
+        }
+    )
+    public DeferredResult<ResponseEntity<CommandStatus>> getCommandStatus(
+            @PathVariable String commandId,
+            @RequestParam(defaultValue = "0") long waitMs) {
+        long timeoutMs = Math.min(Math.max(0, waitMs),
+                TimeUnit.SECONDS.toMillis(queueProperties.getStatus().getMaxWaitSeconds()));
+        DeferredResult<ResponseEntity<CommandStatus>> result = new DeferredResult<>(timeoutMs);
+        CompletableFuture<CommandStatus> completion = timeoutMs > 0 ? commandService.awaitCommandStatus(commandId) : null;
+        if (completion == null) {
+            result.setResult(statusResponse(commandService.getCommandStatus(commandId)));
+            return result;
+        }
+        result.onTimeout(() -> result.setResult(statusResponse(commandService.getCommandStatus(commandId))));
+        completion.thenAccept(status -> result.setResult(ResponseEntity.ok(status)));
+        return result;
+    }
+
+    private static ResponseEntity<CommandStatus> statusResponse(CommandStatus status) {
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Отменить отложенную или повторяющуюся команду
+     *
+     * @param scheduleId Идентификатор расписания, полученный при отправке команды
+     * @return 204, если расписание отменено, 404, если оно не найдено
+     */
+    @DeleteMapping("/schedules/{scheduleId}")
+    @Operation(
+        summary = "Отменить отложенную команду",
+        description = "Отменяет ещё не выполненные запуски отложенной или повторяющейся команды",
+        responses = {
+            @ApiResponse(responseCode = "204", description = "Расписание отменено"),
+            @ApiResponse(responseCode = "404", description = "Расписание не найдено")
+        }
+    )
+    public ResponseEntity<Void> cancelScheduledCommand(@PathVariable String scheduleId) {
+        return commandService.cancelScheduledCommand(scheduleId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
     public record CommandDto(
         @Schema(description = "Описание команды", example = "Проверить состояние энергоблока")
         String description,
@@ -117,31 +344,66 @@ public class CommandController {
         Priority priority,
         @Schema(description = "Автор команды", example = "Лейтенант Эллен Рипли")
         String author,
-        @Schema(description = "Время назначения команды (ISO-8601 format)",
+        @Schema(description = "Время назначения команды (ISO-8601 format). Команда со временем в будущем " +
+                "передаётся в очередь в назначенное время",
                 example = "2025-07-17T12:00:00Z")
-        LocalDateTime time
+        LocalDateTime time,
+        @Schema(description = "Крайний срок выполнения (ISO-8601 format). Команда, не начатая до этого времени, " +
+                "снимается с выполнения в состоянии EXPIRED",
+                example = "2025-07-17T12:05:00Z")
+        LocalDateTime deadline,
+        @Schema(description = "Интервал повторения команды (ISO-8601 duration)", example = "PT30M")
+        Duration repeatInterval,
+        @Schema(description = "Количество выполнений повторяющейся команды, по умолчанию без ограничения",
+                example = "3")
+        Integer repeatCount
     ) {}
 
     public record CommandResponse(
         @Schema(description = "Статус команды",
                 example = "command_queued", 
-                allowableValues = {"critical_command_executed", "command_queued"})
+                allowableValues = {"critical_command_queued", "command_queued", "command_scheduled"})
         String status,
+        @Schema(description = "Идентификатор команды для запроса её состояния")
+        String commandId,
         @Schema(description = "Отправленная команда")
         Command command,
         @Schema(description = "Текущий размер очереди")
         int queueSize
     ) {}
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record BatchResponse(
+        @Schema(description = "Количество принятых команд")
+        int accepted,
+        @Schema(description = "Количество отклонённых команд")
+        int rejected,
+        @Schema(description = "Текущий размер очереди")
+        int queueSize,
+        @Schema(description = "Результат по каждой команде в порядке пакета")
+        List<BatchItemResult> results,
+        @Schema(description = "Ошибка разбора потока, после которой команды не принимались")
+        String error
+    ) {
+        static BatchResponse of(List<BatchItemResult> results, int queueSize, String error) {
+            int accepted = (int) results.stream().filter(BatchItemResult::isAccepted).count();
+            return new BatchResponse(accepted, results.size() - accepted, queueSize, results, error);
+        }
+    }
+
     public record QueueStatusResponse(
         @Schema(description = "Текущее количество команд в очереди")
         int queueSize,
+        @Schema(description = "Количество команд в каждой полосе очереди")
+        Map<Priority, Integer> laneDepths,
         @Schema(description = "Количество выполненных команд")
         long processedCommands,
         @Schema(description = "Разбиение выполненных команд по авторам")
         Map<String, Integer> processedByAuthor,
         @Schema(description = "Количество случаев переполнения очереди")
         long queueOverflowCount,
+        @Schema(description = "Количество отложенных команд, ожидающих срока выполнения")
+        int scheduledCommands,
         @Schema(description = "Время проверки статуса")
         LocalDateTime timestamp
     ) {}
@@ -0,0 +1,104 @@
+package com.weyland.yutani.core.services;
+
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.exceptions.CommandQueueOverflowException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommandSchedulerServiceTest {
+
+    @Test
+    void concurrentSchedulesDoNotExceedMaxPending() throws Exception {
+        CommandSchedulerService scheduler = scheduler(10);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int scheduled = 0;
+                    for (int i = 0; i < 50; i++) {
+                        try {
+                            scheduler.schedule(command(LocalDateTime.now().plusHours(1)), null, null);
+                            scheduled++;
+                        } catch (CommandQueueOverflowException e) {
+                            Thread.yield();
+                        }
+                    }
+                    return scheduled;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            assertThat(total).isEqualTo(10);
+            assertThat(scheduler.getPendingCount()).isEqualTo(10);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancelReleasesReservedPlace() {
+        CommandSchedulerService scheduler = scheduler(1);
+        String id = scheduler.schedule(command(LocalDateTime.now().plusHours(1)), null, null);
+        assertThatThrownBy(() -> scheduler.schedule(command(LocalDateTime.now().plusHours(1)), null, null))
+                .isInstanceOf(CommandQueueOverflowException.class);
+
+        assertThat(scheduler.cancel(id)).isTrue();
+        assertThat(scheduler.cancel(id)).isFalse();
+
+        assertThat(scheduler.getPendingCount()).isZero();
+        scheduler.schedule(command(LocalDateTime.now().plusHours(1)), null, null);
+        assertThat(scheduler.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsTimeAndIntervalBeyondMaxDelay() {
+        CommandSchedulerService scheduler = scheduler(10);
+
+        assertThatThrownBy(() -> scheduler.schedule(command(LocalDateTime.now().plusYears(100_000_000)), null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> scheduler.schedule(command(LocalDateTime.now().plusDays(366)), null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> scheduler.schedule(command(LocalDateTime.now().plusHours(1)),
+                Duration.ofSeconds(Long.MAX_VALUE), null))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(scheduler.getPendingCount()).isZero();
+        scheduler.schedule(command(LocalDateTime.now().plusDays(364)), Duration.ofDays(365), 2);
+        assertThat(scheduler.getPendingCount()).isEqualTo(1);
+    }
+
+    /**
+     * Планировщик без потока планировщика: команды ставятся в колесо, но не срабатывают.
+     */
+    private static CommandSchedulerService scheduler(int maxPending) {
+        CommandQueueProperties properties = new CommandQueueProperties();
+        properties.getSchedule().setMaxPending(maxPending);
+        MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+        return new CommandSchedulerService(properties, new CommandQueueService(properties, metricsService),
+                metricsService);
+    }
+
+    private static Command command(LocalDateTime time) {
+        return new Command("Проверить гиперсон", Priority.COMMON, "Бишоп", time);
+    }
+}
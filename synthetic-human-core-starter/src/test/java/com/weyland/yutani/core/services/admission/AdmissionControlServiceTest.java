@@ -0,0 +1,113 @@
+package com.weyland.yutani.core.services.admission;
+
+import com.weyland.yutani.core.config.AdmissionProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.CommandQueueService;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.exceptions.CommandQueueOverflowException;
+import com.weyland.yutani.core.services.exceptions.CommandRateLimitedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionControlServiceTest {
+
+    private CommandQueueService queueService;
+    private AdmissionControlService admission;
+
+    /**
+     * Вёдра практически не пополняются: общее вмещает два запроса, ведро автора - один.
+     */
+    @BeforeEach
+    void setUp() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setEnabled(true);
+        properties.setGlobalRate(0.001);
+        properties.setGlobalBurst(2);
+        properties.setAuthorRate(0.001);
+        properties.setAuthorBurst(1);
+        MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+        queueService = new CommandQueueService(2, 0, metricsService);
+        admission = new AdmissionControlService(properties, queueService, metricsService);
+    }
+
+    @Test
+    void authorRejectionReturnsGlobalToken() {
+        admission.admit("ripley", Priority.COMMON);
+        assertThatThrownBy(() -> admission.admit("ripley", Priority.COMMON))
+                .isInstanceOf(CommandRateLimitedException.class)
+                .hasMessageContaining("ripley");
+
+        assertThatNoException().isThrownBy(() -> admission.admit("hicks", Priority.COMMON));
+        assertThatThrownBy(() -> admission.admit("hudson", Priority.COMMON))
+                .isInstanceOf(CommandRateLimitedException.class)
+                .hasMessageContaining("общий");
+    }
+
+    @Test
+    void fullLaneIsRejectedBeforeAnyTokenIsTaken() {
+        queueService.addCommand(new Command("cmd", Priority.COMMON, "bishop", LocalDateTime.now()));
+        assertThat(queueService.isLaneFull(Priority.COMMON)).isTrue();
+
+        assertThatThrownBy(() -> admission.admit("ripley", Priority.COMMON))
+                .isInstanceOf(CommandQueueOverflowException.class);
+
+        assertThatNoException().isThrownBy(() -> admission.admit("ripley", Priority.CRITICAL));
+        assertThatNoException().isThrownBy(() -> admission.admit("hicks", Priority.CRITICAL));
+    }
+
+    @Test
+    void batchChargesEveryCommandAndTrimsCommandsOverAuthorLimit() {
+        AdmissionControlService.BatchAdmission batch = admission.admitBatch(Map.of("ripley", 3));
+
+        assertThat(batch.admitted("ripley")).isEqualTo(1);
+        assertThat(batch.retryAfter()).containsOnlyKeys("ripley");
+        assertThat(admission.admitBatch(Map.of("ripley", 1)).admitted("ripley")).isZero();
+
+        assertThatNoException().isThrownBy(() -> admission.admit("hicks", Priority.COMMON));
+        assertThatThrownBy(() -> admission.admitBatch(Map.of("vasquez", 1)))
+                .isInstanceOf(CommandRateLimitedException.class);
+    }
+
+    @Test
+    void batchTrimsCommandsOverGlobalLimitInAuthorOrder() {
+        Map<String, Integer> commandsByAuthor = new LinkedHashMap<>();
+        commandsByAuthor.put("ripley", 1);
+        commandsByAuthor.put("hicks", 1);
+        commandsByAuthor.put("hudson", 1);
+
+        AdmissionControlService.BatchAdmission batch = admission.admitBatch(commandsByAuthor);
+
+        assertThat(batch.admitted()).containsEntry("ripley", 1).containsEntry("hicks", 1).containsEntry("hudson", 0);
+        assertThat(batch.retryAfter()).containsOnlyKeys("hudson");
+    }
+
+    @Test
+    void bucketGrantsOnlyAvailableTokens() {
+        TokenBucket bucket = new TokenBucket(0.001, 3);
+
+        assertThat(bucket.tryAcquireUpTo(2)).isEqualTo(2);
+        assertThat(bucket.tryAcquireUpTo(5)).isEqualTo(1);
+        assertThat(bucket.tryAcquireUpTo(1)).isZero();
+        assertThat(bucket.waitNanos()).isPositive();
+        bucket.release(1);
+        assertThat(bucket.waitNanos()).isZero();
+    }
+
+    @Test
+    void bucketRejectsRequestLargerThanBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+
+        assertThat(bucket.tryAcquire(2)).isZero();
+        assertThatThrownBy(() -> bucket.tryAcquire(3)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,144 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.weyland.yutani.core.annotations.WeylandWatchingYou.Severity;
+import com.weyland.yutani.core.config.AuditProperties;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditEventSerializerTest {
+
+    private static final AuditMethod METHOD =
+            new AuditMethod("CommandService.processCommand", "Обработка команды", "default", Severity.INFO, 1.0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @EnumSource(AuditEncoding.class)
+    void cutsStringsToMaxFieldBytesWithoutSplittingCharacters(AuditEncoding encoding) throws IOException {
+        AuditProperties.Capture capture = new AuditProperties.Capture();
+        capture.setMaxFieldBytes(7);
+
+        JsonNode event = serialize(encoding, capture,
+                new Object[]{"ripley-ripley", "абвгд", "hicks"}, null, "Ошибка");
+
+        assertThat(texts(event.get("arguments"))).containsExactly("ripley-…", "абв…", "hicks");
+        assertThat(event.get("error").asText()).isEqualTo("Оши…");
+        assertThat(event.get("truncated").asBoolean()).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(AuditEncoding.class)
+    void replacesContainersDeeperThanMaxDepth(AuditEncoding encoding) throws IOException {
+        AuditProperties.Capture capture = new AuditProperties.Capture();
+        capture.setMaxDepth(2);
+
+        JsonNode event = serialize(encoding, capture,
+                new Object[]{Map.of("crew", List.of("ripley")), "hicks"}, Map.of("status", "ok"), null);
+
+        assertThat(event.get("arguments").get(0).get("crew").asText()).isEqualTo(AuditCaptureGenerator.TRUNCATED);
+        assertThat(event.get("arguments").get(1).asText()).isEqualTo("hicks");
+        assertThat(event.get("result").get("status").asText()).isEqualTo("ok");
+        assertThat(event.get("truncated").asBoolean()).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(AuditEncoding.class)
+    void stopsAtMaxEventBytesAndClosesOpenContainers(AuditEncoding encoding) throws IOException {
+        AuditProperties.Capture capture = new AuditProperties.Capture();
+        capture.setMaxEventBytes(400);
+        List<Map<String, String>> crew = IntStream.range(0, 200)
+                .mapToObj(n -> Map.of("name", "crew-member-" + n))
+                .toList();
+
+        JsonNode event = serialize(encoding, capture, new Object[]{crew}, "done", "Ошибка");
+
+        JsonNode captured = event.get("arguments").get(0);
+        assertThat(captured.size()).isPositive().isLessThan(200);
+        for (int i = 0; i < captured.size() - 1; i++) {
+            assertThat(captured.get(i).get("name").asText()).isEqualTo("crew-member-" + i);
+        }
+        JsonNode last = captured.get(captured.size() - 1);
+        assertThat(last.isEmpty() || last.get("name").asText().equals("crew-member-" + (captured.size() - 1)))
+                .isTrue();
+        assertThat(event.has("result")).isFalse();
+        assertThat(event.get("error").asText()).isEqualTo("Ошибка");
+        assertThat(event.get("truncated").asBoolean()).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(AuditEncoding.class)
+    void skipsResultWhenArgumentsFillEvent(AuditEncoding encoding) throws IOException {
+        AuditProperties.Capture capture = new AuditProperties.Capture();
+        capture.setMaxFieldBytes(1000);
+        capture.setMaxEventBytes(1000);
+
+        JsonNode event = serialize(encoding, capture, new Object[]{"x".repeat(1000)}, "done", null);
+
+        assertThat(event.get("arguments").get(0).asText()).hasSize(1000);
+        assertThat(event.has("result")).isFalse();
+        assertThat(event.get("truncated").asBoolean()).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(AuditEncoding.class)
+    void keepsAllowlistedFieldsWhole(AuditEncoding encoding) throws IOException {
+        AuditProperties.Capture capture = new AuditProperties.Capture();
+        capture.setFields(List.of("name", "crew"));
+        Map<String, Object> member = new LinkedHashMap<>();
+        member.put("name", "Хикс");
+        member.put("rank", "капрал");
+        Map<String, Object> argument = new LinkedHashMap<>();
+        argument.put("name", "Рипли");
+        argument.put("secret", Map.of("code", "MU-TH-UR"));
+        argument.put("crew", List.of(member));
+        argument.put("rank", List.of("уорент-офицер"));
+
+        JsonNode event = serialize(encoding, capture, new Object[]{argument}, null, null);
+
+        assertThat(event.get("arguments").get(0)).isEqualTo(objectMapper.readTree(
+                "{\"name\": \"Рипли\", \"crew\": [{\"name\": \"Хикс\"}]}"));
+        assertThat(event.has("truncated")).isFalse();
+    }
+
+    /**
+     * Сериализует событие и разбирает его обратно, проверяя, что после события в выходе ничего нет.
+     */
+    private JsonNode serialize(AuditEncoding encoding, AuditProperties.Capture capture, Object[] arguments,
+                               Object result, String error) throws IOException {
+        AuditEventSerializer serializer = new AuditEventSerializer(objectMapper, encoding, capture);
+        byte[] bytes = serializer.serialize(new AuditEvent("e1", System.currentTimeMillis(),
+                error == null ? AuditStatus.SUCCESS : AuditStatus.ERROR, METHOD, arguments, result, error));
+        try (JsonParser parser = parserFactory(encoding).createParser(bytes)) {
+            JsonNode event = objectMapper.readTree(parser);
+            assertThat(parser.nextToken()).isNull();
+            assertThat(event.get("auditId").asText()).isEqualTo("e1");
+            return event;
+        }
+    }
+
+    private static JsonFactory parserFactory(AuditEncoding encoding) {
+        return switch (encoding) {
+            case JSON -> new JsonFactory();
+            case SMILE -> new SmileFactory();
+            case CBOR -> new CBORFactory();
+        };
+    }
+
+    private static List<String> texts(JsonNode array) {
+        return IntStream.range(0, array.size()).mapToObj(i -> array.get(i).asText()).toList();
+    }
+}
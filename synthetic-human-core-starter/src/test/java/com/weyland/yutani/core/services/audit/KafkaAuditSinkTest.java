@@ -0,0 +1,140 @@
+package com.weyland.yutani.core.services.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.annotations.WeylandWatchingYou.Severity;
+import com.weyland.yutani.core.config.AuditProperties;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.audit.outbox.AuditOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KafkaAuditSinkTest {
+
+    private static final String TOPIC = "audit-outbox-test";
+    private static final AuditMethod METHOD =
+            new AuditMethod("CommandService.processCommand", "Обработка команды", "default", Severity.INFO, 1.0);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AuditOutbox outbox;
+    private KafkaAuditSink sink;
+    private EmbeddedKafkaKraftBroker broker;
+
+    @AfterEach
+    void stop() {
+        if (sink != null) {
+            sink.close();
+        }
+        if (outbox != null) {
+            outbox.close();
+        }
+        if (broker != null) {
+            broker.destroy();
+        }
+    }
+
+    /**
+     * Топика нет, и брокер не создаёт его автоматически, поэтому первая публикация завершается ошибкой;
+     * топик создаётся позже. Хранилище разбирается по одному событию; события, опубликованные после первой
+     * отправленной пачки, должны попасть в хранилище и прийти в Kafka после более ранних, а после опустошения
+     * хранилища публикация возвращается в Kafka.
+     */
+    @Test
+    void keepsSpillingUntilOutboxIsDrained() throws Exception {
+        broker = new EmbeddedKafkaKraftBroker(1, 1);
+        broker.brokerProperty("auto.create.topics.enable", false);
+        broker.afterPropertiesSet();
+        AuditProperties.Kafka properties = new AuditProperties.Kafka();
+        properties.setTopic(TOPIC);
+        properties.setKey(AuditPartitionKey.NONE);
+        properties.getProducer().setMaxBlockMs(500);
+        properties.getProducer().setLingerMs(0);
+        properties.getOutbox().setDrainBatchSize(1);
+        properties.getOutbox().setDrainRate(4);
+        properties.getOutbox().setRetryIntervalMs(100);
+        outbox = new AuditOutbox(directory, 1024 * 1024, 16 * 1024 * 1024);
+        outbox.open();
+        MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+        metricsService.init();
+        sink = new KafkaAuditSink(
+                new DefaultKafkaProducerFactory<>(
+                        Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString())),
+                new AuditEventSerializer(objectMapper, new AuditProperties.Capture()),
+                properties, outbox, metricsService);
+        sink.start();
+
+        sink.publish(events(1, 4));
+        long spilled = outbox.getPendingBytes();
+        assertThat(spilled).isPositive();
+
+        broker.addTopics(new NewTopic(TOPIC, 1, (short) 1));
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (outbox.getPendingBytes() == spilled && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(outbox.getPendingBytes()).isLessThan(spilled).isPositive();
+        sink.publish(events(5, 8));
+
+        deadline = System.currentTimeMillis() + 30_000;
+        while (!outbox.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(outbox.isEmpty()).isTrue();
+        Thread.sleep(300);
+        sink.publish(events(9, 9));
+        assertThat(outbox.isEmpty()).isTrue();
+
+        assertThat(consume(9)).containsExactlyElementsOf(IntStream.rangeClosed(1, 9).mapToObj(n -> "e" + n).toList());
+    }
+
+    private List<String> consume(int count) throws IOException {
+        List<String> auditIds = new ArrayList<>();
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, "audit-outbox-test",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"),
+                new StringDeserializer(), new ByteArrayDeserializer())) {
+            consumer.subscribe(List.of(TOPIC));
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (auditIds.size() < count && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(200))) {
+                    auditIds.add(objectMapper.readTree(record.value()).get("auditId").asText());
+                }
+            }
+        }
+        return auditIds;
+    }
+
+    /**
+     * @return события с идентификаторами {@code e<from>}…{@code e<to>}
+     */
+    private static List<AuditEvent> events(int from, int to) {
+        return IntStream.rangeClosed(from, to)
+                .mapToObj(n -> new AuditEvent("e" + n, System.currentTimeMillis(), AuditStatus.START, METHOD,
+                        null, null, null))
+                .toList();
+    }
+}
@@ -0,0 +1,197 @@
+package com.weyland.yutani.core.services.audit.file;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditLogTest {
+
+    private static final String PROCESS = "CommandService.processCommand";
+    private static final String SCHEDULE = "CommandService.scheduleCommand";
+    /**
+     * Размер записи из {@link #append}: заголовок, время, метод {@link #SHORT_METHOD}, auditId из двух байт
+     * и событие из 10 байт.
+     */
+    private static final String SHORT_METHOD = "M.a";
+    private static final int RECORD_SIZE = Integer.BYTES * 2 + Long.BYTES + Short.BYTES * 2 + 3 + 2 + 10;
+    /**
+     * Вмещает две записи и нулевой заголовок, третья начинает новый сегмент.
+     */
+    private static final int SMALL_SEGMENT_SIZE = RECORD_SIZE * 2 + Integer.BYTES;
+
+    @TempDir
+    Path directory;
+
+    private final long now = System.currentTimeMillis();
+
+    private final List<AuditLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeLogs() {
+        opened.forEach(AuditLog::close);
+    }
+
+    @Test
+    void findsEventsByMethodAuditIdAndTimeNewestFirst() {
+        AuditLog auditLog = open(64 * 1024, Long.MAX_VALUE);
+        auditLog.append(now + 1_000, PROCESS, "a1", payload(1));
+        auditLog.append(now + 2_000, SCHEDULE, "a2", payload(2));
+        auditLog.append(now + 3_000, PROCESS, "a3", payload(3));
+        auditLog.append(now + 4_000, PROCESS, "a1", payload(4));
+
+        assertThat(find(auditLog, null, null, 0, Long.MAX_VALUE, 10))
+                .containsExactly(text(4), text(3), text(2), text(1));
+        assertThat(find(auditLog, PROCESS, null, 0, Long.MAX_VALUE, 10)).containsExactly(text(4), text(3), text(1));
+        assertThat(find(auditLog, null, "a1", 0, Long.MAX_VALUE, 10)).containsExactly(text(4), text(1));
+        assertThat(find(auditLog, null, null, now + 2_000, now + 3_000, 10)).containsExactly(text(3), text(2));
+        assertThat(find(auditLog, null, null, 0, Long.MAX_VALUE, 2)).containsExactly(text(4), text(3));
+        assertThat(find(auditLog, "CommandService.unknown", null, 0, Long.MAX_VALUE, 10)).isEmpty();
+    }
+
+    @Test
+    void rebuildsIndexOnOpen() {
+        AuditLog auditLog = open(SMALL_SEGMENT_SIZE, Long.MAX_VALUE);
+        auditLog.append(now + 1_000, PROCESS, "a1", payload(1));
+        auditLog.append(now + 2_000, SCHEDULE, "a2", payload(2));
+        auditLog.append(now + 3_000, PROCESS, "a3", payload(3));
+        auditLog.close();
+
+        AuditLog reopened = open(SMALL_SEGMENT_SIZE, Long.MAX_VALUE);
+
+        assertThat(find(reopened, null, null, 0, Long.MAX_VALUE, 10)).containsExactly(text(3), text(2), text(1));
+        assertThat(find(reopened, PROCESS, null, 0, Long.MAX_VALUE, 10)).containsExactly(text(3), text(1));
+        assertThat(find(reopened, null, "a2", 0, Long.MAX_VALUE, 10)).containsExactly(text(2));
+        assertThat(find(reopened, null, null, now + 2_500, Long.MAX_VALUE, 10)).containsExactly(text(3));
+    }
+
+    @Test
+    void appendsToLastSegmentAfterRestart() throws IOException {
+        for (int number = 1; number <= 3; number++) {
+            AuditLog auditLog = open(64 * 1024, Long.MAX_VALUE);
+            auditLog.append(now + number * 1_000L, PROCESS, "a" + number, payload(number));
+            auditLog.close();
+        }
+
+        AuditLog reopened = open(64 * 1024, Long.MAX_VALUE);
+
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(reopened.getSegmentCount()).isEqualTo(1);
+        assertThat(find(reopened, PROCESS, null, 0, Long.MAX_VALUE, 10)).containsExactly(text(3), text(2), text(1));
+    }
+
+    @Test
+    void restartsDoNotCountTowardsMaxTotalBytes() {
+        AuditLog auditLog = open(1024, 2048);
+        auditLog.append(now, PROCESS, "a1", payload(1));
+        auditLog.close();
+        for (int i = 0; i < 4; i++) {
+            open(1024, 2048).close();
+        }
+
+        AuditLog reopened = open(1024, 2048);
+
+        assertThat(reopened.getSegmentCount()).isEqualTo(1);
+        assertThat(find(reopened, null, "a1", 0, Long.MAX_VALUE, 10)).containsExactly(text(1));
+    }
+
+    @Test
+    void dropsTornTailAndAppendsInItsPlace() throws IOException {
+        AuditLog auditLog = open(64 * 1024, Long.MAX_VALUE);
+        append(auditLog, now, 1, 2, 3);
+        auditLog.close();
+        try (FileChannel channel = FileChannel.open(segmentFiles().getFirst(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), RECORD_SIZE * 3L - 1);
+        }
+
+        AuditLog reopened = open(64 * 1024, Long.MAX_VALUE);
+        assertThat(find(reopened, null, null, 0, Long.MAX_VALUE, 10)).containsExactly(text(2), text(1));
+        reopened.append(now + 4_000, SHORT_METHOD, "a4", "e4".getBytes(StandardCharsets.UTF_8));
+        reopened.close();
+
+        AuditLog recovered = open(64 * 1024, Long.MAX_VALUE);
+        assertThat(find(recovered, null, null, 0, Long.MAX_VALUE, 10)).containsExactly("e4", text(2), text(1));
+        assertThat(segmentFiles()).hasSize(1);
+    }
+
+    @Test
+    void deletesOldestSegmentsOverMaxTotalBytes() throws IOException {
+        AuditLog auditLog = open(SMALL_SEGMENT_SIZE, RECORD_SIZE * 3L);
+
+        append(auditLog, now, 1, 2, 3, 4, 5, 6);
+
+        assertThat(auditLog.getSegmentCount()).isEqualTo(2);
+        assertThat(segmentFiles()).hasSize(2);
+        assertThat(find(auditLog, null, null, 0, Long.MAX_VALUE, 10))
+                .containsExactly(text(6), text(5), text(4), text(3));
+    }
+
+    @Test
+    void deletesSegmentsPastRetention() throws IOException {
+        AuditLog auditLog = open(SMALL_SEGMENT_SIZE, Long.MAX_VALUE);
+        append(auditLog, now - Duration.ofHours(2).toMillis(), 1, 2);
+
+        append(auditLog, now, 3);
+
+        assertThat(auditLog.getSegmentCount()).isEqualTo(1);
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(find(auditLog, null, null, 0, Long.MAX_VALUE, 10)).containsExactly(text(3));
+    }
+
+    /**
+     * Журнал со сменой сегмента раз в час и хранением в течение часа.
+     */
+    private AuditLog open(int segmentSize, long maxTotalBytes) {
+        AuditLog auditLog = new AuditLog(directory, segmentSize, Duration.ofHours(1), Duration.ofHours(1),
+                maxTotalBytes);
+        auditLog.open();
+        opened.add(auditLog);
+        return auditLog;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(AuditLogSegment.SUFFIX)).sorted().toList();
+        }
+    }
+
+    /**
+     * Дописывает записи размера {@link #RECORD_SIZE} с одинаковым временем.
+     */
+    private static void append(AuditLog auditLog, long timestamp, int... numbers) {
+        for (int number : numbers) {
+            auditLog.append(timestamp, SHORT_METHOD, "a" + number, payload(number));
+        }
+    }
+
+    private static List<String> find(AuditLog auditLog, String method, String auditId, long from, long to,
+                                     int limit) {
+        return auditLog.find(method, auditId, from, to, limit).stream()
+                .map(payload -> new String(payload, StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    /**
+     * Событие из 10 байт с номером в конце.
+     */
+    private static byte[] payload(int number) {
+        return text(number).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(int number) {
+        return String.format("event-%04d", number);
+    }
+}
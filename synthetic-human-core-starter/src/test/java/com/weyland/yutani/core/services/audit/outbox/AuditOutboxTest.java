@@ -0,0 +1,148 @@
+package com.weyland.yutani.core.services.audit.outbox;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditOutboxTest {
+
+    /**
+     * Размер записи из {@link #append}: заголовок, длина ключа, ключ из одного байта и событие из 10 байт.
+     */
+    private static final int RECORD_SIZE = Integer.BYTES * 2 + Short.BYTES + 1 + 10;
+    /**
+     * Вмещает три записи, четвёртая начинает новый сегмент.
+     */
+    private static final int SEGMENT_SIZE = RECORD_SIZE * 3 - 1;
+
+    @TempDir
+    Path directory;
+
+    private final List<AuditOutbox> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeOutboxes() {
+        opened.forEach(AuditOutbox::close);
+    }
+
+    @Test
+    void resumesFromCheckpointAfterRestart() {
+        AuditOutbox outbox = open();
+        append(outbox, 1, 2, 3);
+        outbox.commit(outbox.read(2));
+        outbox.close();
+
+        AuditOutbox reopened = open();
+
+        assertThat(reopened.getPendingBytes()).isEqualTo(RECORD_SIZE);
+        assertThat(payloads(reopened.read(10))).containsExactly(payload(3));
+    }
+
+    @Test
+    void rereadsUncommittedBatchAfterRestart() {
+        AuditOutbox outbox = open();
+        append(outbox, 1, 2);
+        assertThat(payloads(outbox.read(10))).containsExactly(payload(1), payload(2));
+        outbox.close();
+
+        AuditOutbox reopened = open();
+
+        AuditOutbox.Batch batch = reopened.read(10);
+        assertThat(payloads(batch)).containsExactly(payload(1), payload(2));
+        assertThat(batch.entries()).extracting(AuditOutbox.Entry::key).containsOnly("k");
+        reopened.commit(batch);
+        assertThat(reopened.isEmpty()).isTrue();
+    }
+
+    @Test
+    void deletesDrainedSegmentsAndKeepsCheckpointAcrossThem() throws IOException {
+        AuditOutbox outbox = open();
+        append(outbox, 1, 2, 3, 4, 5);
+        assertThat(segmentFiles()).hasSize(2);
+        outbox.commit(outbox.read(10));
+        outbox.commit(outbox.read(1));
+        outbox.close();
+
+        assertThat(segmentFiles()).hasSize(1);
+        AuditOutbox reopened = open();
+        assertThat(payloads(reopened.read(10))).containsExactly(payload(5));
+    }
+
+    @Test
+    void skipsCorruptRecordWithRestOfItsSegment() throws IOException {
+        AuditOutbox outbox = open();
+        append(outbox, 1, 2, 3, 4);
+        outbox.close();
+        Path first = segmentFiles().getFirst();
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), RECORD_SIZE * 2L - 1);
+        }
+
+        AuditOutbox reopened = open();
+
+        AuditOutbox.Batch batch = reopened.read(10);
+        assertThat(payloads(batch)).containsExactly(payload(1));
+        reopened.commit(batch);
+        batch = reopened.read(10);
+        assertThat(payloads(batch)).containsExactly(payload(4));
+        reopened.commit(batch);
+        assertThat(reopened.isEmpty()).isTrue();
+        assertThat(segmentFiles()).doesNotContain(first);
+    }
+
+    @Test
+    void refusesEventsOverMaxBytes() {
+        AuditOutbox outbox = new AuditOutbox(directory, SEGMENT_SIZE, RECORD_SIZE * 2L);
+        outbox.open();
+        opened.add(outbox);
+
+        assertThat(outbox.append("k", payload(1))).isTrue();
+        assertThat(outbox.append("k", payload(2))).isTrue();
+        assertThat(outbox.append("k", payload(3))).isFalse();
+        outbox.commit(outbox.read(1));
+        assertThat(outbox.append("k", payload(3))).isTrue();
+    }
+
+    private AuditOutbox open() {
+        AuditOutbox outbox = new AuditOutbox(directory, SEGMENT_SIZE, Long.MAX_VALUE);
+        outbox.open();
+        opened.add(outbox);
+        return outbox;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(AuditOutbox.SUFFIX)).sorted().toList();
+        }
+    }
+
+    private static void append(AuditOutbox outbox, int... numbers) {
+        for (int number : numbers) {
+            assertThat(outbox.append("k", payload(number))).isTrue();
+        }
+    }
+
+    /**
+     * Событие из 10 байт с номером в конце.
+     */
+    private static byte[] payload(int number) {
+        return String.format("event-%04d", number).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> payloads(AuditOutbox.Batch batch) {
+        return batch.entries().stream().map(AuditOutbox.Entry::payload).toList();
+    }
+}
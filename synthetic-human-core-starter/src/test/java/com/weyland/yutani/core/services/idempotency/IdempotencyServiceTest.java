@@ -0,0 +1,64 @@
+package com.weyland.yutani.core.services.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.config.IdempotencyProperties;
+import com.weyland.yutani.core.services.MetricsService;
+import com.weyland.yutani.core.services.exceptions.CommandIdempotencyKeyReusedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyService service;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setEnabled(true);
+        service = new IdempotencyService(properties, new MetricsService(new SimpleMeterRegistry()), new ObjectMapper());
+    }
+
+    @Test
+    void replaysStoredResponseForSameKeyAndBody() {
+        String first = service.execute("commands", "key-1", body("Помыть пол"), this::run);
+        String second = service.execute("commands", "key-1", body("Помыть пол"), this::run);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void rejectsSameKeyWithDifferentBody() {
+        service.execute("commands", "key-1", body("Помыть пол"), this::run);
+
+        assertThatThrownBy(() -> service.execute("commands", "key-1", body("Открыть шлюз"), this::run))
+                .isInstanceOf(CommandIdempotencyKeyReusedException.class);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void keysOfDifferentScopesDoNotCollide() {
+        service.execute("commands", "key-1", body("Помыть пол"), this::run);
+        service.execute("batch", "key-1", body("Открыть шлюз"), this::run);
+
+        assertThat(executions).hasValue(2);
+    }
+
+    private String run() {
+        return "response-" + executions.incrementAndGet();
+    }
+
+    private static Body body(String description) {
+        return new Body(description, "Рипли");
+    }
+
+    private record Body(String description, String author) {
+    }
+}
@@ -0,0 +1,233 @@
+package com.weyland.yutani.core.services.journal;
+
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommandJournalTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    /**
+     * Вмещает две команды из {@link #command}, третья начинает новый сегмент.
+     */
+    private static final int SMALL_SEGMENT_SIZE = 200;
+
+    @TempDir
+    Path directory;
+
+    private final List<CommandJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() {
+        opened.forEach(CommandJournal::close);
+    }
+
+    @Test
+    void replaysUnacknowledgedCommandsInOrder() {
+        CommandJournal journal = open(SEGMENT_SIZE);
+        long first = journal.append(command(1));
+        long second = journal.append(command(2));
+        journal.append(command(3));
+        journal.acknowledge(second);
+        journal.close();
+
+        List<CommandJournal.JournaledCommand> replayed = reopen(SEGMENT_SIZE);
+
+        assertThat(replayed).extracting(CommandJournal.JournaledCommand::command)
+                .containsExactly(command(1), command(3));
+        assertThat(replayed).extracting(CommandJournal.JournaledCommand::seq).allMatch(seq -> seq > first);
+    }
+
+    @Test
+    void replayRewritesCommandsAndDeletesOldSegments() throws IOException {
+        CommandJournal journal = open(SEGMENT_SIZE);
+        journal.append(command(1));
+        journal.close();
+        List<Path> before = segmentFiles();
+
+        List<CommandJournal.JournaledCommand> replayed = reopen(SEGMENT_SIZE);
+        opened.getLast().close();
+
+        assertThat(replayed).hasSize(1);
+        assertThat(segmentFiles()).doesNotContainAnyElementsOf(before).hasSize(1);
+        assertThat(reopen(SEGMENT_SIZE)).extracting(CommandJournal.JournaledCommand::command)
+                .containsExactly(command(1));
+    }
+
+    @Test
+    void ignoresTornFinalRecord() throws IOException {
+        CommandJournal journal = open(SEGMENT_SIZE);
+        journal.appendAll(List.of(command(1), command(2), command(3)));
+        journal.close();
+        Path segment = segmentFiles().getFirst();
+        List<Integer> offsets = recordOffsets(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(offsets.get(2) + JournalRecords.HEADER_BYTES + 4);
+        }
+
+        assertThat(reopen(SEGMENT_SIZE)).extracting(CommandJournal.JournaledCommand::command)
+                .containsExactly(command(1), command(2));
+    }
+
+    @Test
+    void stopsReplayAtChecksumMismatch() throws IOException {
+        CommandJournal journal = open(SEGMENT_SIZE);
+        journal.appendAll(List.of(command(1), command(2), command(3)));
+        journal.close();
+        Path segment = segmentFiles().getFirst();
+        int corrupted = recordOffsets(segment).get(1) + JournalRecords.HEADER_BYTES + 2;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, corrupted);
+            one.put(0, (byte) (one.get(0) ^ 0xFF)).rewind();
+            channel.write(one, corrupted);
+        }
+
+        assertThat(reopen(SEGMENT_SIZE)).extracting(CommandJournal.JournaledCommand::command)
+                .containsExactly(command(1));
+    }
+
+    @Test
+    void appliesAcknowledgementWrittenToLaterSegment() throws IOException {
+        CommandJournal journal = open(SMALL_SEGMENT_SIZE);
+        long first = journal.append(command(1));
+        journal.append(command(2));
+        journal.append(command(3));
+        journal.acknowledge(first);
+        journal.close();
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+
+        assertThat(reopen(SMALL_SEGMENT_SIZE))
+                .extracting(CommandJournal.JournaledCommand::command)
+                .containsExactly(command(2), command(3));
+    }
+
+    @Test
+    void deletesSegmentsOnceAllTheirCommandsAreAcknowledged() throws Exception {
+        CommandJournal journal = open(SMALL_SEGMENT_SIZE);
+        List<Long> seqs = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            seqs.add(journal.append(command(i)));
+        }
+        assertThat(segmentFiles()).hasSizeGreaterThanOrEqualTo(3);
+
+        seqs.forEach(journal::acknowledge);
+        awaitSegmentCount(1);
+        journal.close();
+
+        assertThat(reopen(SMALL_SEGMENT_SIZE)).isEmpty();
+    }
+
+    @Test
+    void reopensEmptyJournalRepeatedly() throws IOException {
+        open(SEGMENT_SIZE).close();
+        assertThat(reopen(SEGMENT_SIZE)).isEmpty();
+        opened.getLast().close();
+        assertThat(reopen(SEGMENT_SIZE)).isEmpty();
+        CommandJournal journal = opened.getLast();
+
+        journal.append(command(1));
+        journal.close();
+
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(reopen(SEGMENT_SIZE)).extracting(CommandJournal.JournaledCommand::command)
+                .containsExactly(command(1));
+    }
+
+    @Test
+    void reopensFullyAcknowledgedJournalRepeatedly() {
+        CommandJournal journal = open(SEGMENT_SIZE);
+        journal.acknowledge(journal.append(command(1)));
+        journal.close();
+        for (int restart = 0; restart < 2; restart++) {
+            assertThat(reopen(SEGMENT_SIZE)).isEmpty();
+            opened.getLast().close();
+        }
+        assertThat(reopen(SEGMENT_SIZE)).isEmpty();
+        journal = opened.getLast();
+
+        long seq = journal.append(command(2));
+        journal.close();
+
+        assertThat(reopen(SEGMENT_SIZE)).containsExactly(
+                new CommandJournal.JournaledCommand(seq + 1, command(2)));
+    }
+
+    @Test
+    void awaitDurableFailsWhenJournalClosesBeforeRecordIsFlushed() {
+        CommandJournal journal = open(SEGMENT_SIZE);
+        journal.close();
+
+        assertThatThrownBy(() -> journal.awaitDurable(Long.MAX_VALUE)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsSegmentsLargerThanOneMapping() {
+        assertThatThrownBy(() -> new CommandJournal(directory, 2048L * 1024 * 1024, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CommandJournal open(int segmentSize) {
+        assertThat(reopen(segmentSize)).isEmpty();
+        return opened.getLast();
+    }
+
+    /**
+     * Открывает журнал в каталоге теста и запоминает его для закрытия после теста.
+     *
+     * @return восстановленные команды
+     */
+    private List<CommandJournal.JournaledCommand> reopen(int segmentSize) {
+        CommandJournal journal = new CommandJournal(directory, segmentSize, 1);
+        opened.add(journal);
+        return journal.open();
+    }
+
+    private void awaitSegmentCount(int expected) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (segmentFiles().size() > expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(segmentFiles()).hasSize(expected);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+
+    /**
+     * @return смещения записей сегмента до первого нулевого заголовка
+     */
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<Integer> offsets = new ArrayList<>();
+        int position = 0;
+        while (position + Integer.BYTES <= buffer.limit() && buffer.getInt(position) > 0) {
+            offsets.add(position);
+            position += Integer.BYTES * 2 + buffer.getInt(position);
+        }
+        return offsets;
+    }
+
+    private static Command command(int number) {
+        return new Command("cmd-" + number, Priority.COMMON, "bishop", LocalDateTime.of(2025, 7, 17, 12, 0, number));
+    }
+}
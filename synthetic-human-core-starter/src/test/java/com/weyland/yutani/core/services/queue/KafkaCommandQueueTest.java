@@ -0,0 +1,114 @@
+package com.weyland.yutani.core.services.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weyland.yutani.core.config.CommandQueueProperties;
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.CommandState;
+import com.weyland.yutani.core.model.CommandStatus;
+import com.weyland.yutani.core.model.Priority;
+import com.weyland.yutani.core.services.CommandQueueService;
+import com.weyland.yutani.core.services.MetricsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EmbeddedKafka(partitions = 2, topics = KafkaCommandQueueTest.TOPIC)
+class KafkaCommandQueueTest {
+
+    static final String TOPIC = "android-commands-test";
+
+    private final MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+    private CommandQueueService queueService;
+    private KafkaCommandQueue kafkaQueue;
+
+    @AfterEach
+    void stop() {
+        if (kafkaQueue != null) {
+            kafkaQueue.stop();
+        }
+        if (queueService != null) {
+            queueService.shutdown();
+        }
+    }
+
+    /**
+     * Пауза после каждой пачки длиннее {@code max.poll.interval.ms}: если бы она выполнялась в потоке потребителя,
+     * группа перебалансировалась бы и незафиксированные команды были бы получены повторно.
+     */
+    @Test
+    void commandsMakeRoundTripOnceWhenPauseExceedsPollInterval(EmbeddedKafkaBroker broker) throws Exception {
+        CommandQueueProperties properties = new CommandQueueProperties();
+        properties.setMaxSize(10);
+        properties.setWorkers(1);
+        properties.setBatchSize(2);
+        properties.setProcessingDelayMs(1500);
+        properties.getDistributed().setEnabled(true);
+        properties.getDistributed().setTopic(TOPIC);
+        properties.getDistributed().setPriorities(Set.of(Priority.COMMON));
+        properties.getDistributed().setConcurrency(1);
+        start(broker, properties);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            ids.add(queueService.addCommand(
+                    new Command("cmd-" + i, Priority.COMMON, "bishop", LocalDateTime.of(2025, 7, 17, 12, 0, i))));
+        }
+
+        awaitDone(ids, 20_000);
+        Thread.sleep(2_000);
+
+        assertThat(ids).allSatisfy(id -> assertThat(queueService.getCommandStatus(id))
+                .extracting(CommandStatus::state).isEqualTo(CommandState.DONE));
+        assertThat(metricsService.getProcessedCommandsCount()).isEqualTo(4);
+    }
+
+    private void start(EmbeddedKafkaBroker broker, CommandQueueProperties properties) {
+        String bootstrap = broker.getBrokersAsString();
+        KafkaTemplate<String, String> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class)));
+        DefaultKafkaConsumerFactory<String, String> consumerFactory = new DefaultKafkaConsumerFactory<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap,
+                ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false,
+                ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 1000,
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class));
+        metricsService.init();
+        kafkaQueue = new KafkaCommandQueue(properties.getDistributed(), template, consumerFactory,
+                new ObjectMapper().findAndRegisterModules(), metricsService);
+        queueService = new CommandQueueService(properties, metricsService);
+        queueService.setDistributedQueue(kafkaQueue);
+        queueService.init();
+        kafkaQueue.start();
+    }
+
+    private void awaitDone(List<String> ids, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline && !ids.stream().allMatch(this::isDone)) {
+            Thread.sleep(50);
+        }
+    }
+
+    private boolean isDone(String id) {
+        CommandStatus status = queueService.getCommandStatus(id);
+        return status != null && status.state() == CommandState.DONE;
+    }
+}
@@ -0,0 +1,116 @@
+package com.weyland.yutani.core.services.queue;
+
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingCommandBufferTest {
+
+    private static final Command COMMAND = new Command("cmd", Priority.COMMON, "bishop", LocalDateTime.of(2025, 7, 17, 12, 0));
+
+    @Test
+    void roundsCapacityUpToPowerOfTwoAndRejectsWhenFull() {
+        RingCommandBuffer buffer = new RingCommandBuffer(5);
+
+        for (int i = 0; i < 8; i++) {
+            assertThat(buffer.offer(item(0, i))).isTrue();
+        }
+        assertThat(buffer.offer(item(0, 8))).isFalse();
+
+        List<QueuedCommand> drained = new ArrayList<>();
+        assertThat(buffer.drainTo(drained, 3)).isEqualTo(3);
+        assertThat(buffer.offer(item(0, 8))).isTrue();
+        assertThat(buffer.drainTo(drained, Integer.MAX_VALUE)).isEqualTo(6);
+        assertThat(drained).extracting(QueuedCommand::journalSeq).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L);
+        assertThat(buffer.isEmpty()).isTrue();
+        assertThat(buffer.drainTo(drained, 1)).isZero();
+    }
+
+    @Test
+    void keepsOrderAcrossManyWrapAroundsOfFullRing() {
+        RingCommandBuffer buffer = new RingCommandBuffer(4);
+        List<QueuedCommand> drained = new ArrayList<>();
+        long next = 0;
+        for (int cycle = 0; cycle < 10_000; cycle++) {
+            while (buffer.offer(item(0, next))) {
+                next++;
+            }
+            buffer.drainTo(drained, cycle % 4 + 1);
+        }
+        buffer.drainTo(drained, Integer.MAX_VALUE);
+
+        assertThat(drained).hasSize((int) next);
+        for (int i = 0; i < drained.size(); i++) {
+            assertThat(drained.get(i).journalSeq()).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseAndDuplicateNothing() throws Exception {
+        int producers = 8;
+        int perProducer = 50_000;
+        RingCommandBuffer buffer = new RingCommandBuffer(64);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    QueuedCommand command = item(producer, i);
+                    while (!buffer.offer(command)) {
+                        Thread.yield();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        int[] nextByProducer = new int[producers];
+        int total = producers * perProducer;
+        int received = 0;
+        List<QueuedCommand> batch = new ArrayList<>(32);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        start.countDown();
+        while (received < total && System.nanoTime() < deadline) {
+            batch.clear();
+            buffer.drainTo(batch, 32);
+            for (QueuedCommand command : batch) {
+                int producer = (int) (command.journalSeq() >>> 32);
+                assertThat((int) command.journalSeq()).isEqualTo(nextByProducer[producer]);
+                nextByProducer[producer]++;
+            }
+            received += batch.size();
+            if (batch.isEmpty()) {
+                Thread.yield();
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(received).isEqualTo(total);
+        assertThat(nextByProducer).containsOnly(perProducer);
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    /**
+     * Номер производителя и порядковый номер команды упакованы в {@link QueuedCommand#journalSeq()}.
+     */
+    private static QueuedCommand item(int producer, long number) {
+        return new QueuedCommand("p" + producer, COMMAND, 0, ((long) producer << 32) | number);
+    }
+}
@@ -0,0 +1,67 @@
+package com.weyland.yutani.core.services.schedule;
+
+import com.weyland.yutani.core.model.Command;
+import com.weyland.yutani.core.model.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduledCommandTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 7, 17, 12, 0);
+
+    @Test
+    void skipsOccurrencesThatAreAlreadyDue() {
+        ScheduledCommand scheduled = recurring(START, null, null);
+
+        assertThat(scheduled.advance(START.plusMinutes(10).plusSeconds(30))).isTrue();
+
+        assertThat(scheduled.getDueTime()).isEqualTo(START.plusMinutes(11));
+    }
+
+    @Test
+    void keepsNextOccurrenceWhenItIsInTheFuture() {
+        ScheduledCommand scheduled = recurring(START, null, null);
+
+        assertThat(scheduled.advance(START.plusSeconds(5))).isTrue();
+
+        assertThat(scheduled.getDueTime()).isEqualTo(START.plusMinutes(1));
+    }
+
+    @Test
+    void countsSkippedOccurrencesTowardsRepeatCount() {
+        ScheduledCommand scheduled = recurring(START, null, 5);
+
+        assertThat(scheduled.advance(START.plusMinutes(2).plusSeconds(30))).isTrue();
+        assertThat(scheduled.getDueTime()).isEqualTo(START.plusMinutes(3));
+        assertThat(scheduled.advance(START.plusMinutes(3))).isTrue();
+        assertThat(scheduled.advance(START.plusMinutes(4))).isFalse();
+    }
+
+    @Test
+    void endsWhenAllRemainingOccurrencesWereMissed() {
+        ScheduledCommand scheduled = recurring(START, null, 3);
+
+        assertThat(scheduled.advance(START.plusHours(1))).isFalse();
+    }
+
+    @Test
+    void deadlineFollowsEachOccurrence() {
+        ScheduledCommand scheduled = recurring(START, START.plusSeconds(20), null);
+        assertThat(scheduled.nextCommand().getDeadline()).isEqualTo(START.plusSeconds(20));
+
+        scheduled.advance(START.plusSeconds(1));
+
+        Command next = scheduled.nextCommand();
+        assertThat(next.getTime()).isEqualTo(START.plusMinutes(1));
+        assertThat(next.getDeadline()).isEqualTo(START.plusMinutes(1).plusSeconds(20));
+    }
+
+    private static ScheduledCommand recurring(LocalDateTime time, LocalDateTime deadline, Integer repeatCount) {
+        Command command = new Command("cmd", Priority.COMMON, "bishop", time, deadline);
+        return new ScheduledCommand("schedule", command, Duration.ofMinutes(1), repeatCount);
+    }
+}